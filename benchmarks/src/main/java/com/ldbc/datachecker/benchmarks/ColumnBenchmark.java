@@ -0,0 +1,139 @@
+package com.ldbc.datachecker.benchmarks;
+
+import static com.ldbc.datachecker.Column.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ldbc.datachecker.Column;
+import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.socialnet.SocialNetConstants;
+
+/**
+ * Time to parse and check one valid value, through check( policy, String ) as CsvFileReader lines are checked and
+ * through check( policy, line, column ) as MappedCsvFileReader lines are checked
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class ColumnBenchmark
+{
+    private static final int VALUE_COUNT = 1024;
+    private static final long SEED = 42;
+    private static final String[] WORDS = new String[] { "Berlin", "São_Paulo", "Zürich", "Kraków", "Lyon",
+            "Barcelona", "Malmö", "New_York", "Córdoba", "Amsterdam" };
+    private static final String[] DOMAINS = new String[] { "gmail.com", "yahoo.com", "hotmail.com", "gmx.com" };
+    // 2010-01-01 to 2013-01-01
+    private static final long MIN_DATE = 1262304000000l;
+    private static final long DATE_RANGE = 94694400000l;
+
+    @Param( { "integer", "long", "date", "dateTime", "finiteSet", "url", "email", "stringRegex" } )
+    public String columnType;
+
+    private Column<?, ?> column;
+    private String[] values;
+    private CsvLine[] lines;
+    private CountingColumnCheckPolicy policy;
+
+    @Setup
+    public void setup()
+    {
+        column = newColumn();
+        Random random = new Random( SEED );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( "date".equals( columnType ) ? SocialNetConstants.dateFormat()
+                : SocialNetConstants.dateTimeFormat() );
+        dateFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        values = new String[VALUE_COUNT];
+        lines = new CsvLine[VALUE_COUNT];
+        for ( int i = 0; i < VALUE_COUNT; i++ )
+        {
+            values[i] = newValue( random, dateFormat );
+            lines[i] = CsvLine.fromColumns( values[i] );
+        }
+        policy = new CountingColumnCheckPolicy();
+    }
+
+    private Column<?, ?> newColumn()
+    {
+        if ( "integer".equals( columnType ) ) return isInteger();
+        if ( "long".equals( columnType ) ) return isLong();
+        if ( "date".equals( columnType ) ) return isDate( SocialNetConstants.dateFormat() );
+        if ( "dateTime".equals( columnType ) ) return isDate( SocialNetConstants.dateTimeFormat() );
+        if ( "finiteSet".equals( columnType ) ) return isFiniteSet( SocialNetConstants.browsers() );
+        if ( "url".equals( columnType ) ) return isUrl().withAccents( false );
+        if ( "email".equals( columnType ) ) return isEmailAddress();
+        if ( "stringRegex".equals( columnType ) ) return isString().withRegex( "About [\\p{L}_ ]+" );
+        throw new IllegalArgumentException( String.format( "Unknown column type [%s]", columnType ) );
+    }
+
+    /*
+     * Valid values, shaped like those of ldbc_socialnet_dbgen
+     */
+    private String newValue( Random random, SimpleDateFormat dateFormat )
+    {
+        if ( "integer".equals( columnType ) ) return Integer.toString( random.nextInt( 1000000 ) );
+        if ( "long".equals( columnType ) ) return Long.toString( 2199023255552l + random.nextInt( 100000000 ) * 10l );
+        if ( "date".equals( columnType ) || "dateTime".equals( columnType ) )
+        {
+            return dateFormat.format( new Date( MIN_DATE + (long) ( random.nextDouble() * DATE_RANGE ) ) );
+        }
+        if ( "finiteSet".equals( columnType ) )
+        {
+            String[] browsers = SocialNetConstants.browsers();
+            return browsers[random.nextInt( browsers.length )];
+        }
+        if ( "url".equals( columnType ) ) return "http://dbpedia.org/resource/" + word( random );
+        if ( "email".equals( columnType ) )
+        {
+            return "Person" + random.nextInt( 100000 ) + "@" + DOMAINS[random.nextInt( DOMAINS.length )];
+        }
+        return "About " + word( random ) + " and " + word( random );
+    }
+
+    private static String word( Random random )
+    {
+        return WORDS[random.nextInt( WORDS.length )];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( VALUE_COUNT )
+    public long checkString() throws ColumnCheckException
+    {
+        for ( int i = 0; i < VALUE_COUNT; i++ )
+        {
+            column.check( policy, values[i] );
+        }
+        return policy.getFailureCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( VALUE_COUNT )
+    public long checkLine() throws ColumnCheckException
+    {
+        for ( int i = 0; i < VALUE_COUNT; i++ )
+        {
+            column.check( policy, lines[i], 0 );
+        }
+        return policy.getFailureCount();
+    }
+}
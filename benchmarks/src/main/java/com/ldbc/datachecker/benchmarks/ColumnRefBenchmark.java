@@ -0,0 +1,99 @@
+package com.ldbc.datachecker.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ldbc.datachecker.ColumnRef.AbstractLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.LongColumnRef;
+import com.ldbc.datachecker.ColumnRef.OffHeapLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.StridedBitmapColumnRef;
+
+/**
+ * ColumnRefs of node ids as SocialNetCheck creates them, for each -r type that answers contains() directly. Ids
+ * increment by 10, as those of ldbc_socialnet_dbgen do. add() saves a whole node file, in file order, contains() looks
+ * up ids of a relationship file in a frozen ColumnRef, half of which are missing.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class ColumnRefBenchmark
+{
+    private static final int PROBE_COUNT = 1024;
+    private static final long SEED = 42;
+    private static final long STRIDE = 10;
+
+    @Param( { "hash", "bitmap", "off_heap" } )
+    public String refType;
+
+    @Param( { "1000000", "10000000" } )
+    public int size;
+
+    private AbstractLongColumnRef frozenColumnRef;
+    private long[] probes;
+
+    @Setup
+    public void setup()
+    {
+        frozenColumnRef = newFilledColumnRef();
+        frozenColumnRef.freeze();
+        Random random = new Random( SEED );
+        probes = new long[PROBE_COUNT];
+        for ( int i = 0; i < PROBE_COUNT; i++ )
+        {
+            probes[i] = random.nextInt( size ) * STRIDE + ( random.nextBoolean() ? 0 : STRIDE / 2 );
+        }
+    }
+
+    private AbstractLongColumnRef newColumnRef()
+    {
+        if ( "hash".equals( refType ) ) return new LongColumnRef( refType );
+        if ( "bitmap".equals( refType ) ) return new StridedBitmapColumnRef( refType );
+        if ( "off_heap".equals( refType ) ) return new OffHeapLongColumnRef( refType );
+        throw new IllegalArgumentException( String.format( "Unknown ColumnRef type [%s]", refType ) );
+    }
+
+    private AbstractLongColumnRef newFilledColumnRef()
+    {
+        AbstractLongColumnRef columnRef = newColumnRef();
+        for ( long i = 0; i < size; i++ )
+        {
+            columnRef.add( i * STRIDE );
+        }
+        return columnRef;
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public AbstractLongColumnRef add()
+    {
+        return newFilledColumnRef();
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.NANOSECONDS )
+    @OperationsPerInvocation( PROBE_COUNT )
+    public int contains()
+    {
+        int found = 0;
+        for ( int i = 0; i < PROBE_COUNT; i++ )
+        {
+            if ( frozenColumnRef.contains( probes[i] ) ) found++;
+        }
+        return found;
+    }
+}
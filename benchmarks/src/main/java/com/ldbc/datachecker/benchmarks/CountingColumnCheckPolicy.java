@@ -0,0 +1,27 @@
+package com.ldbc.datachecker.benchmarks;
+
+import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
+
+/**
+ * Counts failures instead of reporting them, so benchmarks measure checking rather than logging
+ */
+class CountingColumnCheckPolicy extends FailedColumnCheckPolicy
+{
+    private long failureCount = 0;
+
+    CountingColumnCheckPolicy()
+    {
+        super( null, 0, null );
+    }
+
+    long getFailureCount()
+    {
+        return failureCount;
+    }
+
+    @Override
+    public void handleFailedColumnCheck( String columnString, String message )
+    {
+        failureCount++;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ldbc.datachecker.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ldbc.datachecker.CsvFileReader;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.MappedCsvFileReader;
+import com.ldbc.datachecker.socialnet.SocialNetConstants;
+
+/**
+ * Time to read and split one line of a comment.csv shaped file, which stays in the page cache between invocations
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class ReaderBenchmark
+{
+    private static final int LINE_COUNT = 100000;
+    private static final long SEED = 42;
+
+    private File csvFile;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        csvFile = File.createTempFile( "reader-benchmark", ".csv" );
+        Random random = new Random( SEED );
+        String[] browsers = SocialNetConstants.browsers();
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( csvFile ), CsvLine.CHARSET ) );
+        try
+        {
+            writer.write( "id|creationDate|locationIP|browserUsed|content\n" );
+            for ( int i = 0; i < LINE_COUNT; i++ )
+            {
+                writer.write( String.format( "%s|2011-%02d-%02dT%02d:%02d:%02dZ|%s.%s.%s.%s|%s|%s\n", i * 10l,
+                        1 + random.nextInt( 12 ), 1 + random.nextInt( 28 ), random.nextInt( 24 ),
+                        random.nextInt( 60 ), random.nextInt( 60 ), random.nextInt( 256 ), random.nextInt( 256 ),
+                        random.nextInt( 256 ), random.nextInt( 256 ), browsers[random.nextInt( browsers.length )],
+                        "About Zürich, and about " + random.nextInt( 1000000 ) + " other things" ) );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        csvFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( LINE_COUNT + 1 )
+    public long bufferedReader() throws IOException
+    {
+        long columnCount = 0;
+        CsvFileReader reader = new CsvFileReader( csvFile );
+        while ( reader.hasNext() )
+        {
+            columnCount += reader.next().length;
+        }
+        return columnCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( LINE_COUNT + 1 )
+    public long mappedReader() throws IOException
+    {
+        long columnCount = 0;
+        MappedCsvFileReader reader = new MappedCsvFileReader( csvFile );
+        while ( reader.hasNext() )
+        {
+            columnCount += reader.next().columnCount();
+        }
+        return columnCount;
+    }
+}
@@ -1,10 +1,22 @@
 package com.ldbc.datachecker;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.log4j.Logger;
 
 import com.ldbc.datachecker.FailedCheckPolicy.FailedDirectoryCheckPolicy;
+import com.ldbc.datachecker.FileCheckGraph.Node;
+import com.ldbc.datachecker.FileCheckRunner.ReaderType;
 
 public class CheckRunner
 {
@@ -13,20 +25,107 @@ public class CheckRunner
     private final Check check;
     private final File directory;
     private final FailedCheckPolicy policy;
+    private final int threadCount;
+    private ReaderType readerType = ReaderType.BUFFERED;
+    private long chunkSize = 0;
+    private File reportFile = null;
+    private long progressIntervalMillis = 0;
+    private File incrementalDirectory = null;
+    private String incrementalConfiguration = null;
 
     public CheckRunner( File directory, Check check, FailedCheckPolicy policy ) throws ColumnCheckException
+    {
+        this( directory, check, policy, 1 );
+    }
+
+    public CheckRunner( File directory, Check check, FailedCheckPolicy policy, int threadCount )
+            throws ColumnCheckException
     {
         this.check = check;
         this.directory = directory;
         this.policy = policy;
+        this.threadCount = threadCount;
         if ( false == directory.isDirectory() )
         {
             throw new ColumnCheckException( "Must be a directory: " + directory.getAbsolutePath() );
         }
+        if ( threadCount < 1 )
+        {
+            throw new ColumnCheckException( "Thread count must be at least 1, found: " + threadCount );
+        }
+    }
+
+    public CheckRunner withReaderType( ReaderType readerType )
+    {
+        this.readerType = readerType;
+        return this;
+    }
+
+    /**
+     * When checking in parallel, files larger than chunkSize bytes are also split and checked in parallel (see
+     * FileCheckRunner.withChunkSize())
+     */
+    public CheckRunner withChunkSize( long chunkSize )
+    {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Writes a RunReport to reportFile once all checks completed, with timings of the columns of all
+     * TimedFileChecks. Timing adds a few clock reads per column value, so runs with a report are a little slower.
+     */
+    public CheckRunner withRunReport( File reportFile )
+    {
+        this.reportFile = reportFile;
+        return this;
+    }
+
+    /**
+     * Logs progress, throughput and ETA every intervalMillis, see ProgressReporter
+     *
+     * @param intervalMillis 0 to not report progress
+     */
+    public CheckRunner withProgress( long intervalMillis )
+    {
+        this.progressIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * Skips files that did not change since the last run with the same stateDirectory, and restores the ColumnRefs
+     * they wrote to from snapshots, see IncrementalState
+     *
+     * @param configuration parameters of the checks, all files are checked again when it, or the code of the checks,
+     *            changes
+     */
+    public CheckRunner withIncremental( File stateDirectory, String configuration )
+    {
+        this.incrementalDirectory = stateDirectory;
+        this.incrementalConfiguration = configuration;
+        return this;
     }
 
     public void check() throws ColumnCheckException, FileCheckException, DirectoryCheckException
     {
+        // checks may create new FileChecks every call
+        List<FileCheck> fileChecks = check.getFileChecks();
+        RunReport runReport = null;
+        FailedCheckPolicy policy = this.policy;
+        if ( null != reportFile || null != incrementalDirectory )
+        {
+            // failures are counted per FileCheck for the report, and to know which files passed
+            runReport = new RunReport();
+            policy = runReport.countFailures( policy );
+        }
+        if ( null != reportFile )
+        {
+            for ( FileCheck fileCheck : fileChecks )
+            {
+                if ( fileCheck instanceof TimedFileCheck ) ( (TimedFileCheck) fileCheck ).withTimings();
+            }
+        }
+
         // Directory checks
         logger.info( String.format( "Performing directory checks on %s", directory.getAbsolutePath() ) );
         FailedDirectoryCheckPolicy directoryPolicy = policy.getFailedDirectoryCheckPolicy();
@@ -35,12 +134,231 @@ public class CheckRunner
             directoryCheck.checkDirectory( directoryPolicy, directory );
         }
 
-        // Individual file checks
+        // Individual file checks, grouped by file
         logger.info( "Performing file checks" );
-        FileCheckRunner fileCheckRunner = new FileCheckRunner( policy );
-        for ( FileCheck fileCheck : check.getFileChecks() )
+        FileCheckRunner fileCheckRunner = new FileCheckRunner( policy, readerType ).withChunkSize( chunkSize );
+        fileCheckRunner.withRunReport( ( null == reportFile ) ? null : runReport );
+        FileCheckGraph graph = new FileCheckGraph( fileChecks );
+        IncrementalState state = null;
+        if ( null != incrementalDirectory )
         {
-            fileCheckRunner.checkFile( fileCheck );
+            try
+            {
+                String configuration = String.format( "%s[%s] code %s", check.getClass().getName(),
+                        incrementalConfiguration, IncrementalState.codeHash( check.getClass(), CheckRunner.class ) );
+                state = new IncrementalState( incrementalDirectory, configuration );
+                state.skipUnchanged( graph );
+                fileCheckRunner.withContentHashes( state.getContentHashes() );
+            }
+            catch ( IOException e )
+            {
+                throw new FileCheckException( String.format( "Error reading incremental state from [%s]",
+                        incrementalDirectory.getAbsolutePath() ), e );
+            }
         }
+        ProgressReporter progressReporter = null;
+        if ( progressIntervalMillis > 0 )
+        {
+            progressReporter = new ProgressReporter( totalBytes( graph, state ), progressIntervalMillis );
+            fileCheckRunner.withProgressReporter( progressReporter );
+            progressReporter.start();
+        }
+        try
+        {
+            if ( 1 == threadCount )
+            {
+                Map<ColumnRef<?>, Integer> remainingWriters = writerCounts( graph );
+                for ( Node node : graph.getNodes() )
+                {
+                    checkNode( fileCheckRunner, node, state, runReport );
+                    freezeWrittenColumnRefs( node, remainingWriters );
+                }
+            }
+            else
+            {
+                checkInParallel( fileCheckRunner, graph, state, runReport );
+            }
+        }
+        finally
+        {
+            if ( null != progressReporter ) progressReporter.stop();
+        }
+
+        if ( null != state )
+        {
+            try
+            {
+                state.save();
+            }
+            catch ( IOException e )
+            {
+                throw new FileCheckException( String.format( "Error saving incremental state to [%s]",
+                        incrementalDirectory.getAbsolutePath() ), e );
+            }
+        }
+
+        if ( null != reportFile )
+        {
+            try
+            {
+                runReport.write( reportFile );
+            }
+            catch ( IOException e )
+            {
+                throw new FileCheckException( String.format( "Error writing run report [%s]",
+                        reportFile.getAbsolutePath() ), e );
+            }
+            logger.info( String.format( "Run report written to %s", reportFile.getAbsolutePath() ) );
+        }
+    }
+
+    /*
+     * Checks every file as soon as all files it depends on (see FileCheckGraph) have been checked. Runs in a
+     * ForkJoinPool so large files can be split into chunks that share the same threads.
+     */
+    private void checkInParallel( FileCheckRunner fileCheckRunner, FileCheckGraph graph, IncrementalState state,
+            RunReport runReport ) throws ColumnCheckException, FileCheckException
+    {
+        logger.info( String.format( "Using %s threads", threadCount ) );
+        Map<Node, Integer> remainingDependencies = new HashMap<Node, Integer>();
+        Map<ColumnRef<?>, Integer> remainingWriters = writerCounts( graph );
+
+        ExecutorService executor = new ForkJoinPool( threadCount );
+        CompletionService<Node> completionService = new ExecutorCompletionService<Node>( executor );
+        try
+        {
+            int running = 0;
+            for ( Node node : graph.getNodes() )
+            {
+                remainingDependencies.put( node, node.getDependencies().size() );
+                if ( node.getDependencies().isEmpty() )
+                {
+                    completionService.submit( newTask( fileCheckRunner, node, state, runReport ) );
+                    running++;
+                }
+            }
+            while ( running > 0 )
+            {
+                Node completed = completionService.take().get();
+                running--;
+                // before dependents are submitted, so they see the frozen ColumnRefs
+                freezeWrittenColumnRefs( completed, remainingWriters );
+                for ( Node dependent : completed.getDependents() )
+                {
+                    int remaining = remainingDependencies.get( dependent ) - 1;
+                    remainingDependencies.put( dependent, remaining );
+                    if ( 0 == remaining )
+                    {
+                        completionService.submit( newTask( fileCheckRunner, dependent, state, runReport ) );
+                        running++;
+                    }
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new FileCheckException( "Interrupted while waiting for file checks to complete", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof ColumnCheckException ) throw (ColumnCheckException) cause;
+            if ( cause instanceof FileCheckException ) throw (FileCheckException) cause;
+            if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            if ( cause instanceof Error ) throw (Error) cause;
+            throw new FileCheckException( "File check failed unexpectedly", cause );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Checks the files of node, unless an incremental run skips them
+     */
+    private static void checkNode( FileCheckRunner fileCheckRunner, Node node, IncrementalState state,
+            RunReport runReport ) throws ColumnCheckException, FileCheckException
+    {
+        if ( null != state && state.isSkipped( node ) ) return;
+        fileCheckRunner.checkFile( node.getFileChecks() );
+        if ( null == state ) return;
+        long failureCount = 0;
+        for ( FileCheck fileCheck : node.getFileChecks() )
+        {
+            failureCount += runReport.getFailureCount( fileCheck );
+        }
+        try
+        {
+            state.checked( node, 0 == failureCount );
+        }
+        catch ( IOException e )
+        {
+            throw new FileCheckException( String.format( "Error saving incremental state of [%s]",
+                    node.getFile().getAbsolutePath() ), e );
+        }
+    }
+
+    /*
+     * Bytes of all files to check, each file is read once
+     */
+    private static long totalBytes( FileCheckGraph graph, IncrementalState state )
+    {
+        long totalBytes = 0;
+        for ( Node node : graph.getNodes() )
+        {
+            if ( null != state && state.isSkipped( node ) ) continue;
+            totalBytes += node.getFileChecks().get( 0 ).forFile().length();
+        }
+        return totalBytes;
+    }
+
+    /*
+     * Number of files that write to each ColumnRef
+     */
+    private static Map<ColumnRef<?>, Integer> writerCounts( FileCheckGraph graph )
+    {
+        Map<ColumnRef<?>, Integer> writerCounts = new HashMap<ColumnRef<?>, Integer>();
+        for ( Node node : graph.getNodes() )
+        {
+            for ( ColumnRef<?> columnRef : node.getWritesTo() )
+            {
+                Integer count = writerCounts.get( columnRef );
+                writerCounts.put( columnRef, ( null == count ) ? 1 : count + 1 );
+            }
+        }
+        return writerCounts;
+    }
+
+    /*
+     * Freezes the ColumnRefs that no file still to be checked writes to
+     */
+    private static void freezeWrittenColumnRefs( Node completed, Map<ColumnRef<?>, Integer> remainingWriters )
+    {
+        for ( ColumnRef<?> columnRef : completed.getWritesTo() )
+        {
+            int remaining = remainingWriters.get( columnRef ) - 1;
+            remainingWriters.put( columnRef, remaining );
+            if ( 0 == remaining )
+            {
+                logger.info( String.format( "Freezing ColumnRef[%s]", columnRef.getName() ) );
+                columnRef.freeze();
+            }
+        }
+    }
+
+    private static Callable<Node> newTask( final FileCheckRunner fileCheckRunner, final Node node,
+            final IncrementalState state, final RunReport runReport )
+    {
+        return new Callable<Node>()
+        {
+            @Override
+            public Node call() throws Exception
+            {
+                checkNode( fileCheckRunner, node, state, runReport );
+                return node;
+            }
+        };
     }
 }
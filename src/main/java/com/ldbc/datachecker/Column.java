@@ -1,62 +1,362 @@
 package com.ldbc.datachecker;
 
+import java.nio.ByteBuffer;
 import java.text.Normalizer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 import java.util.regex.Pattern;
 
 import org.apache.commons.validator.routines.UrlValidator;
 
-import com.google.common.base.Function;
+import com.ldbc.datachecker.ColumnRef.AbstractLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.ChunkRef;
+import com.ldbc.datachecker.ExternalLongColumnRef.MissingValueHandler;
+import com.ldbc.datachecker.ExternalLongColumnRef.Probes;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
 
 public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
 {
     private List<ColumnRef<VALUE_TYPE>> saveToColumnRefs = new ArrayList<ColumnRef<VALUE_TYPE>>();
     private List<ColumnRef<VALUE_TYPE>> checkInColumnRefs = new ArrayList<ColumnRef<VALUE_TYPE>>();
     private List<ColumnRef<VALUE_TYPE>> saveToAndCheckUniqueColumnRefs = new ArrayList<ColumnRef<VALUE_TYPE>>();
+    private boolean chunk = false;
+    private Probes[] checkInProbes = null;
+    private int cacheSize = 0;
+    private Map<String, List<String[]>> verdictCache = null;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private Timings timings = null;
 
     public final void check( FailedColumnCheckPolicy policy, String columnString ) throws ColumnCheckException
     {
+        long start = startTiming();
+        if ( null != verdictCache && isCacheable() && false == hasColumnRefs() )
+        {
+            checkCached( policy, columnString );
+            timeCheck( start );
+            return;
+        }
         try
         {
             VALUE_TYPE value = parse( columnString );
+            start = timeParse( start );
+            checkColumnRefs( policy, value, columnString );
+            start = timeColumnRefs( start );
+            doCheck( policy, value );
+            timeCheck( start );
+        }
+        catch ( ColumnParseException e )
+        {
+            timeParse( start );
+            policy.handleFailedColumnCheck( columnString,
+                    String.format( "Failed to parse [%s] - %s", columnString, e.getMessage() ) );
+        }
+    }
+
+    private void checkColumnRefs( FailedColumnCheckPolicy policy, VALUE_TYPE value, String columnString )
+            throws ColumnCheckException
+    {
+        for ( ColumnRef<VALUE_TYPE> columnRef : saveToColumnRefs )
+        {
+            columnRef.add( value );
+        }
 
-            for ( ColumnRef<VALUE_TYPE> columnRef : saveToColumnRefs )
+        for ( ColumnRef<VALUE_TYPE> columnRef : saveToAndCheckUniqueColumnRefs )
+        {
+            boolean duplicate = ( false == columnRef.add( value ) );
+            if ( duplicate )
             {
-                columnRef.add( value );
+                String errMsg = String.format( "Value %s part of duplicate entry in ColumnRef[%s]", value,
+                        columnRef.getName() );
+                policy.handleFailedColumnCheck( columnString, errMsg );
             }
+        }
 
-            for ( ColumnRef<VALUE_TYPE> columnRef : saveToAndCheckUniqueColumnRefs )
+        for ( int i = 0; i < checkInColumnRefs.size(); i++ )
+        {
+            ColumnRef<VALUE_TYPE> columnRef = checkInColumnRefs.get( i );
+            if ( columnRef instanceof ExternalLongColumnRef )
             {
-                boolean duplicate = ( false == columnRef.add( value ) );
-                if ( duplicate )
-                {
-                    String errMsg = String.format( "Value %s part of duplicate entry in ColumnRef[%s]", value,
-                            columnRef.getName() );
-                    policy.handleFailedColumnCheck( columnString, errMsg );
-                }
+                probes( i ).add( ( (Long) value ).longValue(), policy.getLineNumber() );
             }
+            else if ( false == columnRef.contains( value ) )
+            {
+                String errMsg = String.format( "Value %s not found in ColumnRef[%s]", value, columnRef.getName() );
+                policy.handleFailedColumnCheck( columnString, errMsg );
+            }
+        }
+    }
+
+    /**
+     * ColumnRef part of check() only, for columns that are no longer validated (see
+     * ExpectedColumns.withMaxFailuresPerColumn()) but whose values other files look up. Values that can not be parsed
+     * are skipped silently.
+     */
+    public void checkColumnRefs( FailedColumnCheckPolicy policy, CsvLine line, int column )
+            throws ColumnCheckException
+    {
+        if ( false == hasColumnRefs() ) return;
+        long start = startTiming();
+        String columnString = line.getString( column );
+        VALUE_TYPE value;
+        try
+        {
+            value = parse( columnString );
+        }
+        catch ( ColumnParseException e )
+        {
+            // not validated
+            timeParse( start );
+            return;
+        }
+        start = timeParse( start );
+        checkColumnRefs( policy, value, columnString );
+        timeColumnRefs( start );
+    }
+
+    /**
+     * Remembers the failures (if any) reported for the last cacheSize distinct values, so values that repeat are
+     * parsed and validated once. Only used while the column has no ColumnRefs and its checks do not depend on earlier
+     * values, see isCacheable().
+     */
+    public final COLUMN_TYPE withCache( final int cacheSize )
+    {
+        this.cacheSize = cacheSize;
+        this.verdictCache = new LinkedHashMap<String, List<String[]>>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, List<String[]>> eldest )
+            {
+                return size() > cacheSize;
+            }
+        };
+        return (COLUMN_TYPE) this;
+    }
+
+    public final long getCacheHits()
+    {
+        return cacheHits;
+    }
+
+    public final long getCacheMisses()
+    {
+        return cacheMisses;
+    }
+
+    /**
+     * @return false if the verdict for a value depends on earlier values, e.g. consecutive numbers
+     */
+    protected boolean isCacheable()
+    {
+        return true;
+    }
 
-            for ( ColumnRef<VALUE_TYPE> columnRef : checkInColumnRefs )
+    private void checkCached( FailedColumnCheckPolicy policy, String columnString ) throws ColumnCheckException
+    {
+        List<String[]> failures = verdictCache.get( columnString );
+        if ( null == failures )
+        {
+            cacheMisses++;
+            final List<String[]> recordedFailures = new ArrayList<String[]>( 1 );
+            FailedColumnCheckPolicy recordingPolicy = new FailedColumnCheckPolicy( policy.getFileCheck(),
+                    policy.getLineNumber(), null )
             {
-                if ( false == columnRef.contains( value ) )
+                @Override
+                public void handleFailedColumnCheck( String failedColumnString, String message )
                 {
-                    String errMsg = String.format( "Value %s not found in ColumnRef[%s]", value, columnRef.getName() );
-                    policy.handleFailedColumnCheck( columnString, errMsg );
+                    recordedFailures.add( new String[] { failedColumnString, message } );
                 }
+            };
+            try
+            {
+                doCheck( recordingPolicy, parse( columnString ) );
             }
+            catch ( ColumnParseException e )
+            {
+                recordingPolicy.handleFailedColumnCheck( columnString,
+                        String.format( "Failed to parse [%s] - %s", columnString, e.getMessage() ) );
+            }
+            failures = recordedFailures.isEmpty() ? Collections.<String[]> emptyList() : recordedFailures;
+            verdictCache.put( columnString, failures );
+        }
+        else
+        {
+            cacheHits++;
+        }
+        for ( int i = 0; i < failures.size(); i++ )
+        {
+            policy.handleFailedColumnCheck( failures.get( i )[0], failures.get( i )[1] );
+        }
+    }
 
-            doCheck( policy, value );
+    /**
+     * Checks one column of a line, column types that can validate raw bytes override this to avoid decoding
+     */
+    public void check( FailedColumnCheckPolicy policy, CsvLine line, int column ) throws ColumnCheckException
+    {
+        long start = startTiming();
+        String columnString = line.getString( column );
+        timeParse( start );
+        check( policy, columnString );
+    }
+
+    /**
+     * Measures the time check() spends parsing values, checking them and in ColumnRefs, see getTimings()
+     */
+    public final COLUMN_TYPE withTimings()
+    {
+        this.timings = new Timings();
+        return (COLUMN_TYPE) this;
+    }
+
+    /**
+     * @return null unless withTimings() was called
+     */
+    public final Timings getTimings()
+    {
+        return timings;
+    }
+
+    /*
+     * Each phase of a check is timed from the end of the previous one, so the time of the next phase starts at the
+     * returned value. Without timings these return 0 and read no clock.
+     */
+    protected final long startTiming()
+    {
+        return ( null == timings ) ? 0 : System.nanoTime();
+    }
+
+    protected final long timeParse( long start )
+    {
+        if ( null == timings ) return 0;
+        long now = System.nanoTime();
+        timings.parseNanos += now - start;
+        return now;
+    }
+
+    protected final long timeCheck( long start )
+    {
+        if ( null == timings ) return 0;
+        long now = System.nanoTime();
+        timings.checkNanos += now - start;
+        return now;
+    }
+
+    protected final long timeColumnRefs( long start )
+    {
+        if ( null == timings ) return 0;
+        long now = System.nanoTime();
+        timings.columnRefNanos += now - start;
+        return now;
+    }
+
+    /**
+     * ColumnRef part of check(), for columns whose values are longs. Values are not boxed when the ColumnRefs are
+     * AbstractLongColumnRefs.
+     */
+    protected final void checkColumnRefs( FailedColumnCheckPolicy policy, long value, CsvLine line, int column )
+            throws ColumnCheckException
+    {
+        for ( int i = 0; i < saveToColumnRefs.size(); i++ )
+        {
+            add( saveToColumnRefs.get( i ), value );
         }
-        catch ( ColumnParseException e )
+
+        for ( int i = 0; i < saveToAndCheckUniqueColumnRefs.size(); i++ )
         {
-            policy.handleFailedColumnCheck( columnString,
-                    String.format( "Failed to parse [%s] - %s", columnString, e.getMessage() ) );
+            ColumnRef<VALUE_TYPE> columnRef = saveToAndCheckUniqueColumnRefs.get( i );
+            boolean duplicate = ( false == add( columnRef, value ) );
+            if ( duplicate )
+            {
+                String errMsg = String.format( "Value %s part of duplicate entry in ColumnRef[%s]", value,
+                        columnRef.getName() );
+                policy.handleFailedColumnCheck( line.getString( column ), errMsg );
+            }
         }
+
+        for ( int i = 0; i < checkInColumnRefs.size(); i++ )
+        {
+            ColumnRef<VALUE_TYPE> columnRef = checkInColumnRefs.get( i );
+            if ( columnRef instanceof ExternalLongColumnRef )
+            {
+                probes( i ).add( value, policy.getLineNumber() );
+            }
+            else if ( false == contains( columnRef, value ) )
+            {
+                String errMsg = String.format( "Value %s not found in ColumnRef[%s]", value, columnRef.getName() );
+                policy.handleFailedColumnCheck( line.getString( column ), errMsg );
+            }
+        }
+    }
+
+    private static boolean add( ColumnRef<?> columnRef, long value )
+    {
+        if ( columnRef instanceof AbstractLongColumnRef )
+        {
+            return ( (AbstractLongColumnRef) columnRef ).add( value );
+        }
+        return ( (ColumnRef<Long>) columnRef ).add( value );
+    }
+
+    private static boolean contains( ColumnRef<?> columnRef, long value )
+    {
+        if ( columnRef instanceof AbstractLongColumnRef )
+        {
+            return ( (AbstractLongColumnRef) columnRef ).contains( value );
+        }
+        return ( (ColumnRef<Long>) columnRef ).contains( value );
+    }
+
+    /*
+     * Values checked in an ExternalLongColumnRef are recorded, and verified by checkDeferred()
+     */
+    private Probes probes( int checkInIndex )
+    {
+        if ( null == checkInProbes )
+        {
+            checkInProbes = new Probes[checkInColumnRefs.size()];
+        }
+        if ( null == checkInProbes[checkInIndex] )
+        {
+            checkInProbes[checkInIndex] = ( (ExternalLongColumnRef) checkInColumnRefs.get( checkInIndex ) ).newProbes();
+        }
+        return checkInProbes[checkInIndex];
+    }
+
+    /**
+     * Reports values that were not found in ColumnRefs that can only be checked once the whole file has been read,
+     * i.e. ExternalLongColumnRefs. Call after the last line of the file was checked.
+     *
+     * @param column index of this column in the file, used in failure messages
+     */
+    public final void checkDeferred( final FileCheck fileCheck, final FailedFileCheckPolicy filePolicy,
+            final int column ) throws FileCheckException
+    {
+        if ( null == checkInProbes ) return;
+        for ( final Probes probes : checkInProbes )
+        {
+            if ( null == probes ) continue;
+            probes.verify( new MissingValueHandler()
+            {
+                @Override
+                public void handleMissingValue( long value, long lineNumber ) throws FileCheckException
+                {
+                    String errMsg = String.format( "Value %s in column %s not found in ColumnRef[%s]", value, column,
+                            probes.getColumnRef().getName() );
+                    filePolicy.handleFailedLineCheck( fileCheck, errMsg, lineNumber, new String[0] );
+                }
+            } );
+        }
+        checkInProbes = null;
     }
 
     public abstract VALUE_TYPE parse( String columnString ) throws ColumnParseException;
@@ -72,16 +372,126 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
 
     public final COLUMN_TYPE checkIn( ColumnRef<VALUE_TYPE> columnRef )
     {
+        if ( columnRef instanceof ColumnRef.LongPairColumnRef )
+        {
+            throw new IllegalArgumentException( String.format(
+                    "ColumnRef[%s] contains pairs, values can not be checked in it", columnRef.getName() ) );
+        }
         checkInColumnRefs.add( columnRef );
         return (COLUMN_TYPE) this;
     }
 
     public final COLUMN_TYPE saveToGroupAndCheckUnique( ColumnRef<VALUE_TYPE> columnRef )
     {
+        if ( columnRef instanceof ExternalLongColumnRef )
+        {
+            throw new IllegalArgumentException( String.format( "ColumnRef[%s] can not detect duplicates",
+                    columnRef.getName() ) );
+        }
         saveToAndCheckUniqueColumnRefs.add( columnRef );
         return (COLUMN_TYPE) this;
     }
 
+    public final List<ColumnRef<VALUE_TYPE>> getSaveToColumnRefs()
+    {
+        return Collections.unmodifiableList( saveToColumnRefs );
+    }
+
+    public final List<ColumnRef<VALUE_TYPE>> getCheckInColumnRefs()
+    {
+        return Collections.unmodifiableList( checkInColumnRefs );
+    }
+
+    public final List<ColumnRef<VALUE_TYPE>> getSaveToGroupAndCheckUniqueColumnRefs()
+    {
+        return Collections.unmodifiableList( saveToAndCheckUniqueColumnRefs );
+    }
+
+    protected final boolean hasColumnRefs()
+    {
+        return false == ( saveToColumnRefs.isEmpty() && checkInColumnRefs.isEmpty() && saveToAndCheckUniqueColumnRefs
+                .isEmpty() );
+    }
+
+    /*
+     * Chunked checking
+     */
+
+    /**
+     * @return column of the same type and configuration, with fresh state and no ColumnRefs
+     */
+    protected abstract COLUMN_TYPE newInstance();
+
+    /**
+     * @return false if values must be checked in a single pass, i.e. when uniqueness is checked or when values saved
+     *         by this column are also looked up by it
+     */
+    public final boolean isSplittable()
+    {
+        if ( false == saveToAndCheckUniqueColumnRefs.isEmpty() ) return false;
+        for ( ColumnRef<VALUE_TYPE> columnRef : saveToColumnRefs )
+        {
+            if ( checkInColumnRefs.contains( columnRef ) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return copy used to check one chunk of a file, values it saves are buffered until mergeChunks()
+     */
+    public final COLUMN_TYPE newChunk()
+    {
+        Column<VALUE_TYPE, COLUMN_TYPE> chunk = newInstance();
+        chunk.chunk = true;
+        for ( ColumnRef<VALUE_TYPE> columnRef : saveToColumnRefs )
+        {
+            chunk.saveToColumnRefs.add( columnRef.newChunkRef() );
+        }
+        chunk.checkInColumnRefs.addAll( checkInColumnRefs );
+        if ( null != verdictCache ) chunk.withCache( cacheSize );
+        if ( null != timings ) chunk.withTimings();
+        return (COLUMN_TYPE) chunk;
+    }
+
+    /**
+     * Saves values buffered by chunks, in file order, and combines their state into this column
+     *
+     * @param chunks columns returned by newChunk(), in file order
+     */
+    public final void mergeChunks( List<COLUMN_TYPE> chunks, FileCheck fileCheck, FailedCheckPolicy policy )
+            throws ColumnCheckException
+    {
+        for ( COLUMN_TYPE chunk : chunks )
+        {
+            Column<VALUE_TYPE, COLUMN_TYPE> chunkColumn = chunk;
+            for ( ColumnRef<VALUE_TYPE> columnRef : chunkColumn.saveToColumnRefs )
+            {
+                ( (ChunkRef) columnRef ).flush();
+            }
+            for ( int i = 0; null != chunkColumn.checkInProbes && i < chunkColumn.checkInProbes.length; i++ )
+            {
+                if ( null != chunkColumn.checkInProbes[i] ) probes( i ).addAll( chunkColumn.checkInProbes[i] );
+            }
+            cacheHits += chunkColumn.cacheHits;
+            cacheMisses += chunkColumn.cacheMisses;
+            if ( null != timings && null != chunkColumn.timings ) timings.add( chunkColumn.timings );
+        }
+        doMergeChunks( chunks, fileCheck, policy );
+    }
+
+    protected void doMergeChunks( List<COLUMN_TYPE> chunks, FileCheck fileCheck, FailedCheckPolicy policy )
+            throws ColumnCheckException
+    {
+    }
+
+    /**
+     * @return true if this column checks a chunk of a file, i.e. it was created by newChunk()
+     */
+    protected final boolean isChunk()
+    {
+        return chunk;
+    }
+
     /*
      * Column API
      */
@@ -111,6 +521,16 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         return new EmailAddressColumn();
     }
 
+    public static IpAddressColumn isIpAddress()
+    {
+        return new IpAddressColumn();
+    }
+
+    public static ImageFileColumn isImageFile( String extension, boolean optional )
+    {
+        return new ImageFileColumn( extension, optional );
+    }
+
     public static FiniteSetColumn isFiniteSet( String... validValues )
     {
         return new FiniteSetColumn( validValues );
@@ -127,263 +547,670 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
 
     public abstract static class NumberColumn<T extends Number, C extends NumberColumn> extends Column<T, C>
     {
-        private T minVal;
-        private T maxVal;
-        private T nextExpectedValue;
+        private T minVal = null;
+        private T maxVal = null;
+        private long min = Long.MIN_VALUE;
+        private long max = Long.MAX_VALUE;
+        private T firstConsecutiveValue = null;
+        private T consecutiveIncrement = null;
+        private long increment;
+        private long nextExpectedValue;
+
+        /*
+         * Chunk state, a chunk does not know the value preceding its first line until chunks are merged
+         */
+        private boolean hasChunkFirstValue = false;
+        private long chunkFirstValue;
+        private long chunkFirstLineNumber;
+        private String[] chunkFirstRow;
+        private int chunkFirstColumn;
+
+        /**
+         * Each value must equal the previous value plus incrementBy, after a violation the sequence continues from
+         * the value that was found
+         */
+        public C withConsecutive( final T firstVal, final T incrementBy )
+        {
+            firstConsecutiveValue = firstVal;
+            consecutiveIncrement = incrementBy;
+            increment = incrementBy.longValue();
+            nextExpectedValue = firstVal.longValue();
+            return (C) this;
+        }
+
+        public C withMin( final T min )
+        {
+            this.minVal = min;
+            this.min = min.longValue();
+            return (C) this;
+        }
+
+        public C withMax( final T max )
+        {
+            this.maxVal = max;
+            this.max = max.longValue();
+            return (C) this;
+        }
+
+        @Override
+        protected boolean isCacheable()
+        {
+            return null == consecutiveIncrement;
+        }
+
+        /**
+         * Parses a column without creating objects, accepting exactly what parse() accepts
+         *
+         * @throws NumberFormatException if parse() would fail
+         */
+        protected abstract long parseLong( CsvLine line, int column ) throws NumberFormatException;
+
+        /**
+         * @return t1 + t2, with the overflow behaviour of T
+         */
+        protected abstract long sum( long t1, long t2 );
+
+        protected final C copyConfigurationTo( C copy )
+        {
+            NumberColumn<T, C> numberColumn = copy;
+            if ( null != minVal ) numberColumn.withMin( minVal );
+            if ( null != maxVal ) numberColumn.withMax( maxVal );
+            if ( null != consecutiveIncrement ) numberColumn.withConsecutive( firstConsecutiveValue,
+                    consecutiveIncrement );
+            return copy;
+        }
+
+        /**
+         * Same as check( policy, line.getString( column ) ), but values are parsed, checked and saved as primitives
+         */
+        @Override
+        public final void check( FailedColumnCheckPolicy policy, CsvLine line, int column )
+                throws ColumnCheckException
+        {
+            long start = startTiming();
+            long value;
+            try
+            {
+                value = parseLong( line, column );
+            }
+            catch ( NumberFormatException e )
+            {
+                timeParse( start );
+                // report the same failure parse() does
+                check( policy, line.getString( column ) );
+                return;
+            }
+            start = timeParse( start );
+            checkColumnRefs( policy, value, line, column );
+            start = timeColumnRefs( start );
+            doCheck( policy, value );
+            timeCheck( start );
+        }
+
+        @Override
+        public final void checkColumnRefs( FailedColumnCheckPolicy policy, CsvLine line, int column )
+                throws ColumnCheckException
+        {
+            if ( false == hasColumnRefs() ) return;
+            long start = startTiming();
+            long value;
+            try
+            {
+                value = parseLong( line, column );
+            }
+            catch ( NumberFormatException e )
+            {
+                // not validated
+                timeParse( start );
+                return;
+            }
+            start = timeParse( start );
+            checkColumnRefs( policy, value, line, column );
+            timeColumnRefs( start );
+        }
+
+        @Override
+        protected final void doCheck( FailedColumnCheckPolicy policy, T columnValue ) throws ColumnCheckException
+        {
+            doCheck( policy, columnValue.longValue() );
+        }
+
+        private void doCheck( FailedColumnCheckPolicy policy, long value ) throws ColumnCheckException
+        {
+            if ( value < min || value > max )
+            {
+                policy.handleFailedColumnCheck( Long.toString( value ),
+                        String.format( "%s outside of range (%s,%s)", value, minVal, maxVal ) );
+            }
+            if ( null != consecutiveIncrement )
+            {
+                if ( isChunk() && false == hasChunkFirstValue )
+                {
+                    hasChunkFirstValue = true;
+                    chunkFirstValue = value;
+                    chunkFirstLineNumber = policy.getLineNumber();
+                    chunkFirstRow = policy.getRow();
+                    chunkFirstColumn = policy.getColumn();
+                }
+                else if ( value != nextExpectedValue )
+                {
+                    policy.handleFailedColumnCheck( Long.toString( value ), String.format(
+                            "Values should be consecutive, expected %s found %s", nextExpectedValue, value ) );
+                }
+                nextExpectedValue = sum( value, increment );
+            }
+        }
+
+        @Override
+        protected void doMergeChunks( List<C> chunks, FileCheck fileCheck, FailedCheckPolicy policy )
+                throws ColumnCheckException
+        {
+            if ( null == consecutiveIncrement ) return;
+            for ( C chunk : chunks )
+            {
+                NumberColumn<T, C> numberChunk = chunk;
+                if ( false == numberChunk.hasChunkFirstValue ) continue;
+                if ( numberChunk.chunkFirstValue != nextExpectedValue )
+                {
+                    FailedColumnCheckPolicy chunkPolicy = policy.getFailedColumnCheckPolicy( fileCheck,
+                            numberChunk.chunkFirstLineNumber, CsvLine.fromColumns( numberChunk.chunkFirstRow ) )
+                            .forColumn( numberChunk.chunkFirstColumn );
+                    chunkPolicy.handleFailedColumnCheck( Long.toString( numberChunk.chunkFirstValue ), String.format(
+                            "Values should be consecutive, expected %s found %s", nextExpectedValue,
+                            numberChunk.chunkFirstValue ) );
+                }
+                nextExpectedValue = numberChunk.nextExpectedValue;
+            }
+        }
+    }
+
+    public static class IntegerColumn extends NumberColumn<Integer, IntegerColumn>
+    {
+        @Override
+        protected IntegerColumn newInstance()
+        {
+            return copyConfigurationTo( new IntegerColumn() );
+        }
 
-        protected Function<T, Boolean> minViolated = Utils.constantFun( false );
-        private Function<T, Boolean> maxViolated = Utils.constantFun( false );
-        private Function<T, Boolean> consecutiveViolated = Utils.constantFun( false );
+        @Override
+        public Integer parse( String columnString ) throws ColumnParseException
+        {
+            try
+            {
+                return Integer.parseInt( columnString );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new ColumnParseException( e.getCause() );
+            }
+        }
+
+        @Override
+        protected long parseLong( CsvLine line, int column ) throws NumberFormatException
+        {
+            long value = line.getLong( column );
+            if ( value < Integer.MIN_VALUE || value > Integer.MAX_VALUE )
+            {
+                throw new NumberFormatException( "Value out of range for int: " + value );
+            }
+            return value;
+        }
+
+        @Override
+        protected long sum( long t1, long t2 )
+        {
+            return (int) t1 + (int) t2;
+        }
+    }
+
+    public static class LongColumn extends NumberColumn<Long, LongColumn>
+    {
+        @Override
+        protected LongColumn newInstance()
+        {
+            return copyConfigurationTo( new LongColumn() );
+        }
+
+        @Override
+        public Long parse( String columnString ) throws ColumnParseException
+        {
+            try
+            {
+                return Long.parseLong( columnString );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new ColumnParseException( e.getCause() );
+            }
+        }
+
+        @Override
+        protected long parseLong( CsvLine line, int column ) throws NumberFormatException
+        {
+            return line.getLong( column );
+        }
+
+        @Override
+        protected long sum( long t1, long t2 )
+        {
+            return t1 + t2;
+        }
+    }
+
+    public static class StringColumn extends Column<String, StringColumn>
+    {
+        private Pattern regex = null;
+        private boolean keepAccents = true;
+        private AccentRemover accentRemover = null;
+
+        public StringColumn withRegex( String regexString )
+        {
+            regex = Pattern.compile( regexString );
+            return this;
+        }
+
+        // TODO remove?
+        public StringColumn withAccents( boolean keepAccents )
+        {
+            this.keepAccents = keepAccents;
+            this.accentRemover = keepAccents ? null : new AccentRemover( false );
+            return this;
+        }
+
+        @Override
+        protected StringColumn newInstance()
+        {
+            StringColumn copy = new StringColumn().withAccents( keepAccents );
+            copy.regex = regex;
+            return copy;
+        }
+
+
+        @Override
+        public String parse( String columnString )
+        {
+            return columnString;
+        }
+
+        @Override
+        protected void doCheck( FailedColumnCheckPolicy policy, String columnValue ) throws ColumnCheckException
+        {
+            if ( null == regex )
+            {
+                return;
+            }
+            if ( false == keepAccents )
+            {
+                columnValue = accentRemover.removeAccents( columnValue );
+            }
+            if ( false == regex.matcher( columnValue ).matches() )
+            {
+                policy.handleFailedColumnCheck( columnValue,
+                        String.format( "Invalid string pattern, expected: %s", regex.toString() ) );
+            }
+        }
+    }
+
+    /**
+     * String column validated by a scan over the bytes of the line, without decoding them. Values are only decoded to
+     * report failures, or when the column has ColumnRefs. Lines created from Strings are validated by doCheck(), which
+     * encodes this column only.
+     */
+    public abstract static class ByteValidatedColumn<C extends ByteValidatedColumn> extends Column<String, C>
+    {
+        /**
+         * @return true if the UTF-8 bytes between start and end are a valid value
+         */
+        protected abstract boolean isValid( ByteBuffer buffer, int start, int end );
+
+        protected abstract String failureMessage();
+
+        @Override
+        public final void check( FailedColumnCheckPolicy policy, CsvLine line, int column )
+                throws ColumnCheckException
+        {
+            if ( hasColumnRefs() || false == line.hasBytes() )
+            {
+                super.check( policy, line, column );
+                return;
+            }
+            long start = startTiming();
+            boolean valid = isValid( line.buffer(), line.start( column ), line.end( column ) );
+            timeCheck( start );
+            if ( false == valid )
+            {
+                super.check( policy, line, column );
+            }
+        }
+
+        @Override
+        public final String parse( String columnString )
+        {
+            return columnString;
+        }
+
+        @Override
+        protected final void doCheck( FailedColumnCheckPolicy policy, String columnValue )
+                throws ColumnCheckException
+        {
+            byte[] bytes = columnValue.getBytes( CsvLine.CHARSET );
+            if ( false == isValid( ByteBuffer.wrap( bytes ), 0, bytes.length ) )
+            {
+                policy.handleFailedColumnCheck( columnValue, failureMessage() );
+            }
+        }
+
+        protected static boolean isWordCharacter( int b )
+        {
+            return ( b >= 'a' && b <= 'z' ) || ( b >= 'A' && b <= 'Z' ) || ( b >= '0' && b <= '9' ) || '_' == b;
+        }
+    }
+
+    /**
+     * Accepts the same values as the regex ^\w+([\.\-]\w+)*@\w+([\.\-]\w+)*\.\w{2,4}$, in a single pass
+     */
+    public static class EmailAddressColumn extends ByteValidatedColumn<EmailAddressColumn>
+    {
+        // private final Pattern regex = Pattern.compile(
+        // "^[\\d\\w\\.\\-_]+@[[\\d\\w\\-]+\\.]+\\w{2,4}$" );
+        private static final String REGEX = "^\\w+([\\.\\-]\\w+)*@\\w+([\\.\\-]\\w+)*\\.\\w{2,4}$";
 
-        public C withConsecutive( final T firstVal, final T incrementBy )
+        @Override
+        protected EmailAddressColumn newInstance()
         {
-            nextExpectedValue = firstVal;
-            consecutiveViolated = new Function<T, Boolean>()
-            {
-                @Override
-                public Boolean apply( T input )
-                {
-                    if ( false == input.equals( nextExpectedValue ) ) return true;
-                    nextExpectedValue = sum( nextExpectedValue, incrementBy );
-                    return false;
-                }
-            };
-            return (C) this;
+            return new EmailAddressColumn();
         }
 
-        public C withMin( final T min )
+        @Override
+        protected boolean isValid( ByteBuffer buffer, int start, int end )
         {
-            minViolated = new Function<T, Boolean>()
+            // local part: words separated by single '.' or '-'
+            int position = start;
+            boolean inWord = false;
+            while ( position < end && '@' != buffer.get( position ) )
             {
-                @Override
-                public Boolean apply( T input )
+                byte b = buffer.get( position++ );
+                if ( isWordCharacter( b ) ) inWord = true;
+                else if ( inWord && ( '.' == b || '-' == b ) ) inWord = false;
+                else return false;
+            }
+            if ( false == inWord || position == end ) return false;
+            position++;
+            // domain: words separated by single '.' or '-', at least two words, the last one of 2 to 4 characters
+            // following a '.'
+            inWord = false;
+            byte lastSeparator = 0;
+            int lastWordLength = 0;
+            while ( position < end )
+            {
+                byte b = buffer.get( position++ );
+                if ( isWordCharacter( b ) )
                 {
-                    return lessThan( input, min );
+                    inWord = true;
+                    lastWordLength++;
                 }
-            };
-            this.minVal = min;
-            return (C) this;
-        }
-
-        public C withMax( final T max )
-        {
-            maxViolated = new Function<T, Boolean>()
-            {
-                @Override
-                public Boolean apply( T input )
+                else if ( inWord && ( '.' == b || '-' == b ) )
                 {
-                    return greaterThan( input, max );
+                    inWord = false;
+                    lastSeparator = b;
+                    lastWordLength = 0;
                 }
-            };
-            this.maxVal = max;
-            return (C) this;
+                else return false;
+            }
+            return inWord && '.' == lastSeparator && lastWordLength >= 2 && lastWordLength <= 4;
         }
 
-        protected abstract T sum( T t1, T t2 );
+        @Override
+        protected String failureMessage()
+        {
+            return String.format( "Invalid email address pattern, expected: %s", REGEX );
+        }
+    }
 
-        protected abstract boolean lessThan( T t1, T t2 );
+    /**
+     * IPv4 address, four groups of one to three digits. Accepts the same values as
+     * SocialNetConstants.locationIpRegex(), i.e. groups are not checked to be at most 255.
+     */
+    public static class IpAddressColumn extends ByteValidatedColumn<IpAddressColumn>
+    {
+        private static final String REGEX = "^\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}$";
 
-        protected abstract boolean greaterThan( T t1, T t2 );
+        @Override
+        protected IpAddressColumn newInstance()
+        {
+            return new IpAddressColumn();
+        }
 
         @Override
-        protected void doCheck( FailedColumnCheckPolicy policy, T columnValue ) throws ColumnCheckException
+        protected boolean isValid( ByteBuffer buffer, int start, int end )
         {
-            try
+            int groups = 1;
+            int digits = 0;
+            for ( int position = start; position < end; position++ )
             {
-                if ( minViolated.apply( columnValue ) || maxViolated.apply( columnValue ) )
+                byte b = buffer.get( position );
+                if ( b >= '0' && b <= '9' )
                 {
-                    policy.handleFailedColumnCheck( columnValue.toString(),
-                            String.format( "%s outside of range (%s,%s)", columnValue, minVal, maxVal ) );
+                    if ( ++digits > 3 ) return false;
                 }
-                if ( consecutiveViolated.apply( columnValue ) )
+                else if ( '.' == b && digits > 0 && groups < 4 )
                 {
-                    policy.handleFailedColumnCheck( columnValue.toString(), String.format(
-                            "Values should be consecutive, expected %s found %s", nextExpectedValue, columnValue ) );
+                    groups++;
+                    digits = 0;
                 }
-
-            }
-            catch ( NumberFormatException e )
-            {
-                policy.handleFailedColumnCheck( columnValue.toString(),
-                        String.format( "Invalid number format [%s]", columnValue ) );
+                else return false;
             }
+            return 4 == groups && digits > 0;
+        }
+
+        @Override
+        protected String failureMessage()
+        {
+            return String.format( "Invalid string pattern, expected: %s", REGEX );
         }
     }
 
-    public static class IntegerColumn extends NumberColumn<Integer, IntegerColumn>
+    /**
+     * File name with the given extension, e.g. ".jpg". Accepts the same values as SocialNetConstants.imageFileRegex(),
+     * i.e. any name, as long as it contains no line terminators.
+     */
+    public static class ImageFileColumn extends ByteValidatedColumn<ImageFileColumn>
     {
-        @Override
-        public Integer parse( String columnString ) throws ColumnParseException
+        private final String extension;
+        private final byte[] extensionBytes;
+        private final boolean optional;
+
+        public ImageFileColumn( String extension, boolean optional )
         {
-            try
-            {
-                return Integer.parseInt( columnString );
-            }
-            catch ( NumberFormatException e )
-            {
-                throw new ColumnParseException( e.getCause() );
-            }
+            this.extension = extension;
+            this.extensionBytes = extension.getBytes( CsvLine.CHARSET );
+            this.optional = optional;
         }
 
         @Override
-        protected Integer sum( Integer t1, Integer t2 )
+        protected ImageFileColumn newInstance()
         {
-            return t1 + t2;
+            return new ImageFileColumn( extension, optional );
         }
 
         @Override
-        protected boolean lessThan( Integer t1, Integer t2 )
+        protected boolean isValid( ByteBuffer buffer, int start, int end )
         {
-            return t1 < t2;
+            if ( start == end ) return optional;
+            if ( end - start < extensionBytes.length ) return false;
+            for ( int i = 0; i < extensionBytes.length; i++ )
+            {
+                if ( extensionBytes[i] != buffer.get( end - extensionBytes.length + i ) ) return false;
+            }
+            // '.' of a regex does not match line terminators: CR, LF, U+0085, U+2028 and U+2029
+            for ( int position = start; position < end; position++ )
+            {
+                byte b = buffer.get( position );
+                if ( '\n' == b || '\r' == b ) return false;
+                if ( (byte) 0xc2 == b && position + 1 < end && (byte) 0x85 == buffer.get( position + 1 ) ) return false;
+                if ( (byte) 0xe2 == b && position + 2 < end && (byte) 0x80 == buffer.get( position + 1 )
+                     && ( (byte) 0xa8 == buffer.get( position + 2 ) || (byte) 0xa9 == buffer.get( position + 2 ) ) )
+                {
+                    return false;
+                }
+            }
+            return true;
         }
 
         @Override
-        protected boolean greaterThan( Integer t1, Integer t2 )
+        protected String failureMessage()
         {
-            return t1 > t2;
+            StringBuilder regex = new StringBuilder( ".*" );
+            for ( char c : extension.toCharArray() )
+            {
+                if ( false == Character.isLetterOrDigit( c ) ) regex.append( '\\' );
+                regex.append( c );
+            }
+            regex.append( "$" );
+            return String.format( "Invalid string pattern, expected: %s", optional ? "|" + regex : regex );
         }
     }
 
-    public static class LongColumn extends NumberColumn<Long, LongColumn>
+    // TODO change to withFiniteSet/isFiniteSet rather than a separate column
+    public static class FiniteSetColumn extends ByteValidatedColumn<FiniteSetColumn>
     {
+        private final String[] validValues;
+        private final ByteStringSet validValueSet;
+        private final String expected;
 
-        @Override
-        public Long parse( String columnString ) throws ColumnParseException
+        public FiniteSetColumn( String... validValues )
         {
-            try
-            {
-                return Long.parseLong( columnString );
-            }
-            catch ( NumberFormatException e )
-            {
-                throw new ColumnParseException( e.getCause() );
-            }
+            this.validValues = validValues;
+            this.validValueSet = new ByteStringSet( validValues );
+            this.expected = Utils.stringArrayToRegexOR( validValues );
         }
 
         @Override
-        protected Long sum( Long t1, Long t2 )
+        protected FiniteSetColumn newInstance()
         {
-            return t1 + t2;
+            return new FiniteSetColumn( validValues );
         }
 
         @Override
-        protected boolean lessThan( Long t1, Long t2 )
+        protected boolean isValid( ByteBuffer buffer, int start, int end )
         {
-            return t1 < t2;
+            return validValueSet.contains( buffer, start, end );
         }
 
         @Override
-        protected boolean greaterThan( Long t1, Long t2 )
+        protected String failureMessage()
         {
-            return t1 > t2;
+            return String.format( "Invalid string pattern, expected: %s", expected );
         }
-
     }
 
-    public static class StringColumn extends Column<String, StringColumn>
+    /**
+     * Time a column spent in check(), split into parsing values (including decoding them from the line), checking
+     * them and saving them to or looking them up in ColumnRefs. Values that pass on the byte fast path, or from the
+     * verdict cache, are all check time.
+     */
+    public static final class Timings
     {
-        private Pattern regex = null;
-        private boolean keepAccents = true;
+        private long parseNanos = 0;
+        private long checkNanos = 0;
+        private long columnRefNanos = 0;
 
-        public StringColumn withRegex( String regexString )
+        public long getParseNanos()
         {
-            regex = Pattern.compile( regexString );
-            return this;
+            return parseNanos;
         }
 
-        // TODO remove?
-        public StringColumn withAccents( boolean keepAccents )
+        public long getCheckNanos()
         {
-            this.keepAccents = keepAccents;
-            return this;
+            return checkNanos;
         }
 
-        private String removeAccents( String string )
+        public long getColumnRefNanos()
         {
-            return Normalizer.normalize( string, Normalizer.Form.NFD ).replaceAll( "\\p{InCombiningDiacriticalMarks}+",
-                    "" );
+            return columnRefNanos;
         }
 
-        @Override
-        public String parse( String columnString )
+        private void add( Timings timings )
         {
-            return columnString;
+            parseNanos += timings.parseNanos;
+            checkNanos += timings.checkNanos;
+            columnRefNanos += timings.columnRefNanos;
         }
+    }
 
-        @Override
-        protected void doCheck( FailedColumnCheckPolicy policy, String columnValue ) throws ColumnCheckException
+    /**
+     * Fixed set of strings, looked up by their UTF-8 bytes. Open addressing with linear probing, the table is kept at
+     * most a quarter full so a lookup almost always compares a single entry.
+     */
+    static final class ByteStringSet
+    {
+        private final byte[][] table;
+        private final int mask;
+
+        ByteStringSet( String... values )
         {
-            if ( null == regex )
+            int capacity = 16;
+            while ( capacity < values.length * 4 )
             {
-                return;
-            }
-            if ( false == keepAccents )
-            {
-                columnValue = removeAccents( columnValue );
+                capacity *= 2;
             }
-            if ( false == regex.matcher( columnValue ).matches() )
+            this.table = new byte[capacity][];
+            this.mask = capacity - 1;
+            for ( String value : values )
             {
-                policy.handleFailedColumnCheck( columnValue,
-                        String.format( "Invalid string pattern, expected: %s", regex.toString() ) );
+                byte[] bytes = value.getBytes( CsvLine.CHARSET );
+                int slot = hash( ByteBuffer.wrap( bytes ), 0, bytes.length ) & mask;
+                while ( null != table[slot] && false == Arrays.equals( table[slot], bytes ) )
+                {
+                    slot = ( slot + 1 ) & mask;
+                }
+                table[slot] = bytes;
             }
         }
-    }
-
-    public static class EmailAddressColumn extends Column<String, EmailAddressColumn>
-    {
-        // private final Pattern regex = Pattern.compile(
-        // "^[\\d\\w\\.\\-_]+@[[\\d\\w\\-]+\\.]+\\w{2,4}$" );
-        private final Pattern regex = Pattern.compile( "^\\w+([\\.\\-]\\w+)*@\\w+([\\.\\-]\\w+)*\\.\\w{2,4}$" );
 
-        @Override
-        public String parse( String columnString )
+        boolean contains( String value )
         {
-            return columnString;
+            byte[] bytes = value.getBytes( CsvLine.CHARSET );
+            return contains( ByteBuffer.wrap( bytes ), 0, bytes.length );
         }
 
-        @Override
-        protected void doCheck( FailedColumnCheckPolicy policy, String columnValue ) throws ColumnCheckException
+        boolean contains( ByteBuffer buffer, int start, int end )
         {
-            if ( false == regex.matcher( columnValue ).matches() )
+            int slot = hash( buffer, start, end ) & mask;
+            while ( null != table[slot] )
             {
-                policy.handleFailedColumnCheck( columnValue,
-                        String.format( "Invalid email address pattern, expected: %s", regex.toString() ) );
+                if ( equals( table[slot], buffer, start, end ) ) return true;
+                slot = ( slot + 1 ) & mask;
             }
-        }
-    }
-
-    // TODO change to withFiniteSet/isFiniteSet rather than a separate column
-    public static class FiniteSetColumn extends Column<String, FiniteSetColumn>
-    {
-        private Pattern regex = null;
-
-        public FiniteSetColumn( String... validValues )
-        {
-            this.regex = Pattern.compile( Utils.stringArrayToRegexOR( validValues ) );
+            return false;
         }
 
-        @Override
-        public String parse( String columnString )
+        private static boolean equals( byte[] bytes, ByteBuffer buffer, int start, int end )
         {
-            return columnString;
+            if ( bytes.length != end - start ) return false;
+            for ( int i = 0; i < bytes.length; i++ )
+            {
+                if ( bytes[i] != buffer.get( start + i ) ) return false;
+            }
+            return true;
         }
 
-        @Override
-        protected void doCheck( FailedColumnCheckPolicy policy, String columnValue ) throws ColumnCheckException
+        // FNV-1a
+        private static int hash( ByteBuffer buffer, int start, int end )
         {
-            if ( false == regex.matcher( columnValue ).matches() )
+            int hash = 0x811c9dc5;
+            for ( int i = start; i < end; i++ )
             {
-                policy.handleFailedColumnCheck( columnValue,
-                        String.format( "Invalid string pattern, expected: %s", regex.toString() ) );
+                hash ^= buffer.get( i ) & 0xff;
+                hash *= 0x01000193;
             }
+            return hash ^ ( hash >>> 16 );
         }
     }
 
     // TODO withRange(start,end) like min/max
     public static class DateColumn extends Column<Date, DateColumn>
     {
-        protected Function<Date, Boolean> rangeViolated = Utils.constantFun( false );
-
         /*
         See http://docs.oracle.com/javase/6/docs/api/java/text/SimpleDateFormat.html 
         
@@ -400,36 +1227,79 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         "yyyy-MM-dd'T'HH:mm:ss.SSSZ"            2001-07-04T12:08:56.235-0700         
         */
         private final SimpleDateFormat dateFormat;
+        // null if the pattern has no fast path, then every value is parsed by dateFormat
+        private final FixedDateFormat fixedDateFormat;
         private Date min;
         private Date max;
+        private long minMillis = Long.MIN_VALUE;
+        private long maxMillis = Long.MAX_VALUE;
 
         public DateColumn( String datePattern )
         {
             this.dateFormat = new SimpleDateFormat( datePattern );
+            this.fixedDateFormat = FixedDateFormat.forPattern( datePattern, dateFormat.getTimeZone() );
+        }
+
+        @Override
+        protected DateColumn newInstance()
+        {
+            DateColumn copy = new DateColumn( dateFormat.toPattern() );
+            return ( null == min ) ? copy : copy.withRange( min, max );
         }
 
         public DateColumn withRange( final Date min, final Date max )
         {
-            rangeViolated = new Function<Date, Boolean>()
-            {
-                @Override
-                public Boolean apply( Date input )
-                {
-                    if ( input.compareTo( min ) < 0 ) return true;
-                    if ( input.compareTo( max ) > 0 ) return true;
-                    return false;
-                }
-            };
             this.min = min;
             this.max = max;
+            this.minMillis = min.getTime();
+            this.maxMillis = max.getTime();
             return this;
         }
 
+        /**
+         * Dates in a fixed-width format are parsed and range checked straight from the bytes of the line, or of this
+         * column only for lines created from Strings, other values go through parse()
+         */
+        @Override
+        public void check( FailedColumnCheckPolicy policy, CsvLine line, int column ) throws ColumnCheckException
+        {
+            if ( null == fixedDateFormat || hasColumnRefs() )
+            {
+                super.check( policy, line, column );
+                return;
+            }
+            long start = startTiming();
+            long millis;
+            if ( line.hasBytes() )
+            {
+                millis = fixedDateFormat.parse( line.buffer(), line.start( column ), line.end( column ) );
+            }
+            else
+            {
+                byte[] bytes = line.getString( column ).getBytes( CsvLine.CHARSET );
+                millis = fixedDateFormat.parse( ByteBuffer.wrap( bytes ), 0, bytes.length );
+            }
+            start = timeParse( start );
+            if ( FixedDateFormat.INVALID == millis )
+            {
+                super.check( policy, line, column );
+                return;
+            }
+            doCheck( policy, millis );
+            timeCheck( start );
+        }
+
         @Override
         protected void doCheck( FailedColumnCheckPolicy policy, Date columnValue ) throws ColumnCheckException
         {
-            if ( rangeViolated.apply( columnValue ) )
+            doCheck( policy, columnValue.getTime() );
+        }
+
+        private void doCheck( FailedColumnCheckPolicy policy, long millis ) throws ColumnCheckException
+        {
+            if ( millis < minMillis || millis > maxMillis )
             {
+                Date columnValue = new Date( millis );
                 policy.handleFailedColumnCheck( columnValue.toString(), String.format(
                         "Value %s is out of range [%s, %s]", dateFormat.format( columnValue ),
                         dateFormat.format( min ), dateFormat.format( max ) ) );
@@ -439,6 +1309,11 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         @Override
         public Date parse( String columnString ) throws ColumnParseException
         {
+            if ( null != fixedDateFormat )
+            {
+                long millis = fixedDateFormat.parse( columnString );
+                if ( FixedDateFormat.INVALID != millis ) return new Date( millis );
+            }
             try
             {
                 return dateFormat.parse( columnString );
@@ -451,14 +1326,150 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         }
     }
 
+    /**
+     * Parser for the fixed-width formats of SocialNetConstants.dateFormat() and dateTimeFormat(), without
+     * allocating Calendars or Dates. Only well-formed values are parsed, e.g. "2010-02-30" or "2010-3-10" are INVALID
+     * here and left to the (lenient) SimpleDateFormat, so both accept exactly the same values.
+     */
+    static final class FixedDateFormat
+    {
+        static final long INVALID = Long.MIN_VALUE;
+        private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000l;
+        // years before the Gregorian cutover are left to SimpleDateFormat, which uses the Julian calendar for them
+        private static final int MIN_YEAR = 1600;
+
+        private final String layout;
+        private final boolean hasTime;
+        private final TimeZone timeZone;
+
+        private FixedDateFormat( String layout, boolean hasTime, TimeZone timeZone )
+        {
+            this.layout = layout;
+            this.hasTime = hasTime;
+            this.timeZone = timeZone;
+        }
+
+        /**
+         * @return null if there is no fast path for the pattern
+         */
+        static FixedDateFormat forPattern( String datePattern, TimeZone timeZone )
+        {
+            // 'd' in a layout is a digit, any other character is a literal
+            if ( "yyyy-MM-dd".equals( datePattern ) )
+            {
+                return new FixedDateFormat( "dddd-dd-dd", false, timeZone );
+            }
+            if ( "yyyy-MM-dd'T'HH:mm:ss'Z'".equals( datePattern ) )
+            {
+                return new FixedDateFormat( "dddd-dd-ddTdd:dd:ddZ", true, timeZone );
+            }
+            return null;
+        }
+
+        /**
+         * @return milliseconds since the epoch, or INVALID
+         */
+        long parse( ByteBuffer buffer, int start, int end )
+        {
+            if ( end - start != layout.length() ) return INVALID;
+            long digits = 0;
+            for ( int i = 0; i < layout.length(); i++ )
+            {
+                int c = buffer.get( start + i );
+                char expected = layout.charAt( i );
+                if ( 'd' == expected )
+                {
+                    if ( c < '0' || c > '9' ) return INVALID;
+                    digits = digits * 10 + ( c - '0' );
+                }
+                else if ( c != expected ) return INVALID;
+            }
+            return toMillis( digits );
+        }
+
+        /**
+         * @return milliseconds since the epoch, or INVALID
+         */
+        long parse( String string )
+        {
+            if ( string.length() != layout.length() ) return INVALID;
+            long digits = 0;
+            for ( int i = 0; i < layout.length(); i++ )
+            {
+                char c = string.charAt( i );
+                char expected = layout.charAt( i );
+                if ( 'd' == expected )
+                {
+                    if ( c < '0' || c > '9' ) return INVALID;
+                    digits = digits * 10 + ( c - '0' );
+                }
+                else if ( c != expected ) return INVALID;
+            }
+            return toMillis( digits );
+        }
+
+        /**
+         * @param digits all digits of the value, i.e. yyyyMMdd or yyyyMMddHHmmss
+         */
+        private long toMillis( long digits )
+        {
+            int second = 0;
+            int minute = 0;
+            int hour = 0;
+            if ( hasTime )
+            {
+                second = (int) ( digits % 100 );
+                minute = (int) ( digits / 100 % 100 );
+                hour = (int) ( digits / 10000 % 100 );
+                digits /= 1000000;
+            }
+            int day = (int) ( digits % 100 );
+            int month = (int) ( digits / 100 % 100 );
+            int year = (int) ( digits / 10000 );
+            if ( year < MIN_YEAR || month < 1 || month > 12 ) return INVALID;
+            if ( day < 1 || day > daysInMonth( year, month ) ) return INVALID;
+            if ( hour > 23 || minute > 59 || second > 59 ) return INVALID;
+            long localMillis = daysSinceEpoch( year, month, day ) * MILLIS_PER_DAY
+                               + ( ( hour * 60 + minute ) * 60 + second ) * 1000l;
+            // local time to UTC, times skipped or repeated by a daylight saving switch are left to SimpleDateFormat
+            int offset = timeZone.getOffset( localMillis - timeZone.getRawOffset() );
+            long millis = localMillis - offset;
+            if ( timeZone.getOffset( millis ) != offset ) return INVALID;
+            if ( timeZone.getOffset( millis - MILLIS_PER_DAY ) != timeZone.getOffset( millis + MILLIS_PER_DAY ) )
+            {
+                return INVALID;
+            }
+            return millis;
+        }
+
+        private static int daysInMonth( int year, int month )
+        {
+            if ( 2 == month )
+            {
+                boolean leap = ( 0 == year % 4 && 0 != year % 100 ) || 0 == year % 400;
+                return leap ? 29 : 28;
+            }
+            return ( 4 == month || 6 == month || 9 == month || 11 == month ) ? 30 : 31;
+        }
+
+        // proleptic Gregorian days from civil date, see http://howardhinnant.github.io/date_algorithms.html
+        private static long daysSinceEpoch( int year, int month, int day )
+        {
+            int y = ( month <= 2 ) ? year - 1 : year;
+            int era = y / 400;
+            int yearOfEra = y - era * 400;
+            int dayOfYear = ( 153 * ( month + ( month > 2 ? -3 : 9 ) ) + 2 ) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097l + dayOfEra - 719468;
+        }
+    }
+
     public static class UrlColumn extends Column<String, UrlColumn>
     {
         // private String encoding = null;
         private boolean keepAccents = true;
+        private AccentRemover accentRemover = null;
         private final UrlValidator urlValidator;
-        // private final Pattern accentsPattern = Pattern.compile(
-        // "\\p{InCombiningDiacriticalMarks}+" );
-        private final Pattern accentsPattern = Pattern.compile( "\\p{Mn}+" );
 
         public UrlColumn()
         {
@@ -475,9 +1486,16 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         public UrlColumn withAccents( boolean keepAccents )
         {
             this.keepAccents = keepAccents;
+            this.accentRemover = keepAccents ? null : new AccentRemover( true );
             return this;
         }
 
+        @Override
+        protected UrlColumn newInstance()
+        {
+            return new UrlColumn().withAccents( keepAccents );
+        }
+
         // /*
         // * TODO should not be necessary, but UrlValidator fails on special
         // characters
@@ -513,13 +1531,6 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
         // encodedPath );
         // }
 
-        private String removeAccents( String string )
-        {
-            // TODO dash trick is dirty
-            return accentsPattern.matcher( Normalizer.normalize( string, Normalizer.Form.NFD ) ).replaceAll( "" ).replaceAll(
-                    "\\-|\\u2013|\\u2014", "\\-" );
-        }
-
         @Override
         public String parse( String columnString )
         {
@@ -545,7 +1556,7 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
 
             if ( false == keepAccents )
             {
-                columnValue = removeAccents( columnValue );
+                columnValue = accentRemover.removeAccents( columnValue );
             }
             if ( false == urlValidator.isValid( columnValue ) )
             {
@@ -553,4 +1564,78 @@ public abstract class Column<VALUE_TYPE, COLUMN_TYPE extends Column>
             }
         }
     }
+
+    /**
+     * Strips accents by decomposing characters (Unicode NFD) and dropping the combining marks. ASCII values are
+     * returned as they are, other values are cached, as the same names tend to occur on many lines.
+     */
+    static final class AccentRemover
+    {
+        private static final int CACHE_SIZE = 1024;
+
+        private final boolean forUrls;
+        private final Map<String, String> cache = new LinkedHashMap<String, String>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, String> eldest )
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        /**
+         * @param forUrls if true all non-spacing marks (\p{Mn}) are dropped and en/em dashes become '-', otherwise
+         *            only marks of the Combining Diacritical Marks block are dropped
+         */
+        AccentRemover( boolean forUrls )
+        {
+            this.forUrls = forUrls;
+        }
+
+        String removeAccents( String string )
+        {
+            if ( isAscii( string ) ) return string;
+            String withoutAccents = cache.get( string );
+            if ( null == withoutAccents )
+            {
+                withoutAccents = stripMarks( Normalizer.normalize( string, Normalizer.Form.NFD ) );
+                cache.put( string, withoutAccents );
+            }
+            return withoutAccents;
+        }
+
+        private String stripMarks( String decomposed )
+        {
+            StringBuilder stripped = new StringBuilder( decomposed.length() );
+            for ( int i = 0; i < decomposed.length(); )
+            {
+                int codePoint = decomposed.codePointAt( i );
+                i += Character.charCount( codePoint );
+                if ( isMark( codePoint ) ) continue;
+                // TODO dash trick is dirty
+                if ( forUrls && ( '\u2013' == codePoint || '\u2014' == codePoint ) )
+                {
+                    stripped.append( '-' );
+                    continue;
+                }
+                stripped.appendCodePoint( codePoint );
+            }
+            return stripped.toString();
+        }
+
+        private boolean isMark( int codePoint )
+        {
+            if ( forUrls ) return Character.NON_SPACING_MARK == Character.getType( codePoint );
+            return Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS == Character.UnicodeBlock.of( codePoint );
+        }
+
+        private static boolean isAscii( String string )
+        {
+            for ( int i = 0; i < string.length(); i++ )
+            {
+                if ( string.charAt( i ) >= 0x80 ) return false;
+            }
+            return true;
+        }
+    }
 }
@@ -1,9 +1,14 @@
 package com.ldbc.datachecker;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import gnu.trove.list.TLongList;
+import gnu.trove.procedure.TLongProcedure;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.THashSet;
@@ -31,9 +36,107 @@ public abstract class ColumnRef<T>
 
     public abstract boolean contains( T columnValue );
 
-    public static class LongColumnRef extends ColumnRef<Long>
+    /**
+     * Called once no more values will be added, e.g. when all files that save values to this ColumnRef have been
+     * checked. Implementations may switch to a compact read-only layout, add() must not be called afterwards.
+     * Reading a frozen ColumnRef from many threads needs no locking.
+     */
+    public void freeze()
+    {
+    }
+
+    /**
+     * @return ColumnRef that collects the values saved while one chunk of a file is checked, see ChunkRef.flush()
+     */
+    public ColumnRef<T> newChunkRef()
     {
-        private final TLongSet set = new TLongHashSet();
+        return new ChunkColumnRef<T>( this );
+    }
+
+    /**
+     * ColumnRef of long values, columns that parse longs call add(long) and contains(long) directly so values are
+     * never boxed
+     */
+    public abstract static class AbstractLongColumnRef extends ColumnRef<Long>
+    {
+        public AbstractLongColumnRef( String name )
+        {
+            super( name );
+        }
+
+        /**
+         * @param value
+         * @return false if value already existed, otherwise true
+         */
+        public abstract boolean add( long value );
+
+        public abstract boolean contains( long value );
+
+        @Override
+        public final boolean add( Long value )
+        {
+            return add( value.longValue() );
+        }
+
+        @Override
+        public final boolean contains( Long value )
+        {
+            return contains( value.longValue() );
+        }
+
+        @Override
+        public ColumnRef<Long> newChunkRef()
+        {
+            return new ChunkLongColumnRef( this );
+        }
+
+        /**
+         * @return true if forEachValue() is supported, so the contents of this ColumnRef can be saved and restored,
+         *         see ColumnRefSnapshot
+         */
+        public boolean canListValues()
+        {
+            return false;
+        }
+
+        /**
+         * Passes every value, in no particular order, to procedure until it returns false. Adding the values to an
+         * empty ColumnRef of the same type restores the contents of this one.
+         */
+        public void forEachValue( TLongProcedure procedure )
+        {
+            throw new UnsupportedOperationException( String.format( "ColumnRef[%s] can not list its values",
+                    getName() ) );
+        }
+
+        /**
+         * @return true if contains() is true for exactly the values listed by forEachValue(), so they can be saved
+         *         sorted and without duplicates
+         */
+        public boolean isSet()
+        {
+            return false;
+        }
+
+        /**
+         * Freezes this ColumnRef with values as its contents, instead of the values added so far, see
+         * ColumnRefSnapshot.map()
+         *
+         * @return false if lookups of this type of ColumnRef can not be served by a MappedLongSet
+         */
+        boolean freezeTo( MappedLongSet values )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Hash set while values are added, sorted array once frozen
+     */
+    public static class LongColumnRef extends AbstractLongColumnRef
+    {
+        private TLongSet set = new TLongHashSet();
+        private FrozenLongSet frozenSet = null;
 
         public LongColumnRef( String name )
         {
@@ -41,19 +144,690 @@ public abstract class ColumnRef<T>
         }
 
         @Override
-        public boolean add( Long value )
+        public boolean add( long value )
         {
+            if ( null != frozenSet ) throw new IllegalStateException( frozenMessage( this ) );
             return set.add( value );
         }
 
         @Override
-        public boolean contains( Long value )
+        public boolean contains( long value )
         {
-            return set.contains( value );
+            return ( null == frozenSet ) ? set.contains( value ) : frozenSet.contains( value );
+        }
+
+        @Override
+        public void freeze()
+        {
+            if ( null != frozenSet ) return;
+            frozenSet = new EytzingerLongSet( set.toArray() );
+            set = null;
+        }
+
+        @Override
+        public boolean canListValues()
+        {
+            return true;
+        }
+
+        @Override
+        public void forEachValue( TLongProcedure procedure )
+        {
+            if ( null == frozenSet )
+            {
+                set.forEach( procedure );
+            }
+            else
+            {
+                frozenSet.forEach( procedure );
+            }
+        }
+
+        @Override
+        public boolean isSet()
+        {
+            return true;
+        }
+
+        @Override
+        boolean freezeTo( MappedLongSet values )
+        {
+            if ( null != frozenSet ) throw new IllegalStateException( frozenMessage( this ) );
+            frozenSet = values;
+            set = null;
+            return true;
+        }
+    }
+
+    /**
+     * Stores values as bits of a bitmap, indexed by ( value - offset ) / stride, for ids that form (close to) an
+     * arithmetic sequence, e.g. 0, 10, 20, ...
+     *
+     * Offset and stride are given, or detected from the first values added. The bitmap is split into pages of 2^16
+     * bits, allocated when first used, and pages with all bits set are replaced by one shared page. Values that do not
+     * fit offset and stride are kept in a hash set.
+     */
+    public static class StridedBitmapColumnRef extends AbstractLongColumnRef
+    {
+        public static final int DEFAULT_SAMPLE_SIZE = 1024;
+
+        private static final int PAGE_BITS = 16;
+        private static final int PAGE_LONGS = ( 1 << PAGE_BITS ) / 64;
+        private static final int PAGE_MASK = ( 1 << PAGE_BITS ) - 1;
+        private static final int MAX_PAGES = 1 << 20;
+        private static final long[] FULL_PAGE = newFullPage();
+
+        private final int sampleSize;
+        private TLongSet sample;
+        private long offset;
+        private long stride;
+        private long[][] pages = new long[16][];
+        private int[] pageCardinalities = new int[16];
+        private TLongSet exceptions = new TLongHashSet();
+        private EytzingerLongSet frozenExceptions = null;
+        private boolean frozen = false;
+
+        public StridedBitmapColumnRef( String name )
+        {
+            this( name, DEFAULT_SAMPLE_SIZE );
+        }
+
+        /**
+         * @param sampleSize number of distinct values used to detect offset (their minimum) and stride (the greatest
+         *            common divisor of their distances to the minimum)
+         */
+        public StridedBitmapColumnRef( String name, int sampleSize )
+        {
+            super( name );
+            this.sampleSize = sampleSize;
+            this.sample = new TLongHashSet();
+        }
+
+        public StridedBitmapColumnRef( String name, long offset, long stride )
+        {
+            super( name );
+            if ( stride < 1 )
+            {
+                throw new IllegalArgumentException( "Stride must be at least 1, found: " + stride );
+            }
+            this.sampleSize = 0;
+            this.sample = null;
+            this.offset = offset;
+            this.stride = stride;
+        }
+
+        @Override
+        public boolean add( long value )
+        {
+            if ( frozen ) throw new IllegalStateException( frozenMessage( this ) );
+            if ( null != sample )
+            {
+                boolean added = sample.add( value );
+                if ( sample.size() >= sampleSize ) detectStride();
+                return added;
+            }
+            long index = indexOf( value );
+            if ( -1 == index ) return exceptions.add( value );
+            int page = (int) ( index >>> PAGE_BITS );
+            if ( page >= pages.length ) growPages( page );
+            long[] bits = pages[page];
+            if ( FULL_PAGE == bits ) return false;
+            if ( null == bits )
+            {
+                bits = new long[PAGE_LONGS];
+                pages[page] = bits;
+            }
+            int bit = (int) ( index & PAGE_MASK );
+            long mask = 1l << bit;
+            if ( 0 != ( bits[bit >>> 6] & mask ) ) return false;
+            bits[bit >>> 6] |= mask;
+            pageCardinalities[page]++;
+            if ( ( 1 << PAGE_BITS ) == pageCardinalities[page] ) pages[page] = FULL_PAGE;
+            return true;
+        }
+
+        @Override
+        public boolean contains( long value )
+        {
+            if ( null != sample ) return sample.contains( value );
+            long index = indexOf( value );
+            if ( -1 == index )
+            {
+                return ( null == frozenExceptions ) ? exceptions.contains( value ) : frozenExceptions.contains( value );
+            }
+            int page = (int) ( index >>> PAGE_BITS );
+            if ( page >= pages.length ) return false;
+            long[] bits = pages[page];
+            if ( null == bits ) return false;
+            int bit = (int) ( index & PAGE_MASK );
+            return 0 != ( bits[bit >>> 6] & ( 1l << bit ) );
+        }
+
+        /**
+         * Values that do not fit offset and stride are moved to a sorted array
+         */
+        @Override
+        public void freeze()
+        {
+            if ( frozen ) return;
+            if ( null != sample ) detectStride();
+            frozenExceptions = new EytzingerLongSet( exceptions.toArray() );
+            exceptions = null;
+            frozen = true;
+        }
+
+        @Override
+        public boolean canListValues()
+        {
+            return true;
+        }
+
+        @Override
+        public void forEachValue( TLongProcedure procedure )
+        {
+            if ( null != sample )
+            {
+                sample.forEach( procedure );
+                return;
+            }
+            for ( int page = 0; page < pages.length; page++ )
+            {
+                long[] bits = pages[page];
+                if ( null == bits ) continue;
+                for ( int word = 0; word < PAGE_LONGS; word++ )
+                {
+                    long remaining = bits[word];
+                    while ( 0 != remaining )
+                    {
+                        int bit = Long.numberOfTrailingZeros( remaining );
+                        remaining &= remaining - 1;
+                        long index = ( (long) page << PAGE_BITS ) + ( word << 6 ) + bit;
+                        if ( false == procedure.execute( offset + index * stride ) ) return;
+                    }
+                }
+            }
+            if ( null == frozenExceptions )
+            {
+                exceptions.forEach( procedure );
+            }
+            else
+            {
+                frozenExceptions.forEach( procedure );
+            }
+        }
+
+        @Override
+        public boolean isSet()
+        {
+            return true;
+        }
+
+        /**
+         * @return bit index of value, or -1 if value does not fit offset and stride
+         */
+        private long indexOf( long value )
+        {
+            if ( value < offset ) return -1;
+            long distance = value - offset;
+            // overflow
+            if ( distance < 0 ) return -1;
+            if ( 0 != distance % stride ) return -1;
+            long index = distance / stride;
+            if ( ( index >>> PAGE_BITS ) >= MAX_PAGES ) return -1;
+            return index;
+        }
+
+        private void detectStride()
+        {
+            long[] values = sample.toArray();
+            sample = null;
+            long min = Long.MAX_VALUE;
+            for ( long value : values )
+            {
+                min = Math.min( min, value );
+            }
+            long gcd = 0;
+            for ( long value : values )
+            {
+                long distance = value - min;
+                // overflow, leave value to the exceptions
+                if ( distance < 0 ) continue;
+                gcd = gcd( gcd, distance );
+            }
+            offset = min;
+            stride = ( 0 == gcd ) ? 1 : gcd;
+            for ( long value : values )
+            {
+                add( value );
+            }
+        }
+
+        private static long gcd( long a, long b )
+        {
+            while ( 0 != b )
+            {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        private void growPages( int page )
+        {
+            int length = Math.min( MAX_PAGES, Math.max( page + 1, pages.length * 2 ) );
+            long[][] newPages = new long[length][];
+            System.arraycopy( pages, 0, newPages, 0, pages.length );
+            pages = newPages;
+            int[] newPageCardinalities = new int[length];
+            System.arraycopy( pageCardinalities, 0, newPageCardinalities, 0, pageCardinalities.length );
+            pageCardinalities = newPageCardinalities;
+        }
+
+        private static long[] newFullPage()
+        {
+            long[] page = new long[PAGE_LONGS];
+            Arrays.fill( page, -1l );
+            return page;
+        }
+    }
+
+    /**
+     * Open-addressing hash set of longs in direct (off-heap) memory, so large id sets add no garbage collection work.
+     *
+     * The table is split into segments of at most 2^27 slots, each its own direct buffer. Empty slots hold 0, which
+     * direct buffers are initialized to, and whether 0 itself was added is kept separately. Pass the expected number
+     * of values to avoid resizing, a resize briefly needs memory for both the old and the new table.
+     *
+     * When frozen to a memory-mapped snapshot the table is released and lookups are served by the mapped file.
+     */
+    public static class OffHeapLongColumnRef extends AbstractLongColumnRef
+    {
+        public static final int DEFAULT_EXPECTED_COUNT = 1024;
+        private static final double MAX_LOAD_FACTOR = 0.7;
+        private static final int SEGMENT_BITS = 27;
+        private static final long EMPTY = 0;
+
+        private LongBuffer[] segments;
+        private long capacity;
+        private long mask;
+        private int segmentBits;
+        private long segmentMask;
+        private long size = 0;
+        private boolean containsEmpty = false;
+        private MappedLongSet mappedSet = null;
+
+        public OffHeapLongColumnRef( String name )
+        {
+            this( name, DEFAULT_EXPECTED_COUNT );
+        }
+
+        public OffHeapLongColumnRef( String name, long expectedCount )
+        {
+            super( name );
+            allocate( capacityFor( expectedCount ) );
+        }
+
+        @Override
+        public boolean add( long value )
+        {
+            if ( null != mappedSet ) throw new IllegalStateException( frozenMessage( this ) );
+            if ( EMPTY == value )
+            {
+                boolean added = ( false == containsEmpty );
+                containsEmpty = true;
+                return added;
+            }
+            if ( size + 1 > capacity * MAX_LOAD_FACTOR ) resize( capacity * 2 );
+            if ( false == insert( value ) ) return false;
+            size++;
+            return true;
+        }
+
+        @Override
+        public boolean contains( long value )
+        {
+            if ( null != mappedSet ) return mappedSet.contains( value );
+            if ( EMPTY == value ) return containsEmpty;
+            long slot = hash( value ) & mask;
+            while ( true )
+            {
+                long current = get( slot );
+                if ( EMPTY == current ) return false;
+                if ( value == current ) return true;
+                slot = ( slot + 1 ) & mask;
+            }
+        }
+
+        /**
+         * @return number of values added, excluding duplicates
+         */
+        public long size()
+        {
+            if ( null != mappedSet ) return mappedSet.size();
+            return ( containsEmpty ) ? size + 1 : size;
+        }
+
+        @Override
+        public boolean canListValues()
+        {
+            return true;
+        }
+
+        @Override
+        public void forEachValue( TLongProcedure procedure )
+        {
+            if ( null != mappedSet )
+            {
+                mappedSet.forEach( procedure );
+                return;
+            }
+            if ( containsEmpty && false == procedure.execute( EMPTY ) ) return;
+            for ( LongBuffer segment : segments )
+            {
+                for ( int i = 0; i < segment.capacity(); i++ )
+                {
+                    long value = segment.get( i );
+                    if ( EMPTY != value && false == procedure.execute( value ) ) return;
+                }
+            }
+        }
+
+        @Override
+        public boolean isSet()
+        {
+            return true;
+        }
+
+        @Override
+        boolean freezeTo( MappedLongSet values )
+        {
+            if ( null != mappedSet ) throw new IllegalStateException( frozenMessage( this ) );
+            mappedSet = values;
+            segments = null;
+            return true;
+        }
+
+        private boolean insert( long value )
+        {
+            long slot = hash( value ) & mask;
+            while ( true )
+            {
+                long current = get( slot );
+                if ( EMPTY == current )
+                {
+                    segments[(int) ( slot >>> segmentBits )].put( (int) ( slot & segmentMask ), value );
+                    return true;
+                }
+                if ( value == current ) return false;
+                slot = ( slot + 1 ) & mask;
+            }
+        }
+
+        private long get( long slot )
+        {
+            return segments[(int) ( slot >>> segmentBits )].get( (int) ( slot & segmentMask ) );
+        }
+
+        private void resize( long newCapacity )
+        {
+            LongBuffer[] oldSegments = segments;
+            allocate( newCapacity );
+            for ( LongBuffer segment : oldSegments )
+            {
+                for ( int i = 0; i < segment.capacity(); i++ )
+                {
+                    long value = segment.get( i );
+                    if ( EMPTY != value ) insert( value );
+                }
+            }
+        }
+
+        private void allocate( long capacity )
+        {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.segmentBits = (int) Math.min( SEGMENT_BITS, Long.numberOfTrailingZeros( capacity ) );
+            this.segmentMask = ( 1l << segmentBits ) - 1;
+            int segmentCount = (int) ( capacity >>> segmentBits );
+            int segmentSize = 1 << segmentBits;
+            segments = new LongBuffer[segmentCount];
+            for ( int i = 0; i < segmentCount; i++ )
+            {
+                ByteBuffer segment = ByteBuffer.allocateDirect( segmentSize * 8 ).order( ByteOrder.nativeOrder() );
+                segments[i] = segment.asLongBuffer();
+            }
+        }
+
+        private static long capacityFor( long expectedCount )
+        {
+            long capacity = 16;
+            while ( capacity * MAX_LOAD_FACTOR < expectedCount )
+            {
+                capacity *= 2;
+            }
+            return capacity;
+        }
+
+        private static long hash( long value )
+        {
+            // MurmurHash3 finalizer, ids are often sequential
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdl;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53l;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+
+    /**
+     * Set of pairs of longs, for uniqueness of two columns together, e.g. Person.id|Person.id. Like
+     * MultiLongColumnRef( name, 2, doSort ) the values of a pair are added one after the other, the second add()
+     * returns false if the pair already existed.
+     *
+     * Pairs are stored in two parallel long arrays of an open-addressing (linear probing) hash table, with a bitmap
+     * of used slots, so a pair costs no objects. The arrays are split into segments of 2^26 slots, so the number of
+     * pairs is only limited by memory.
+     */
+    public static class LongPairColumnRef extends AbstractLongColumnRef
+    {
+        public static final int DEFAULT_EXPECTED_COUNT = 1024;
+        private static final double MAX_LOAD_FACTOR = 0.7;
+        // slots per segment, as an array holds less than 2^31 values
+        private static final int SEGMENT_BITS = 26;
+
+        private final boolean orderInsensitive;
+        private long[][] firsts;
+        private long[][] seconds;
+        private long[][] used;
+        private long capacity;
+        private long mask;
+        private int segmentBits;
+        private int segmentMask;
+        private long size = 0;
+        private boolean hasPendingValue = false;
+        private long pendingValue;
+
+        /**
+         * @param orderInsensitive if true ( a, b ) and ( b, a ) are the same pair
+         */
+        public LongPairColumnRef( String name, boolean orderInsensitive )
+        {
+            this( name, orderInsensitive, DEFAULT_EXPECTED_COUNT );
+        }
+
+        public LongPairColumnRef( String name, boolean orderInsensitive, long expectedCount )
+        {
+            super( name );
+            this.orderInsensitive = orderInsensitive;
+            long capacity = 16;
+            while ( capacity * MAX_LOAD_FACTOR < expectedCount )
+            {
+                capacity *= 2;
+            }
+            allocate( capacity );
+        }
+
+        /**
+         * @return false if value completes a pair that already existed, otherwise true
+         */
+        @Override
+        public boolean add( long value )
+        {
+            if ( false == hasPendingValue )
+            {
+                hasPendingValue = true;
+                pendingValue = value;
+                return true;
+            }
+            hasPendingValue = false;
+            return addPair( pendingValue, value );
+        }
+
+        /**
+         * Single values can not be looked up, use containsPair(). Column.checkIn() rejects this ColumnRef.
+         */
+        @Override
+        public boolean contains( long value )
+        {
+            throw new UnsupportedOperationException( String.format( "ColumnRef[%s] contains pairs, use containsPair()",
+                    getName() ) );
+        }
+
+        /**
+         * @return false if the pair already existed, otherwise true
+         */
+        public boolean addPair( long first, long second )
+        {
+            if ( orderInsensitive && first > second )
+            {
+                long swap = first;
+                first = second;
+                second = swap;
+            }
+            if ( size + 1 > capacity * MAX_LOAD_FACTOR ) resize();
+            if ( false == insert( first, second ) ) return false;
+            size++;
+            return true;
+        }
+
+        public boolean containsPair( long first, long second )
+        {
+            if ( orderInsensitive && first > second )
+            {
+                long swap = first;
+                first = second;
+                second = swap;
+            }
+            long slot = hash( first, second ) & mask;
+            while ( true )
+            {
+                int segment = (int) ( slot >>> segmentBits );
+                int index = (int) slot & segmentMask;
+                if ( false == isUsed( used[segment], index ) ) return false;
+                if ( firsts[segment][index] == first && seconds[segment][index] == second ) return true;
+                slot = ( slot + 1 ) & mask;
+            }
+        }
+
+        public long size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean canListValues()
+        {
+            return true;
+        }
+
+        /**
+         * Passes the first and second value of each pair one after the other, the way they are added
+         */
+        @Override
+        public void forEachValue( TLongProcedure procedure )
+        {
+            for ( int segment = 0; segment < firsts.length; segment++ )
+            {
+                for ( int index = 0; index < firsts[segment].length; index++ )
+                {
+                    if ( false == isUsed( used[segment], index ) ) continue;
+                    if ( false == procedure.execute( firsts[segment][index] ) ) return;
+                    if ( false == procedure.execute( seconds[segment][index] ) ) return;
+                }
+            }
+        }
+
+        private boolean insert( long first, long second )
+        {
+            long slot = hash( first, second ) & mask;
+            while ( true )
+            {
+                int segment = (int) ( slot >>> segmentBits );
+                int index = (int) slot & segmentMask;
+                if ( false == isUsed( used[segment], index ) )
+                {
+                    firsts[segment][index] = first;
+                    seconds[segment][index] = second;
+                    used[segment][index >>> 6] |= 1l << index;
+                    return true;
+                }
+                if ( firsts[segment][index] == first && seconds[segment][index] == second ) return false;
+                slot = ( slot + 1 ) & mask;
+            }
+        }
+
+        private static boolean isUsed( long[] used, int index )
+        {
+            return 0 != ( used[index >>> 6] & ( 1l << index ) );
+        }
+
+        private void resize()
+        {
+            long[][] oldFirsts = firsts;
+            long[][] oldSeconds = seconds;
+            long[][] oldUsed = used;
+            allocate( capacity * 2 );
+            for ( int segment = 0; segment < oldFirsts.length; segment++ )
+            {
+                for ( int index = 0; index < oldFirsts[segment].length; index++ )
+                {
+                    if ( isUsed( oldUsed[segment], index ) )
+                    {
+                        insert( oldFirsts[segment][index], oldSeconds[segment][index] );
+                    }
+                }
+            }
+        }
+
+        private void allocate( long capacity )
+        {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.segmentBits = (int) Math.min( SEGMENT_BITS, Long.numberOfTrailingZeros( capacity ) );
+            this.segmentMask = ( 1 << segmentBits ) - 1;
+            int segmentCount = (int) ( capacity >>> segmentBits );
+            int segmentSize = 1 << segmentBits;
+            firsts = new long[segmentCount][segmentSize];
+            seconds = new long[segmentCount][segmentSize];
+            used = new long[segmentCount][segmentSize / 64 + 1];
+        }
+
+        private static long hash( long first, long second )
+        {
+            // MurmurHash3 finalizer of both values combined
+            long hash = first * 0x9e3779b97f4a7c15l + second;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdl;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53l;
+            hash ^= hash >>> 33;
+            return hash;
         }
     }
 
-    public static class MultiLongColumnRef extends ColumnRef<Long>
+    public static class MultiLongColumnRef extends AbstractLongColumnRef
     {
         private final THashSet<TLongList> set = new THashSet<TLongList>();
         private final int bufferSize;
@@ -68,7 +842,7 @@ public abstract class ColumnRef<T>
         }
 
         @Override
-        public boolean add( Long value )
+        public boolean add( long value )
         {
             buffer.add( value );
             if ( buffer.size() == bufferSize )
@@ -82,9 +856,237 @@ public abstract class ColumnRef<T>
         }
 
         @Override
-        public boolean contains( Long value )
+        public boolean contains( long value )
         {
             return set.contains( value );
         }
     }
+
+    private static String frozenMessage( ColumnRef<?> columnRef )
+    {
+        return String.format( "ColumnRef[%s] is frozen, values can no longer be added", columnRef.getName() );
+    }
+
+    /**
+     * Read-only set of longs a ColumnRef switches to once frozen
+     */
+    static interface FrozenLongSet
+    {
+        boolean contains( long value );
+
+        /**
+         * Passes every value, in Eytzinger order, to procedure until it returns false
+         */
+        void forEach( TLongProcedure procedure );
+    }
+
+    /**
+     * Read-only set of longs, stored as a sorted array in Eytzinger (breadth-first binary tree) order. A lookup walks
+     * the tree from the root, so the first levels, which every lookup reads, share a few cache lines.
+     */
+    static final class EytzingerLongSet implements FrozenLongSet
+    {
+        // 1-based, index 0 is unused
+        private final long[] tree;
+
+        EytzingerLongSet( long[] values )
+        {
+            Arrays.sort( values );
+            int size = 0;
+            for ( int i = 0; i < values.length; i++ )
+            {
+                if ( 0 == i || values[i] != values[i - 1] ) values[size++] = values[i];
+            }
+            tree = new long[size + 1];
+            fill( values, 0, 1 );
+        }
+
+        /*
+         * In-order traversal of the implicit tree assigns the sorted values, returns the next sorted index. Recursion
+         * depth is the height of the tree. Node indexes are longs, children of large indexes overflow an int.
+         */
+        private int fill( long[] sorted, int sortedIndex, long node )
+        {
+            if ( node < tree.length )
+            {
+                sortedIndex = fill( sorted, sortedIndex, 2 * node );
+                tree[(int) node] = sorted[sortedIndex++];
+                sortedIndex = fill( sorted, sortedIndex, 2 * node + 1 );
+            }
+            return sortedIndex;
+        }
+
+        @Override
+        public boolean contains( long value )
+        {
+            long size = tree.length - 1;
+            long node = 1;
+            while ( node <= size )
+            {
+                node = 2 * node + ( ( tree[(int) node] < value ) ? 1 : 0 );
+            }
+            // undo the right turns taken after the last left turn, node is then the smallest value >= value
+            node >>>= Long.numberOfTrailingZeros( ~node ) + 1;
+            return 0 != node && tree[(int) node] == value;
+        }
+
+        int size()
+        {
+            return tree.length - 1;
+        }
+
+        @Override
+        public void forEach( TLongProcedure procedure )
+        {
+            for ( int node = 1; node < tree.length; node++ )
+            {
+                if ( false == procedure.execute( tree[node] ) ) return;
+            }
+        }
+    }
+
+    /**
+     * EytzingerLongSet read from buffers, usually memory-mapped from a snapshot file (see ColumnRefSnapshot), so
+     * lookups need no heap and pages are only read once touched. Every lookup reads the first levels of the tree,
+     * which stay in the page cache. The tree is split into segments of 2^27 values, as a buffer holds at most 2^31
+     * bytes.
+     */
+    static final class MappedLongSet implements FrozenLongSet
+    {
+        static final int SEGMENT_BITS = 27;
+        private static final long SEGMENT_MASK = ( 1l << SEGMENT_BITS ) - 1;
+
+        // node n of the tree is value n - 1
+        private final LongBuffer[] segments;
+        private final long size;
+
+        /**
+         * @param segments tree in Eytzinger order, every segment but the last holds 2^SEGMENT_BITS values
+         */
+        MappedLongSet( LongBuffer[] segments, long size )
+        {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        @Override
+        public boolean contains( long value )
+        {
+            long node = 1;
+            while ( node <= size )
+            {
+                node = 2 * node + ( ( get( node ) < value ) ? 1 : 0 );
+            }
+            // see EytzingerLongSet.contains()
+            node >>>= Long.numberOfTrailingZeros( ~node ) + 1;
+            return 0 != node && get( node ) == value;
+        }
+
+        long size()
+        {
+            return size;
+        }
+
+        @Override
+        public void forEach( TLongProcedure procedure )
+        {
+            for ( long node = 1; node <= size; node++ )
+            {
+                if ( false == procedure.execute( get( node ) ) ) return;
+            }
+        }
+
+        private long get( long node )
+        {
+            long index = node - 1;
+            return segments[(int) ( index >>> SEGMENT_BITS )].get( (int) ( index & SEGMENT_MASK ) );
+        }
+    }
+
+    /**
+     * ColumnRef returned by newChunkRef()
+     */
+    public static interface ChunkRef
+    {
+        /**
+         * Adds the collected values to the ColumnRef the chunk was created from, in the order they were saved
+         */
+        public void flush();
+    }
+
+    /**
+     * Collects the values saved to a ColumnRef while one chunk of a file is checked, flush() adds them to it
+     */
+    public static class ChunkColumnRef<T> extends ColumnRef<T> implements ChunkRef
+    {
+        private final ColumnRef<T> columnRef;
+        private final List<T> values = new ArrayList<T>();
+
+        public ChunkColumnRef( ColumnRef<T> columnRef )
+        {
+            super( columnRef.getName() );
+            this.columnRef = columnRef;
+        }
+
+        @Override
+        public boolean add( T value )
+        {
+            values.add( value );
+            return true;
+        }
+
+        @Override
+        public boolean contains( T value )
+        {
+            throw new UnsupportedOperationException( "Values of a chunk can not be looked up" );
+        }
+
+        @Override
+        public void flush()
+        {
+            for ( T value : values )
+            {
+                columnRef.add( value );
+            }
+            values.clear();
+        }
+    }
+
+    /**
+     * ChunkColumnRef of long values, collected without boxing
+     */
+    public static class ChunkLongColumnRef extends AbstractLongColumnRef implements ChunkRef
+    {
+        private final AbstractLongColumnRef columnRef;
+        private final TLongList values = new TLongArrayList();
+
+        public ChunkLongColumnRef( AbstractLongColumnRef columnRef )
+        {
+            super( columnRef.getName() );
+            this.columnRef = columnRef;
+        }
+
+        @Override
+        public boolean add( long value )
+        {
+            values.add( value );
+            return true;
+        }
+
+        @Override
+        public boolean contains( long value )
+        {
+            throw new UnsupportedOperationException( "Values of a chunk can not be looked up" );
+        }
+
+        @Override
+        public void flush()
+        {
+            for ( int i = 0; i < values.size(); i++ )
+            {
+                columnRef.add( values.get( i ) );
+            }
+            values.clear();
+        }
+    }
 }
@@ -0,0 +1,334 @@
+package com.ldbc.datachecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import gnu.trove.procedure.TLongProcedure;
+
+import com.ldbc.datachecker.ColumnRef.AbstractLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.MappedLongSet;
+
+/**
+ * Saves the values of a ColumnRef to a file, and loads them back into another ColumnRef of the same type, so the
+ * ColumnRefs a file writes to can be restored without checking the file again, see IncrementalState.
+ *
+ * The file holds a 16 byte header, magic number, layout and number of values, followed by the values as 8 byte big
+ * endian longs. Values of ColumnRefs that are sets (see AbstractLongColumnRef.isSet()) are sorted, without duplicates,
+ * and saved in Eytzinger order, the same as EytzingerLongSet, so a frozen ColumnRef can look them up directly in the
+ * memory-mapped file, see map(). Other values are saved in the order forEachValue() lists them and can only be added
+ * back, see restore().
+ */
+public class ColumnRefSnapshot
+{
+    private static final int MAGIC = 0x43526632;
+    private static final int LAYOUT_VALUES = 0;
+    private static final int LAYOUT_SET = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long SEGMENT_MASK = ( 1l << MappedLongSet.SEGMENT_BITS ) - 1;
+
+    /**
+     * @return true if columnRef can be saved, see AbstractLongColumnRef.canListValues()
+     */
+    public static boolean canSnapshot( ColumnRef<?> columnRef )
+    {
+        return columnRef instanceof AbstractLongColumnRef && ( (AbstractLongColumnRef) columnRef ).canListValues();
+    }
+
+    /**
+     * Writes to a temporary file that is renamed once complete, so an interrupted write leaves no partial snapshot.
+     * Values are streamed to disk, those of sets are sorted in runs next to snapshotFile first, so the heap needed does
+     * not grow with the number of values.
+     */
+    public static void write( ColumnRef<?> columnRef, File snapshotFile ) throws IOException
+    {
+        write( columnRef, snapshotFile, ExternalLongColumnRef.DEFAULT_RUN_SIZE );
+    }
+
+    /**
+     * @param runSize number of values of a set sorted in memory at once, see ExternalLongColumnRef
+     */
+    static void write( ColumnRef<?> columnRef, File snapshotFile, int runSize ) throws IOException
+    {
+        AbstractLongColumnRef longColumnRef = (AbstractLongColumnRef) columnRef;
+        File tempFile = new File( snapshotFile.getPath() + ".tmp" );
+        boolean complete = false;
+        try
+        {
+            if ( longColumnRef.isSet() )
+            {
+                writeSet( longColumnRef, tempFile, runSize );
+            }
+            else
+            {
+                writeValues( longColumnRef, tempFile );
+            }
+            complete = true;
+        }
+        finally
+        {
+            if ( false == complete ) tempFile.delete();
+        }
+        snapshotFile.delete();
+        if ( false == tempFile.renameTo( snapshotFile ) )
+        {
+            throw new IOException( String.format( "Error renaming [%s] to [%s]", tempFile.getAbsolutePath(),
+                    snapshotFile.getAbsolutePath() ) );
+        }
+    }
+
+    /*
+     * Values in the order forEachValue() lists them, the count is written once they all were
+     */
+    private static void writeValues( AbstractLongColumnRef columnRef, File file ) throws IOException
+    {
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ),
+                BUFFER_SIZE ) );
+        final long[] count = new long[1];
+        final IOException[] exception = new IOException[1];
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( LAYOUT_VALUES );
+            out.writeLong( 0 );
+            columnRef.forEachValue( new TLongProcedure()
+            {
+                @Override
+                public boolean execute( long value )
+                {
+                    try
+                    {
+                        out.writeLong( value );
+                        count[0]++;
+                        return true;
+                    }
+                    catch ( IOException e )
+                    {
+                        exception[0] = e;
+                        return false;
+                    }
+                }
+            } );
+            if ( null != exception[0] ) throw exception[0];
+        }
+        finally
+        {
+            out.close();
+        }
+        RandomAccessFile header = new RandomAccessFile( file, "rw" );
+        try
+        {
+            header.seek( HEADER_SIZE - 8 );
+            header.writeLong( count[0] );
+        }
+        finally
+        {
+            header.close();
+        }
+    }
+
+    /*
+     * Values are sorted and deduplicated by an ExternalLongColumnRef, then read in order and placed at their in-order
+     * position of the Eytzinger tree in the memory-mapped file
+     */
+    private static void writeSet( AbstractLongColumnRef columnRef, File file, int runSize ) throws IOException
+    {
+        final ExternalLongColumnRef sortedValues = new ExternalLongColumnRef( columnRef.getName(),
+                file.getAbsoluteFile().getParentFile(), runSize );
+        try
+        {
+            columnRef.forEachValue( new TLongProcedure()
+            {
+                @Override
+                public boolean execute( long value )
+                {
+                    sortedValues.add( value );
+                    return true;
+                }
+            } );
+            long count = sortedValues.sortedValueCount();
+            RandomAccessFile out = new RandomAccessFile( file, "rw" );
+            DataInputStream in = null;
+            try
+            {
+                out.setLength( 0 );
+                out.writeInt( MAGIC );
+                out.writeInt( LAYOUT_SET );
+                out.writeLong( count );
+                out.setLength( HEADER_SIZE + count * 8 );
+                LongBuffer[] segments = mapSegments( out.getChannel(), MapMode.READ_WRITE, count );
+                in = new DataInputStream( new BufferedInputStream( new FileInputStream(
+                        sortedValues.sortedValuesFile() ), BUFFER_SIZE ) );
+                // iterative in-order traversal of the 1-based implicit tree, starting at its leftmost node
+                long node = leftmost( 1, count );
+                for ( long i = 0; i < count; i++ )
+                {
+                    long index = node - 1;
+                    segments[(int) ( index >>> MappedLongSet.SEGMENT_BITS )].put( (int) ( index & SEGMENT_MASK ),
+                            in.readLong() );
+                    if ( 2 * node + 1 <= count )
+                    {
+                        node = leftmost( 2 * node + 1, count );
+                    }
+                    else
+                    {
+                        // up past the ancestors whose right subtree is done, to the first one whose left subtree is
+                        while ( node > 1 && 1 == ( node & 1 ) )
+                        {
+                            node >>>= 1;
+                        }
+                        node >>>= 1;
+                    }
+                }
+            }
+            finally
+            {
+                if ( null != in ) in.close();
+                out.close();
+            }
+        }
+        finally
+        {
+            sortedValues.delete();
+        }
+    }
+
+    private static long leftmost( long node, long count )
+    {
+        while ( 2 * node <= count )
+        {
+            node = 2 * node;
+        }
+        return node;
+    }
+
+    /**
+     * @return true if snapshotFile exists and is a complete snapshot of this format
+     */
+    public static boolean isValid( File snapshotFile ) throws IOException
+    {
+        if ( false == snapshotFile.isFile() || snapshotFile.length() < HEADER_SIZE ) return false;
+        DataInputStream in = new DataInputStream( new FileInputStream( snapshotFile ) );
+        try
+        {
+            if ( MAGIC != in.readInt() ) return false;
+            int layout = in.readInt();
+            long count = in.readLong();
+            return ( LAYOUT_SET == layout || LAYOUT_VALUES == layout )
+                    && snapshotFile.length() == HEADER_SIZE + count * 8;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds the values of snapshotFile to columnRef
+     *
+     * @return number of values read
+     */
+    public static long restore( File snapshotFile, ColumnRef<?> columnRef ) throws IOException
+    {
+        AbstractLongColumnRef longColumnRef = (AbstractLongColumnRef) columnRef;
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( snapshotFile ),
+                BUFFER_SIZE ) );
+        try
+        {
+            long count = readHeader( in, snapshotFile )[1];
+            for ( long i = 0; i < count; i++ )
+            {
+                longColumnRef.add( in.readLong() );
+            }
+            return count;
+        }
+        catch ( EOFException e )
+        {
+            throw new IOException( String.format( "Truncated ColumnRef snapshot [%s]", snapshotFile.getAbsolutePath() ),
+                    e );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Freezes columnRef with the values of snapshotFile, looked up in the memory-mapped file rather than copied to
+     * memory, so no more values can be added to it
+     *
+     * @return false if columnRef can not be frozen to a mapped file or the snapshot is not a set, columnRef is not
+     *         changed then, see restore()
+     */
+    public static boolean map( File snapshotFile, ColumnRef<?> columnRef ) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile( snapshotFile, "r" );
+        try
+        {
+            long[] header = readHeader( file, snapshotFile );
+            long count = header[1];
+            if ( HEADER_SIZE + count * 8 != file.length() )
+            {
+                throw new IOException( String.format( "Truncated ColumnRef snapshot [%s]",
+                        snapshotFile.getAbsolutePath() ) );
+            }
+            if ( LAYOUT_SET == header[0] )
+            {
+                // mappings stay valid once the file is closed
+                MappedLongSet mappedSet = new MappedLongSet( mapSegments( file.getChannel(), MapMode.READ_ONLY,
+                        count ), count );
+                return ( (AbstractLongColumnRef) columnRef ).freezeTo( mappedSet );
+            }
+            return false;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private static LongBuffer[] mapSegments( FileChannel channel, MapMode mode, long count ) throws IOException
+    {
+        long segmentSize = 1l << MappedLongSet.SEGMENT_BITS;
+        int segmentCount = (int) ( ( count + segmentSize - 1 ) / segmentSize );
+        LongBuffer[] segments = new LongBuffer[segmentCount];
+        for ( int i = 0; i < segmentCount; i++ )
+        {
+            long first = i * segmentSize;
+            long length = Math.min( segmentSize, count - first );
+            segments[i] = channel.map( mode, HEADER_SIZE + first * 8, length * 8 ).asLongBuffer();
+        }
+        return segments;
+    }
+
+    /**
+     * @return layout and number of values
+     */
+    private static long[] readHeader( DataInput in, File snapshotFile ) throws IOException
+    {
+        if ( MAGIC != in.readInt() )
+        {
+            throw new IOException( String.format( "Not a ColumnRef snapshot [%s]",
+                    snapshotFile.getAbsolutePath() ) );
+        }
+        int layout = in.readInt();
+        if ( LAYOUT_SET != layout && LAYOUT_VALUES != layout )
+        {
+            throw new IOException( String.format( "Unknown layout %s of ColumnRef snapshot [%s]", layout,
+                    snapshotFile.getAbsolutePath() ) );
+        }
+        return new long[] { layout, in.readLong() };
+    }
+}
@@ -2,28 +2,64 @@ package com.ldbc.datachecker;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
 public class CsvFileReader implements Iterator<String[]>
 {
     private static final Logger logger = Logger.getLogger( CsvFileReader.class );
     private final Pattern COLUMN_SEPARATOR_PATTERN = Pattern.compile( "\\|" );
 
+    private final CountingInputStream csvInputStream;
     private final BufferedReader csvReader;
 
     private String[] next = null;
     private boolean closed = false;
+    private String contentHash = null;
 
     public CsvFileReader( File csvFile ) throws FileNotFoundException
     {
-        this.csvReader = new BufferedReader( new FileReader( csvFile ) );
+        this.csvInputStream = new CountingInputStream( new FileInputStream( csvFile ) );
+        this.csvReader = new BufferedReader( new InputStreamReader( csvInputStream ) );
+    }
+
+    /**
+     * @return bytes read from the file so far, which runs ahead of the lines returned by up to the buffer sizes of
+     *         the reader
+     */
+    public long bytesRead()
+    {
+        return csvInputStream.count;
+    }
+
+    /**
+     * Hashes the bytes while they are read, call before reading any line
+     */
+    public CsvFileReader withContentHash()
+    {
+        csvInputStream.hasher = Hashing.murmur3_128().newHasher();
+        return this;
+    }
+
+    /**
+     * @return hash of the file content, the same as Files.hash( csvFile, Hashing.murmur3_128() ), or null if the file
+     *         was not read to its end or withContentHash() was not called
+     */
+    public String contentHash()
+    {
+        return contentHash;
     }
 
     @Override
@@ -31,10 +67,23 @@ public class CsvFileReader implements Iterator<String[]>
     {
         if ( true == closed ) return false;
         next = ( next == null ) ? nextLine() : next;
-        if ( null == next ) closed = closeReader();
+        if ( null == next )
+        {
+            if ( null != csvInputStream.hasher ) contentHash = csvInputStream.hasher.hash().toString();
+            closed = closeReader();
+        }
         return ( null != next );
     }
 
+    /**
+     * Closes the file of a reader that is not read to its end, readers close themselves once they are. Can be called
+     * more than once.
+     */
+    public void close()
+    {
+        if ( false == closed ) closed = closeReader();
+    }
+
     @Override
     public String[] next()
     {
@@ -99,4 +148,49 @@ public class CsvFileReader implements Iterator<String[]>
         }
         return true;
     }
+
+    private static class CountingInputStream extends FilterInputStream
+    {
+        private long count = 0;
+        private Hasher hasher = null;
+
+        private CountingInputStream( InputStream in )
+        {
+            super( in );
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if ( -1 != b )
+            {
+                count++;
+                if ( null != hasher ) hasher.putByte( (byte) b );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException
+        {
+            int n = super.read( b, off, len );
+            if ( n > 0 )
+            {
+                count += n;
+                if ( null != hasher ) hasher.putBytes( b, off, n );
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException
+        {
+            long skipped = super.skip( n );
+            count += skipped;
+            // skipped bytes can not be hashed
+            if ( skipped > 0 ) hasher = null;
+            return skipped;
+        }
+    }
 }
@@ -0,0 +1,223 @@
+package com.ldbc.datachecker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * One line of a '|' separated file, with columns exposed as byte slices of a shared buffer.
+ *
+ * Readers reuse a single instance for every line, so a CsvLine is only valid until the next line is read. Column
+ * Strings are decoded (as UTF-8) on demand and cached until then. A line created from Strings encodes its bytes the
+ * first time byte access is requested.
+ */
+public final class CsvLine
+{
+    public static final Charset CHARSET = Charset.forName( "UTF-8" );
+
+    private ByteBuffer buffer = null;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private String[] strings = new String[16];
+    private int columnCount = 0;
+    private byte[] scratch = new byte[256];
+
+    public static CsvLine fromColumns( String... columns )
+    {
+        CsvLine line = new CsvLine();
+        line.reset( columns );
+        return line;
+    }
+
+    public int columnCount()
+    {
+        return columnCount;
+    }
+
+    public String getString( int column )
+    {
+        String string = strings[column];
+        if ( null == string )
+        {
+            int length = ends[column] - starts[column];
+            if ( scratch.length < length )
+            {
+                scratch = new byte[Math.max( length, scratch.length * 2 )];
+            }
+            for ( int i = 0; i < length; i++ )
+            {
+                scratch[i] = buffer.get( starts[column] + i );
+            }
+            string = new String( scratch, 0, length, CHARSET );
+            strings[column] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Parses a column straight from its bytes, accepting exactly what Long.parseLong() accepts
+     *
+     * @throws NumberFormatException if the column is not a valid long
+     */
+    public long getLong( int column )
+    {
+        if ( null == buffer )
+        {
+            return Long.parseLong( strings[column] );
+        }
+        int position = starts[column];
+        int end = ends[column];
+        if ( position == end )
+        {
+            throw new NumberFormatException( "For input string: \"\"" );
+        }
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        byte first = buffer.get( position );
+        if ( '-' == first || '+' == first )
+        {
+            negative = ( '-' == first );
+            if ( negative ) limit = Long.MIN_VALUE;
+            position++;
+            if ( position == end )
+            {
+                throw new NumberFormatException( "For input string: \"" + getString( column ) + "\"" );
+            }
+        }
+        // accumulate negatively, as Long.parseLong() does, so that Long.MIN_VALUE does not overflow
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+        while ( position < end )
+        {
+            byte b = buffer.get( position++ );
+            if ( b < '0' || b > '9' )
+            {
+                // non-ASCII digits are valid for Long.parseLong()
+                return Long.parseLong( getString( column ) );
+            }
+            int digit = b - '0';
+            if ( result < multiplicationLimit || result * 10 < limit + digit )
+            {
+                throw new NumberFormatException( "For input string: \"" + getString( column ) + "\"" );
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    public String[] toStringArray()
+    {
+        String[] columns = new String[columnCount];
+        for ( int i = 0; i < columnCount; i++ )
+        {
+            columns[i] = getString( i );
+        }
+        return columns;
+    }
+
+    /**
+     * @return true if the columns are slices of a buffer, false if the line was created from Strings that were not
+     *         encoded yet, then buffer(), start() and end() encode all columns
+     */
+    public boolean hasBytes()
+    {
+        return null != buffer;
+    }
+
+    /**
+     * @return buffer containing the bytes of all columns, use with start(column) and end(column)
+     */
+    public ByteBuffer buffer()
+    {
+        if ( null == buffer )
+        {
+            encode();
+        }
+        return buffer;
+    }
+
+    public int start( int column )
+    {
+        if ( null == buffer )
+        {
+            encode();
+        }
+        return starts[column];
+    }
+
+    public int end( int column )
+    {
+        if ( null == buffer )
+        {
+            encode();
+        }
+        return ends[column];
+    }
+
+    public int length( int column )
+    {
+        return end( column ) - start( column );
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString( toStringArray() );
+    }
+
+    /*
+     * Reader API
+     */
+
+    void reset( ByteBuffer buffer )
+    {
+        Arrays.fill( strings, 0, columnCount, null );
+        this.buffer = buffer;
+        this.columnCount = 0;
+    }
+
+    void addColumn( int start, int end )
+    {
+        if ( columnCount == starts.length )
+        {
+            starts = Arrays.copyOf( starts, columnCount * 2 );
+            ends = Arrays.copyOf( ends, columnCount * 2 );
+            strings = Arrays.copyOf( strings, columnCount * 2 );
+        }
+        starts[columnCount] = start;
+        ends[columnCount] = end;
+        columnCount++;
+    }
+
+    void reset( String[] columns )
+    {
+        reset( (ByteBuffer) null );
+        for ( int i = 0; i < columns.length; i++ )
+        {
+            addColumn( 0, 0 );
+            strings[i] = columns[i];
+        }
+    }
+
+    private void encode()
+    {
+        byte[][] encodedColumns = new byte[columnCount][];
+        int length = 0;
+        for ( int i = 0; i < columnCount; i++ )
+        {
+            encodedColumns[i] = strings[i].getBytes( CHARSET );
+            length += encodedColumns[i].length + 1;
+        }
+        byte[] bytes = new byte[length];
+        int position = 0;
+        for ( int i = 0; i < columnCount; i++ )
+        {
+            System.arraycopy( encodedColumns[i], 0, bytes, position, encodedColumns[i].length );
+            starts[i] = position;
+            ends[i] = position + encodedColumns[i].length;
+            position = ends[i] + 1;
+            if ( i < columnCount - 1 ) bytes[ends[i]] = '|';
+        }
+        buffer = ByteBuffer.wrap( bytes );
+    }
+}
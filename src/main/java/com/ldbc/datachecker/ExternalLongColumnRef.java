@@ -0,0 +1,613 @@
+package com.ldbc.datachecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import com.ldbc.datachecker.ColumnRef.AbstractLongColumnRef;
+
+/**
+ * ColumnRef for id sets larger than memory. Values are sorted and written to disk in runs, columns that check values
+ * in this ColumnRef record them with their line numbers (see Probes), also in sorted runs on disk, and once the file
+ * has been read the recorded values are verified with a streaming merge against the merged, sorted ColumnRef values.
+ * A merge reads at most MAX_FAN_IN runs at once, more runs are first merged into fewer in intermediate passes, so
+ * open files and read buffers stay bounded however many runs were spilled.
+ *
+ * Values can not be looked up one at a time, contains() is not supported, and add() does not detect duplicates so
+ * this ColumnRef can not be used with saveToGroupAndCheckUnique().
+ */
+public class ExternalLongColumnRef extends AbstractLongColumnRef
+{
+    private static final Logger logger = Logger.getLogger( ExternalLongColumnRef.class );
+
+    public static final int DEFAULT_RUN_SIZE = 4 * 1024 * 1024;
+    public static final int MAX_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File spillDirectory;
+    private final int runSize;
+    private final List<Run> runs = new ArrayList<Run>();
+    private long[] values;
+    private int valueCount = 0;
+    private Run sortedValues = null;
+
+    public ExternalLongColumnRef( String name )
+    {
+        this( name, new File( System.getProperty( "java.io.tmpdir" ) ), DEFAULT_RUN_SIZE );
+    }
+
+    /**
+     * @param spillDirectory where sorted runs are written, they are deleted when no longer needed
+     * @param runSize number of values sorted in memory before they are written to disk
+     */
+    public ExternalLongColumnRef( String name, File spillDirectory, int runSize )
+    {
+        super( name );
+        this.spillDirectory = spillDirectory;
+        this.runSize = runSize;
+        this.values = new long[Math.min( 1024, runSize )];
+    }
+
+    /**
+     * Must not be called concurrently with other methods, files that add to a ColumnRef are checked before files that
+     * look values up in it
+     *
+     * @return always true, duplicates are only removed when runs are merged
+     */
+    @Override
+    public boolean add( long value )
+    {
+        if ( null != sortedValues )
+        {
+            throw new IllegalStateException( String.format( "ColumnRef[%s] can not be added to once verified",
+                    getName() ) );
+        }
+        if ( valueCount == values.length )
+        {
+            if ( values.length < runSize )
+            {
+                values = Arrays.copyOf( values, Math.min( runSize, values.length * 2 ) );
+            }
+            else
+            {
+                spill();
+            }
+        }
+        values[valueCount++] = value;
+        return true;
+    }
+
+    @Override
+    public boolean contains( long value )
+    {
+        throw new UnsupportedOperationException( String.format(
+                "Values of ColumnRef[%s] are verified once the file has been read, see newProbes()", getName() ) );
+    }
+
+    /**
+     * @return recorder for the values one column checks in this ColumnRef
+     */
+    public Probes newProbes()
+    {
+        return new Probes( this );
+    }
+
+    /*
+     * Merges all runs into one sorted run without duplicates, the first time it is called
+     */
+    private synchronized Run sortedValues() throws IOException
+    {
+        if ( null == sortedValues )
+        {
+            if ( valueCount > 0 || runs.isEmpty() ) spill();
+            values = null;
+            reduceRuns( runs, 1, spillDirectory );
+            Run sortedRun = newRun( spillDirectory, 1 );
+            RunWriter writer = new RunWriter( sortedRun );
+            MergedRuns merged = null;
+            try
+            {
+                merged = new MergedRuns( runs, 1 );
+                boolean first = true;
+                long previous = 0;
+                while ( merged.hasNext() )
+                {
+                    long value = merged.next()[0];
+                    if ( first || value != previous )
+                    {
+                        writer.write( value );
+                    }
+                    first = false;
+                    previous = value;
+                }
+            }
+            finally
+            {
+                if ( null != merged ) merged.close();
+                writer.close();
+            }
+            for ( Run run : runs )
+            {
+                run.delete();
+            }
+            runs.clear();
+            sortedValues = sortedRun;
+            logger.info( String.format( "ColumnRef[%s] contains %s values", getName(), sortedValues.count ) );
+        }
+        return sortedValues;
+    }
+
+    /*
+     * Sorted values without duplicates, a file of big endian longs, once they have been merged, see
+     * ColumnRefSnapshot.write()
+     */
+    File sortedValuesFile() throws IOException
+    {
+        return sortedValues().file;
+    }
+
+    long sortedValueCount() throws IOException
+    {
+        return sortedValues().count;
+    }
+
+    /*
+     * Deletes the runs and sorted values written so far, the ColumnRef can not be used afterwards
+     */
+    synchronized void delete()
+    {
+        for ( Run run : runs )
+        {
+            run.delete();
+        }
+        runs.clear();
+        if ( null != sortedValues ) sortedValues.delete();
+        values = null;
+    }
+
+    private void spill()
+    {
+        Arrays.sort( values, 0, valueCount );
+        try
+        {
+            Run run = newRun( spillDirectory, 1 );
+            RunWriter writer = new RunWriter( run );
+            for ( int i = 0; i < valueCount; i++ )
+            {
+                writer.write( values[i] );
+            }
+            writer.close();
+            runs.add( run );
+        }
+        catch ( IOException e )
+        {
+            String errMsg = String.format( "Error writing values of ColumnRef[%s] to %s", getName(),
+                    spillDirectory.getAbsolutePath() );
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+        valueCount = 0;
+    }
+
+    /**
+     * Receives values that were not found in the ColumnRef
+     */
+    public static interface MissingValueHandler
+    {
+        public void handleMissingValue( long value, long lineNumber ) throws FileCheckException;
+    }
+
+    /**
+     * Values, with the line they were found on, that one column checks in an ExternalLongColumnRef
+     */
+    public static class Probes
+    {
+        private final ExternalLongColumnRef columnRef;
+        private final List<Run> runs = new ArrayList<Run>();
+        private long[] values;
+        private long[] lineNumbers;
+        private int count = 0;
+
+        private Probes( ExternalLongColumnRef columnRef )
+        {
+            this.columnRef = columnRef;
+            this.values = new long[Math.min( 1024, columnRef.runSize )];
+            this.lineNumbers = new long[values.length];
+        }
+
+        public ExternalLongColumnRef getColumnRef()
+        {
+            return columnRef;
+        }
+
+        public void add( long value, long lineNumber )
+        {
+            if ( count == values.length )
+            {
+                if ( values.length < columnRef.runSize )
+                {
+                    int length = Math.min( columnRef.runSize, values.length * 2 );
+                    values = Arrays.copyOf( values, length );
+                    lineNumbers = Arrays.copyOf( lineNumbers, length );
+                }
+                else
+                {
+                    spill();
+                }
+            }
+            values[count] = value;
+            lineNumbers[count] = lineNumber;
+            count++;
+        }
+
+        /**
+         * Takes over the values recorded by other, e.g. by the column of one chunk of the same file
+         */
+        public void addAll( Probes other )
+        {
+            if ( other.count > 0 ) other.spill();
+            runs.addAll( other.runs );
+            other.runs.clear();
+        }
+
+        /**
+         * Reports every recorded value not in the ColumnRef, in order of value, and deletes the recorded values. The
+         * ColumnRef must not be added to afterwards.
+         */
+        public void verify( MissingValueHandler handler ) throws FileCheckException
+        {
+            if ( count > 0 ) spill();
+            values = null;
+            lineNumbers = null;
+            try
+            {
+                Run sortedValues = columnRef.sortedValues();
+                reduceRuns( runs, 2, columnRef.spillDirectory );
+                RunReader columnRefValues = new RunReader( sortedValues );
+                MergedRuns probes = null;
+                try
+                {
+                    probes = new MergedRuns( runs, 2 );
+                    boolean hasColumnRefValue = columnRefValues.hasNext();
+                    long columnRefValue = ( hasColumnRefValue ) ? columnRefValues.next()[0] : 0;
+                    while ( probes.hasNext() )
+                    {
+                        long[] probe = probes.next();
+                        while ( hasColumnRefValue && columnRefValue < probe[0] )
+                        {
+                            hasColumnRefValue = columnRefValues.hasNext();
+                            if ( hasColumnRefValue ) columnRefValue = columnRefValues.next()[0];
+                        }
+                        if ( false == hasColumnRefValue || columnRefValue != probe[0] )
+                        {
+                            handler.handleMissingValue( probe[0], probe[1] );
+                        }
+                    }
+                }
+                finally
+                {
+                    if ( null != probes ) probes.close();
+                    columnRefValues.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new FileCheckException( String.format( "Error verifying values in ColumnRef[%s]",
+                        columnRef.getName() ), e );
+            }
+            finally
+            {
+                for ( Run run : runs )
+                {
+                    run.delete();
+                }
+                runs.clear();
+            }
+        }
+
+        private void spill()
+        {
+            sort( values, lineNumbers, count );
+            try
+            {
+                Run run = newRun( columnRef.spillDirectory, 2 );
+                RunWriter writer = new RunWriter( run );
+                for ( int i = 0; i < count; i++ )
+                {
+                    writer.write( values[i] );
+                    writer.write( lineNumbers[i] );
+                }
+                writer.close();
+                runs.add( run );
+            }
+            catch ( IOException e )
+            {
+                String errMsg = String.format( "Error writing values checked in ColumnRef[%s] to %s",
+                        columnRef.getName(), columnRef.spillDirectory.getAbsolutePath() );
+                logger.error( errMsg, e );
+                throw new RuntimeException( errMsg, e );
+            }
+            count = 0;
+        }
+
+        /*
+         * Heap sort of ( value, lineNumber ) pairs, in place
+         */
+        private static void sort( long[] values, long[] lineNumbers, int count )
+        {
+            for ( int i = count / 2 - 1; i >= 0; i-- )
+            {
+                siftDown( values, lineNumbers, i, count );
+            }
+            for ( int end = count - 1; end > 0; end-- )
+            {
+                swap( values, lineNumbers, 0, end );
+                siftDown( values, lineNumbers, 0, end );
+            }
+        }
+
+        private static void siftDown( long[] values, long[] lineNumbers, int i, int count )
+        {
+            while ( true )
+            {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if ( left < count && greaterThan( values, lineNumbers, left, largest ) ) largest = left;
+                if ( right < count && greaterThan( values, lineNumbers, right, largest ) ) largest = right;
+                if ( largest == i ) return;
+                swap( values, lineNumbers, i, largest );
+                i = largest;
+            }
+        }
+
+        private static boolean greaterThan( long[] values, long[] lineNumbers, int i, int j )
+        {
+            return values[i] > values[j] || ( values[i] == values[j] && lineNumbers[i] > lineNumbers[j] );
+        }
+
+        private static void swap( long[] values, long[] lineNumbers, int i, int j )
+        {
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+            long lineNumber = lineNumbers[i];
+            lineNumbers[i] = lineNumbers[j];
+            lineNumbers[j] = lineNumber;
+        }
+    }
+
+    /*
+     * Runs, files of sorted records of one or more longs
+     */
+
+    private static Run newRun( File spillDirectory, int recordSize ) throws IOException
+    {
+        File file = File.createTempFile( "datachecker-run", ".bin", spillDirectory );
+        file.deleteOnExit();
+        return new Run( file, recordSize );
+    }
+
+    /*
+     * Merges the oldest MAX_FAN_IN runs into one until at most MAX_FAN_IN are left. runs holds every remaining run at
+     * all times, so callers can delete them if a merge fails.
+     */
+    private static void reduceRuns( List<Run> runs, int recordSize, File spillDirectory ) throws IOException
+    {
+        while ( runs.size() > MAX_FAN_IN )
+        {
+            List<Run> group = new ArrayList<Run>( runs.subList( 0, MAX_FAN_IN ) );
+            Run mergedRun = newRun( spillDirectory, recordSize );
+            RunWriter writer = new RunWriter( mergedRun );
+            MergedRuns merged = null;
+            boolean complete = false;
+            try
+            {
+                merged = new MergedRuns( group, recordSize );
+                while ( merged.hasNext() )
+                {
+                    long[] record = merged.next();
+                    for ( int i = 0; i < recordSize; i++ )
+                    {
+                        writer.write( record[i] );
+                    }
+                }
+                complete = true;
+            }
+            finally
+            {
+                if ( null != merged ) merged.close();
+                writer.close();
+                if ( false == complete ) mergedRun.delete();
+            }
+            runs.subList( 0, MAX_FAN_IN ).clear();
+            runs.add( mergedRun );
+            for ( Run run : group )
+            {
+                run.delete();
+            }
+        }
+    }
+
+    private static class Run
+    {
+        private final File file;
+        private final int recordSize;
+        private long count = 0;
+
+        private Run( File file, int recordSize )
+        {
+            this.file = file;
+            this.recordSize = recordSize;
+        }
+
+        private void delete()
+        {
+            file.delete();
+        }
+    }
+
+    private static class RunWriter
+    {
+        private final Run run;
+        private final DataOutputStream out;
+        private int recordPosition = 0;
+
+        private RunWriter( Run run ) throws IOException
+        {
+            this.run = run;
+            this.out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run.file ), BUFFER_SIZE ) );
+        }
+
+        private void write( long value ) throws IOException
+        {
+            out.writeLong( value );
+            recordPosition++;
+            if ( recordPosition == run.recordSize )
+            {
+                recordPosition = 0;
+                run.count++;
+            }
+        }
+
+        private void close() throws IOException
+        {
+            out.close();
+        }
+    }
+
+    private static class RunReader implements Comparable<RunReader>
+    {
+        private final DataInputStream in;
+        private long remaining;
+        private final long[] record;
+
+        private RunReader( Run run ) throws IOException
+        {
+            this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( run.file ), BUFFER_SIZE ) );
+            this.remaining = run.count;
+            this.record = new long[run.recordSize];
+            if ( 0 == remaining ) close();
+        }
+
+        private boolean hasNext()
+        {
+            return remaining > 0;
+        }
+
+        /**
+         * @return the next record, the same array is reused for every record
+         */
+        private long[] next() throws IOException
+        {
+            for ( int i = 0; i < record.length; i++ )
+            {
+                record[i] = in.readLong();
+            }
+            remaining--;
+            if ( 0 == remaining ) close();
+            return record;
+        }
+
+        private void close() throws IOException
+        {
+            in.close();
+        }
+
+        @Override
+        public int compareTo( RunReader other )
+        {
+            for ( int i = 0; i < record.length; i++ )
+            {
+                if ( record[i] != other.record[i] ) return ( record[i] < other.record[i] ) ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    /*
+     * K-way merge of runs, in record order, close() once done even if the merge failed
+     */
+    private static class MergedRuns
+    {
+        private final PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>();
+        private final List<RunReader> openedReaders = new ArrayList<RunReader>();
+        private final long[] record;
+
+        private MergedRuns( List<Run> runs, int recordSize ) throws IOException
+        {
+            this.record = new long[recordSize];
+            boolean opened = false;
+            try
+            {
+                for ( Run run : runs )
+                {
+                    RunReader reader = new RunReader( run );
+                    openedReaders.add( reader );
+                    if ( reader.hasNext() )
+                    {
+                        reader.next();
+                        readers.add( reader );
+                    }
+                }
+                opened = true;
+            }
+            finally
+            {
+                if ( false == opened ) close();
+            }
+        }
+
+        /**
+         * Closes all readers, throws the first error once all were closed
+         */
+        private void close() throws IOException
+        {
+            IOException exception = null;
+            for ( RunReader reader : openedReaders )
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch ( IOException e )
+                {
+                    if ( null == exception ) exception = e;
+                }
+            }
+            openedReaders.clear();
+            if ( null != exception ) throw exception;
+        }
+
+        private boolean hasNext()
+        {
+            return false == readers.isEmpty();
+        }
+
+        /**
+         * @return the next record, the same array is reused for every record
+         */
+        private long[] next() throws IOException
+        {
+            RunReader reader = readers.poll();
+            System.arraycopy( reader.record, 0, record, 0, record.length );
+            if ( reader.hasNext() )
+            {
+                reader.next();
+                readers.add( reader );
+            }
+            return record;
+        }
+    }
+}
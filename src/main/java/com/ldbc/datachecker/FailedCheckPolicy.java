@@ -4,7 +4,10 @@ import java.io.File;
 
 public interface FailedCheckPolicy
 {
-    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, String[] row );
+    /**
+     * Runners may reuse the returned policy for later lines of the same file, see FailedColumnCheckPolicy.forLine()
+     */
+    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line );
 
     public FailedFileCheckPolicy getFailedFileCheckPolicy();
 
@@ -13,14 +16,37 @@ public interface FailedCheckPolicy
     public abstract static class FailedColumnCheckPolicy
     {
         private final FileCheck fileCheck;
-        private final long lineNumber;
-        private final String[] row;
+        private long lineNumber;
+        private CsvLine line;
+        private int column = -1;
 
-        public FailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, String[] row )
+        public FailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
         {
             this.fileCheck = fileCheck;
             this.lineNumber = lineNumber;
-            this.row = row;
+            this.line = line;
+        }
+
+        /**
+         * Points this policy at another line of the same file, so checking a line that does not fail creates no
+         * policy. Subclasses must read the line through getLineNumber() and getRow() when handling a failure, and
+         * copy what they keep, as the line may be reused by the reader.
+         */
+        public final FailedColumnCheckPolicy forLine( long lineNumber, CsvLine line )
+        {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.column = -1;
+            return this;
+        }
+
+        /**
+         * Sets the index of the column checked next, for failures to be attributed to it
+         */
+        public final FailedColumnCheckPolicy forColumn( int column )
+        {
+            this.column = column;
+            return this;
         }
 
         protected final FileCheck getFileCheck()
@@ -33,9 +59,28 @@ public interface FailedCheckPolicy
             return lineNumber;
         }
 
+        /**
+         * @return index of the failed column, or -1 if unknown
+         */
+        protected final int getColumn()
+        {
+            return column;
+        }
+
+        /**
+         * For policies that pass failures on to another policy while handling them, see forLine()
+         */
+        protected final CsvLine getLine()
+        {
+            return line;
+        }
+
+        /**
+         * Decodes the row, only call when handling a failure
+         */
         protected final String[] getRow()
         {
-            return row;
+            return line.toStringArray();
         }
 
         public abstract void handleFailedColumnCheck( String columnString, String message ) throws ColumnCheckException;
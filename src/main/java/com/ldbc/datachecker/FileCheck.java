@@ -1,6 +1,7 @@
 package com.ldbc.datachecker;
 
 import java.io.File;
+import java.util.Set;
 
 import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
@@ -11,8 +12,18 @@ public interface FileCheck
 
     public int startLine();
 
+    /**
+     * @return ColumnRefs this check adds values to, used to order checks that share ColumnRefs
+     */
+    public Set<ColumnRef<?>> writesTo();
+
+    /**
+     * @return ColumnRefs this check looks values up in, used to order checks that share ColumnRefs
+     */
+    public Set<ColumnRef<?>> readsFrom();
+
     public void checkLine( FailedFileCheckPolicy filePolicy, FailedColumnCheckPolicy columnPolicy, long lineNumber,
-            String[] columns ) throws FileCheckException, ColumnCheckException;
+            CsvLine line ) throws FileCheckException, ColumnCheckException;
 
     public void checkFile( FailedFileCheckPolicy filePolicy ) throws FileCheckException;
 }
@@ -0,0 +1,124 @@
+package com.ldbc.datachecker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependencies between files, inferred from the ColumnRefs their FileChecks share.
+ *
+ * FileChecks are grouped by the file they check, so each file is read once however many checks target it. Nodes are
+ * ordered by the first occurrence of their file in the FileCheck list. A node depends on every earlier node that
+ * writes to a ColumnRef it reads or writes, or that reads a ColumnRef it writes to. Edges only ever point forward, so
+ * the graph is acyclic and any execution that respects it observes the same ColumnRef contents as checking the files
+ * sequentially.
+ */
+public class FileCheckGraph
+{
+    private final List<Node> nodes;
+
+    public FileCheckGraph( List<FileCheck> fileChecks )
+    {
+        Map<File, Node> nodesByFile = new LinkedHashMap<File, Node>();
+        for ( FileCheck fileCheck : fileChecks )
+        {
+            File file = fileCheck.forFile().getAbsoluteFile();
+            Node node = nodesByFile.get( file );
+            if ( null == node )
+            {
+                node = new Node( file );
+                nodesByFile.put( file, node );
+            }
+            node.add( fileCheck );
+        }
+        this.nodes = new ArrayList<Node>( nodesByFile.values() );
+        for ( int i = 0; i < nodes.size(); i++ )
+        {
+            Node later = nodes.get( i );
+            for ( int j = 0; j < i; j++ )
+            {
+                Node earlier = nodes.get( j );
+                if ( conflict( earlier, later ) )
+                {
+                    earlier.dependents.add( later );
+                    later.dependencies.add( earlier );
+                }
+            }
+        }
+    }
+
+    private static boolean conflict( Node earlier, Node later )
+    {
+        return intersects( earlier.writesTo, later.readsFrom ) || intersects( earlier.writesTo, later.writesTo )
+               || intersects( earlier.readsFrom, later.writesTo );
+    }
+
+    private static boolean intersects( Set<ColumnRef<?>> set1, Set<ColumnRef<?>> set2 )
+    {
+        for ( ColumnRef<?> columnRef : set1 )
+        {
+            if ( set2.contains( columnRef ) ) return true;
+        }
+        return false;
+    }
+
+    public List<Node> getNodes()
+    {
+        return Collections.unmodifiableList( nodes );
+    }
+
+    public static class Node
+    {
+        private final File file;
+        private final List<FileCheck> fileChecks = new ArrayList<FileCheck>();
+        private final Set<ColumnRef<?>> writesTo = new HashSet<ColumnRef<?>>();
+        private final Set<ColumnRef<?>> readsFrom = new HashSet<ColumnRef<?>>();
+        private final List<Node> dependencies = new ArrayList<Node>();
+        private final List<Node> dependents = new ArrayList<Node>();
+
+        private Node( File file )
+        {
+            this.file = file;
+        }
+
+        private void add( FileCheck fileCheck )
+        {
+            fileChecks.add( fileCheck );
+            writesTo.addAll( fileCheck.writesTo() );
+            readsFrom.addAll( fileCheck.readsFrom() );
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public List<FileCheck> getFileChecks()
+        {
+            return Collections.unmodifiableList( fileChecks );
+        }
+
+        /**
+         * @return ColumnRefs the checks of this file add values to
+         */
+        public Set<ColumnRef<?>> getWritesTo()
+        {
+            return Collections.unmodifiableSet( writesTo );
+        }
+
+        public List<Node> getDependencies()
+        {
+            return Collections.unmodifiableList( dependencies );
+        }
+
+        public List<Node> getDependents()
+        {
+            return Collections.unmodifiableList( dependents );
+        }
+    }
+}
@@ -1,55 +1,474 @@
 package com.ldbc.datachecker;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.log4j.Logger;
 
 import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
+import com.ldbc.datachecker.ProgressReporter.FileProgress;
+import com.ldbc.datachecker.RunReport.FileStats;
 
 public class FileCheckRunner
 {
     private static final Logger logger = Logger.getLogger( FileCheckRunner.class );
+    // bytes read are passed to the ProgressReporter once every this many lines
+    private static final long PROGRESS_LINE_MASK = 4096 - 1;
+
+    public static enum ReaderType
+    {
+        /**
+         * BufferedReader with platform charset, lines split into Strings
+         */
+        BUFFERED,
+        /**
+         * Memory-mapped UTF-8 bytes, columns are exposed as byte slices
+         */
+        MEMORY_MAPPED
+    }
 
     private final FailedCheckPolicy policy;
+    private final ReaderType readerType;
+    private long chunkSize = 0;
+    private RunReport runReport = null;
+    private ProgressReporter progressReporter = null;
+    private Map<File, String> contentHashes = null;
 
     public FileCheckRunner( FailedCheckPolicy policy )
+    {
+        this( policy, ReaderType.BUFFERED );
+    }
+
+    public FileCheckRunner( FailedCheckPolicy policy, ReaderType readerType )
     {
         this.policy = policy;
+        this.readerType = readerType;
+    }
+
+    /**
+     * Files larger than chunkSize bytes are split into line-aligned chunks that are checked in parallel, when running
+     * in a ForkJoinPool, reading MEMORY_MAPPED, and all FileChecks of the file are splittable.
+     *
+     * @param chunkSize 0 to never split files
+     */
+    public FileCheckRunner withChunkSize( long chunkSize )
+    {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Records rows, bytes, wall and CPU time of every checked file, and the time spent in each FileCheck
+     */
+    public FileCheckRunner withRunReport( RunReport runReport )
+    {
+        this.runReport = runReport;
+        return this;
+    }
+
+    /**
+     * Passes the bytes read of every checked file to progressReporter
+     */
+    public FileCheckRunner withProgressReporter( ProgressReporter progressReporter )
+    {
+        this.progressReporter = progressReporter;
+        return this;
+    }
+
+    /**
+     * Puts the content hash of every file read as a whole into contentHashes, hashed while the file is checked so it
+     * is not read twice. Files split into chunks are not hashed.
+     *
+     * @param contentHashes must be thread safe when files are checked in parallel
+     */
+    public FileCheckRunner withContentHashes( Map<File, String> contentHashes )
+    {
+        this.contentHashes = contentHashes;
+        return this;
     }
 
     public void checkFile( FileCheck fileCheck ) throws ColumnCheckException, FileCheckException
     {
-        logger.info( String.format( "Checking[%s] - %s", fileCheck.getClass().getSimpleName(),
-                fileCheck.forFile().getName() ) );
+        checkFile( Collections.singletonList( fileCheck ) );
+    }
 
-        FailedFileCheckPolicy filePolicy = policy.getFailedFileCheckPolicy();
+    /**
+     * Reads the file once and passes every line to all given FileChecks
+     *
+     * @param fileChecks must all be for the same file
+     */
+    public void checkFile( List<FileCheck> fileChecks ) throws ColumnCheckException, FileCheckException
+    {
+        File file = fileChecks.get( 0 ).forFile();
+        for ( FileCheck fileCheck : fileChecks )
+        {
+            logger.info( String.format( "Checking[%s] - %s", fileCheck.getClass().getSimpleName(),
+                    fileCheck.forFile().getName() ) );
+            if ( false == file.getAbsoluteFile().equals( fileCheck.forFile().getAbsoluteFile() ) )
+            {
+                throw new FileCheckException( String.format( "Expected check for %s but found check for %s",
+                        file.getAbsolutePath(), fileCheck.forFile().getAbsolutePath() ) );
+            }
+        }
 
-        CsvFileReader reader;
+        long startNanos = System.nanoTime();
+        FileStats stats = ( null == runReport ) ? null : runReport.startFile( file, fileChecks );
+        FileProgress fileProgress = ( null == progressReporter ) ? null : progressReporter.startFile( file );
         try
         {
-            reader = new CsvFileReader( fileCheck.forFile() );
+            checkFile( file, fileChecks, stats, fileProgress );
         }
-        catch ( FileNotFoundException e )
+        finally
         {
-            String errMsg = String.format( "File not found [%s]\n", fileCheck.forFile().getAbsolutePath() );
-            throw new ColumnCheckException( errMsg );
+            if ( null != fileProgress ) fileProgress.finish();
         }
+        if ( null != stats ) stats.finish( System.nanoTime() - startNanos );
+    }
+
+    private void checkFile( File file, List<FileCheck> fileChecks, FileStats stats, FileProgress fileProgress )
+            throws ColumnCheckException, FileCheckException
+    {
+        FailedFileCheckPolicy filePolicy = policy.getFailedFileCheckPolicy();
 
-        // Check lines of file
-        long lineNumber = 0;
-        while ( reader.hasNext() )
+        if ( isSplittable( file, fileChecks ) )
         {
-            String[] row = reader.next();
-            FailedColumnCheckPolicy columnPolicy = policy.getFailedColumnCheckPolicy( fileCheck, lineNumber, row );
-            if ( lineNumber >= fileCheck.startLine() )
+            checkChunks( file, fileChecks, stats, fileProgress );
+        }
+        else
+        {
+            Iterator<CsvLine> reader;
+            try
             {
-                fileCheck.checkLine( filePolicy, columnPolicy, lineNumber, row );
+                reader = ( ReaderType.MEMORY_MAPPED == readerType ) ? new MappedCsvFileReader( file )
+                        : new CsvFileLineReader( new CsvFileReader( file ) );
+                if ( null != contentHashes ) withContentHash( reader );
             }
-            lineNumber++;
+            catch ( FileNotFoundException e )
+            {
+                String errMsg = String.format( "File not found [%s]\n", file.getAbsolutePath() );
+                throw new ColumnCheckException( errMsg );
+            }
+            checkLines( reader, 0, fileChecks, filePolicy, null, stats, fileProgress );
+            String contentHash = ( null == contentHashes ) ? null : contentHash( reader );
+            if ( null != contentHash ) contentHashes.put( file, contentHash );
         }
 
         // Check file
-        fileCheck.checkFile( filePolicy );
+        long cpuStart = ( null == stats ) ? 0 : RunReport.currentThreadCpuNanos();
+        for ( int i = 0; i < fileChecks.size(); i++ )
+        {
+            long checkStart = System.nanoTime();
+            fileChecks.get( i ).checkFile( filePolicy );
+            if ( null != stats ) stats.addCheckNanos( i, System.nanoTime() - checkStart );
+        }
+        if ( null != stats ) stats.addCpuNanos( RunReport.currentThreadCpuNanos() - cpuStart );
+    }
+
+    private boolean isSplittable( File file, List<FileCheck> fileChecks )
+    {
+        if ( chunkSize <= 0 || ReaderType.MEMORY_MAPPED != readerType || false == ForkJoinTask.inForkJoinPool()
+             || file.length() <= chunkSize )
+        {
+            return false;
+        }
+        for ( FileCheck fileCheck : fileChecks )
+        {
+            if ( false == ( fileCheck instanceof SplittableFileCheck ) ) return false;
+            if ( false == ( (SplittableFileCheck) fileCheck ).isSplittable() ) return false;
+        }
+        return true;
+    }
+
+    private void checkLines( Iterator<CsvLine> reader, long firstLineNumber, List<? extends FileCheck> fileChecks,
+            FailedFileCheckPolicy filePolicy, ChunkTask[] chunkTasks, FileStats stats, FileProgress fileProgress )
+            throws ColumnCheckException, FileCheckException
+    {
+        // CPU time is measured per call, as chunks of a file are checked by several threads
+        long cpuStart = ( null == stats ) ? 0 : RunReport.currentThreadCpuNanos();
+        long[] checkNanos = ( null == stats ) ? null : new long[fileChecks.size()];
+        // one policy per check, pointed at each line, rows are only decoded when a line fails
+        FailedColumnCheckPolicy[] columnPolicies = new FailedColumnCheckPolicy[fileChecks.size()];
+        for ( int i = 0; i < columnPolicies.length; i++ )
+        {
+            columnPolicies[i] = policy.getFailedColumnCheckPolicy( fileChecks.get( i ), firstLineNumber, null );
+        }
+        long lineNumber = firstLineNumber;
+        long progressBytes = 0;
+        try
+        {
+            while ( reader.hasNext() )
+            {
+                CsvLine line = reader.next();
+                for ( int i = 0; i < columnPolicies.length; i++ )
+                {
+                    FileCheck fileCheck = fileChecks.get( i );
+                    if ( lineNumber >= fileCheck.startLine() )
+                    {
+                        FailedColumnCheckPolicy columnPolicy = columnPolicies[i].forLine( lineNumber, line );
+                        if ( null == checkNanos )
+                        {
+                            fileCheck.checkLine( filePolicy, columnPolicy, lineNumber, line );
+                        }
+                        else
+                        {
+                            long checkStart = System.nanoTime();
+                            fileCheck.checkLine( filePolicy, columnPolicy, lineNumber, line );
+                            checkNanos[i] += System.nanoTime() - checkStart;
+                        }
+                    }
+                }
+                lineNumber++;
+                if ( null != fileProgress && 0 == ( ( lineNumber - firstLineNumber ) & PROGRESS_LINE_MASK ) )
+                {
+                    long bytesRead = bytesRead( reader );
+                    fileProgress.addBytesRead( bytesRead - progressBytes );
+                    progressBytes = bytesRead;
+                }
+                // another chunk of the same file failed, stop early
+                if ( null != chunkTasks && anyFailed( chunkTasks ) ) return;
+            }
+        }
+        finally
+        {
+            // readers that stop early, because of a failure, are not closed by reading them to their end
+            close( reader );
+            if ( null != fileProgress ) fileProgress.addBytesRead( bytesRead( reader ) - progressBytes );
+            if ( null != stats )
+            {
+                stats.addRows( lineNumber - firstLineNumber );
+                for ( int i = 0; i < checkNanos.length; i++ )
+                {
+                    stats.addCheckNanos( i, checkNanos[i] );
+                }
+                stats.addCpuNanos( RunReport.currentThreadCpuNanos() - cpuStart );
+            }
+        }
+    }
+
+    /*
+     * Counts the lines of each chunk, to know the line number each chunk starts at, then checks the chunks in
+     * parallel and merges them back into the FileChecks in file order
+     */
+    private void checkChunks( File file, List<FileCheck> fileChecks, FileStats stats, FileProgress fileProgress )
+            throws ColumnCheckException, FileCheckException
+    {
+        long[] offsets;
+        try
+        {
+            offsets = MappedCsvFileReader.lineAlignedOffsets( file, chunkSize );
+        }
+        catch ( IOException e )
+        {
+            throw new FileCheckException( String.format( "Error splitting file [%s]", file.getAbsolutePath() ), e );
+        }
+        int chunkCount = offsets.length - 1;
+        logger.info( String.format( "Checking %s in %s chunks", file.getName(), chunkCount ) );
+
+        LineCountTask[] lineCountTasks = new LineCountTask[chunkCount];
+        for ( int i = 0; i < chunkCount; i++ )
+        {
+            lineCountTasks[i] = new LineCountTask( file, offsets[i], offsets[i + 1] );
+        }
+        ForkJoinTask.invokeAll( lineCountTasks );
+
+        ChunkTask[] chunkTasks = new ChunkTask[chunkCount];
+        long firstLineNumber = 0;
+        for ( int i = 0; i < chunkCount; i++ )
+        {
+            if ( null != lineCountTasks[i].exception )
+            {
+                throw new FileCheckException( String.format( "Error counting lines of file [%s]",
+                        file.getAbsolutePath() ), lineCountTasks[i].exception );
+            }
+            List<SplittableFileCheck> chunkChecks = new ArrayList<SplittableFileCheck>();
+            for ( FileCheck fileCheck : fileChecks )
+            {
+                SplittableFileCheck chunkCheck = ( (SplittableFileCheck) fileCheck ).newChunk();
+                if ( null != stats ) runReport.addChunk( chunkCheck, fileCheck );
+                chunkChecks.add( chunkCheck );
+            }
+            chunkTasks[i] = new ChunkTask( file, offsets[i], offsets[i + 1], firstLineNumber, chunkChecks, chunkTasks,
+                    stats, fileProgress );
+            firstLineNumber += lineCountTasks[i].lineCount;
+        }
+        ForkJoinTask.invokeAll( chunkTasks );
+        for ( ChunkTask chunkTask : chunkTasks )
+        {
+            chunkTask.rethrow();
+        }
+
+        long cpuStart = ( null == stats ) ? 0 : RunReport.currentThreadCpuNanos();
+        for ( int i = 0; i < fileChecks.size(); i++ )
+        {
+            long mergeStart = System.nanoTime();
+            List<SplittableFileCheck> chunks = new ArrayList<SplittableFileCheck>();
+            for ( ChunkTask chunkTask : chunkTasks )
+            {
+                chunks.add( chunkTask.chunkChecks.get( i ) );
+            }
+            ( (SplittableFileCheck) fileChecks.get( i ) ).mergeChunks( chunks, policy );
+            if ( null != stats ) stats.addCheckNanos( i, System.nanoTime() - mergeStart );
+        }
+        if ( null != stats ) stats.addCpuNanos( RunReport.currentThreadCpuNanos() - cpuStart );
+    }
+
+    private static long bytesRead( Iterator<CsvLine> reader )
+    {
+        if ( reader instanceof MappedCsvFileReader ) return ( (MappedCsvFileReader) reader ).bytesRead();
+        if ( reader instanceof CsvFileLineReader ) return ( (CsvFileLineReader) reader ).reader.bytesRead();
+        return 0;
+    }
+
+    private static void close( Iterator<CsvLine> reader )
+    {
+        if ( reader instanceof MappedCsvFileReader ) ( (MappedCsvFileReader) reader ).close();
+        if ( reader instanceof CsvFileLineReader ) ( (CsvFileLineReader) reader ).reader.close();
+    }
+
+    private static void withContentHash( Iterator<CsvLine> reader )
+    {
+        if ( reader instanceof MappedCsvFileReader ) ( (MappedCsvFileReader) reader ).withContentHash();
+        if ( reader instanceof CsvFileLineReader ) ( (CsvFileLineReader) reader ).reader.withContentHash();
+    }
+
+    private static String contentHash( Iterator<CsvLine> reader )
+    {
+        if ( reader instanceof MappedCsvFileReader ) return ( (MappedCsvFileReader) reader ).contentHash();
+        if ( reader instanceof CsvFileLineReader ) return ( (CsvFileLineReader) reader ).reader.contentHash();
+        return null;
+    }
+
+    private static boolean anyFailed( ChunkTask[] chunkTasks )
+    {
+        for ( ChunkTask chunkTask : chunkTasks )
+        {
+            if ( null != chunkTask.exception ) return true;
+        }
+        return false;
+    }
+
+    private static class LineCountTask extends RecursiveAction
+    {
+        private final File file;
+        private final long start;
+        private final long end;
+        private long lineCount = 0;
+        private IOException exception = null;
+
+        private LineCountTask( File file, long start, long end )
+        {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                lineCount = MappedCsvFileReader.countLines( file, start, end );
+            }
+            catch ( IOException e )
+            {
+                exception = e;
+            }
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction
+    {
+        private final File file;
+        private final long start;
+        private final long end;
+        private final long firstLineNumber;
+        private final List<SplittableFileCheck> chunkChecks;
+        private final ChunkTask[] allChunkTasks;
+        private final FileStats stats;
+        private final FileProgress fileProgress;
+        private volatile Exception exception = null;
+
+        private ChunkTask( File file, long start, long end, long firstLineNumber,
+                List<SplittableFileCheck> chunkChecks, ChunkTask[] allChunkTasks, FileStats stats,
+                FileProgress fileProgress )
+        {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.firstLineNumber = firstLineNumber;
+            this.chunkChecks = chunkChecks;
+            this.allChunkTasks = allChunkTasks;
+            this.stats = stats;
+            this.fileProgress = fileProgress;
+        }
+
+        @Override
+        protected void compute()
+        {
+            MappedCsvFileReader reader = null;
+            try
+            {
+                reader = new MappedCsvFileReader( file, start, end, MappedCsvFileReader.DEFAULT_WINDOW_SIZE );
+                checkLines( reader, firstLineNumber, chunkChecks, policy.getFailedFileCheckPolicy(), allChunkTasks,
+                        stats, fileProgress );
+            }
+            catch ( Exception e )
+            {
+                exception = e;
+            }
+            finally
+            {
+                if ( null != reader ) reader.close();
+            }
+        }
+
+        private void rethrow() throws ColumnCheckException, FileCheckException
+        {
+            if ( null == exception ) return;
+            if ( exception instanceof ColumnCheckException ) throw (ColumnCheckException) exception;
+            if ( exception instanceof FileCheckException ) throw (FileCheckException) exception;
+            if ( exception instanceof RuntimeException ) throw (RuntimeException) exception;
+            throw new FileCheckException( String.format( "Error checking file [%s]", file.getAbsolutePath() ),
+                    exception );
+        }
+    }
+
+    private static class CsvFileLineReader implements Iterator<CsvLine>
+    {
+        private final CsvFileReader reader;
+        private final CsvLine line = new CsvLine();
+
+        private CsvFileLineReader( CsvFileReader reader )
+        {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return reader.hasNext();
+        }
+
+        @Override
+        public CsvLine next()
+        {
+            line.reset( reader.next() );
+            return line;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
     }
 }
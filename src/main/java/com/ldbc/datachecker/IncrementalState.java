@@ -0,0 +1,329 @@
+package com.ldbc.datachecker;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.ldbc.datachecker.FileCheckGraph.Node;
+
+/**
+ * State of incremental runs, kept in a directory: the fingerprint (size, modification time and content hash) and
+ * outcome of every checked file, and snapshots of the ColumnRefs written by files that passed (see ColumnRefSnapshot).
+ *
+ * A file is skipped if it was checked with the same configuration, its FileChecks passed last time and are of the
+ * same types, its fingerprint did not change,
+ * all ColumnRefs it writes to could be saved, and every file it depends on (see FileCheckGraph) is skipped too, so a
+ * changed node file also gets the relationship files that reference it checked again. The ColumnRefs written by
+ * skipped files are restored from their snapshots before checking starts, and those no checked file writes to are
+ * frozen with their memory-mapped snapshot (see ColumnRefSnapshot.map()), so their values are not copied to memory.
+ * Files that failed are always checked again, so their failures are reported by every run.
+ *
+ * The configuration describes everything besides the files that decides the outcome of the checks, e.g. their
+ * parameters and the code of the checks (see codeHash()), all files are checked again when it changes. Content
+ * hashes are computed while files are checked (see FileCheckRunner.withContentHashes()), and hashed again only when
+ * the modification time of a file changed. A file that was not hashed, e.g. because it was split into chunks, is
+ * checked again when its modification time changed.
+ */
+public class IncrementalState
+{
+    private static final Logger logger = Logger.getLogger( IncrementalState.class );
+    private static final String STATE_FILENAME = "state.csv";
+    private static final char CSV_SEPARATOR = ';';
+    private static final String[] HEADER = { "file", "configuration", "checks", "size", "modified", "hash", "passed" };
+    private static final String UNKNOWN_HASH = "";
+
+    private final File directory;
+    private final String configurationHash;
+    // by file name
+    private final Map<String, Fingerprint> previousFingerprints = new HashMap<String, Fingerprint>();
+    private final Map<String, Fingerprint> fingerprints = Collections.synchronizedMap(
+            new LinkedHashMap<String, Fingerprint>() );
+    private final Set<Node> skippedNodes = new LinkedHashSet<Node>();
+    private final Map<File, String> contentHashes = new ConcurrentHashMap<File, String>();
+
+    public IncrementalState( File directory, String configuration ) throws IOException
+    {
+        this.directory = directory;
+        this.configurationHash = Hashing.murmur3_128().hashString( configuration, Charsets.UTF_8 ).toString();
+        if ( false == directory.isDirectory() && false == directory.mkdirs() )
+        {
+            throw new IOException( String.format( "Error creating directory [%s]", directory.getAbsolutePath() ) );
+        }
+        File stateFile = new File( directory, STATE_FILENAME );
+        if ( false == stateFile.exists() ) return;
+        CSVReader csvReader = new CSVReader( new FileReader( stateFile ), CSV_SEPARATOR );
+        try
+        {
+            // state of another format is discarded too
+            if ( false == Arrays.equals( HEADER, csvReader.readNext() ) )
+            {
+                logger.info( "Incremental state is of another format, checking all files" );
+                return;
+            }
+            String[] row;
+            while ( null != ( row = csvReader.readNext() ) )
+            {
+                if ( false == configurationHash.equals( row[1] ) )
+                {
+                    logger.info( "Configuration changed since last run, checking all files" );
+                    previousFingerprints.clear();
+                    return;
+                }
+                Fingerprint fingerprint = new Fingerprint( row[2], Long.parseLong( row[3] ), Long.parseLong( row[4] ),
+                        row[5], Boolean.parseBoolean( row[6] ) );
+                previousFingerprints.put( row[0], fingerprint );
+            }
+        }
+        finally
+        {
+            csvReader.close();
+        }
+    }
+
+    /**
+     * Content hashes of the files checked, pass to FileCheckRunner.withContentHashes()
+     */
+    public Map<File, String> getContentHashes()
+    {
+        return contentHashes;
+    }
+
+    /**
+     * Decides which files of graph are skipped and restores the ColumnRefs they wrote to, call before checking
+     */
+    public void skipUnchanged( FileCheckGraph graph ) throws IOException
+    {
+        for ( Node node : graph.getNodes() )
+        {
+            if ( skippedNodes.containsAll( node.getDependencies() ) && isUnchanged( node ) )
+            {
+                skippedNodes.add( node );
+            }
+        }
+
+        // a ColumnRef is restored from the snapshot of its last skipped writer, which includes the earlier writers
+        Map<ColumnRef<?>, Node> lastSkippedWriters = new LinkedHashMap<ColumnRef<?>, Node>();
+        Map<ColumnRef<?>, Node> lastWriters = new HashMap<ColumnRef<?>, Node>();
+        for ( Node node : graph.getNodes() )
+        {
+            for ( ColumnRef<?> columnRef : node.getWritesTo() )
+            {
+                if ( skippedNodes.contains( node ) ) lastSkippedWriters.put( columnRef, node );
+                lastWriters.put( columnRef, node );
+            }
+        }
+        for ( Map.Entry<ColumnRef<?>, Node> entry : lastSkippedWriters.entrySet() )
+        {
+            ColumnRef<?> columnRef = entry.getKey();
+            Node node = entry.getValue();
+            File snapshotFile = snapshotFile( node, columnRef );
+            // complete if no checked file adds to it
+            if ( node == lastWriters.get( columnRef ) && ColumnRefSnapshot.map( snapshotFile, columnRef ) )
+            {
+                logger.info( String.format( "Mapped ColumnRef[%s] from snapshot of %s", columnRef.getName(),
+                        node.getFile().getName() ) );
+            }
+            else
+            {
+                long count = ColumnRefSnapshot.restore( snapshotFile, columnRef );
+                logger.info( String.format( "Restored ColumnRef[%s] from snapshot of %s - %s values",
+                        columnRef.getName(), node.getFile().getName(), count ) );
+            }
+        }
+        logger.info( String.format( "Skipping %s of %s files, unchanged since last run", skippedNodes.size(),
+                graph.getNodes().size() ) );
+    }
+
+    public boolean isSkipped( Node node )
+    {
+        return skippedNodes.contains( node );
+    }
+
+    /**
+     * Records the fingerprint and outcome of a checked file, and snapshots of the ColumnRefs it wrote to if it passed.
+     * Call before any later file writes to those ColumnRefs.
+     */
+    public void checked( Node node, boolean passed ) throws IOException
+    {
+        File file = node.getFile();
+        if ( passed )
+        {
+            for ( ColumnRef<?> columnRef : node.getWritesTo() )
+            {
+                if ( ColumnRefSnapshot.canSnapshot( columnRef ) )
+                {
+                    ColumnRefSnapshot.write( columnRef, snapshotFile( node, columnRef ) );
+                }
+            }
+        }
+        String hash = contentHashes.remove( file );
+        fingerprints.put( file.getName(), new Fingerprint( checksOf( node ), file.length(), file.lastModified(),
+                ( null == hash ) ? UNKNOWN_HASH : hash, passed ) );
+    }
+
+    /**
+     * Saves the fingerprints of checked and skipped files, files that were neither are forgotten
+     */
+    public void save() throws IOException
+    {
+        File stateFile = new File( directory, STATE_FILENAME );
+        File tempFile = new File( directory, STATE_FILENAME + ".tmp" );
+        CSVWriter csvWriter = new CSVWriter( new FileWriter( tempFile ), CSV_SEPARATOR );
+        try
+        {
+            csvWriter.writeNext( HEADER );
+            synchronized ( fingerprints )
+            {
+                for ( Map.Entry<String, Fingerprint> entry : fingerprints.entrySet() )
+                {
+                    Fingerprint fingerprint = entry.getValue();
+                    csvWriter.writeNext( new String[] { entry.getKey(), configurationHash, fingerprint.checks,
+                            Long.toString( fingerprint.size ), Long.toString( fingerprint.modified ),
+                            fingerprint.hash, Boolean.toString( fingerprint.passed ) } );
+                }
+            }
+        }
+        finally
+        {
+            csvWriter.close();
+        }
+        stateFile.delete();
+        if ( false == tempFile.renameTo( stateFile ) )
+        {
+            throw new IOException( String.format( "Error renaming [%s] to [%s]", tempFile.getAbsolutePath(),
+                    stateFile.getAbsolutePath() ) );
+        }
+    }
+
+    private boolean isUnchanged( Node node ) throws IOException
+    {
+        File file = node.getFile();
+        Fingerprint previous = previousFingerprints.get( file.getName() );
+        if ( null == previous || false == previous.passed ) return false;
+        if ( false == previous.checks.equals( checksOf( node ) ) ) return false;
+        if ( previous.size != file.length() ) return false;
+        for ( ColumnRef<?> columnRef : node.getWritesTo() )
+        {
+            if ( false == ColumnRefSnapshot.canSnapshot( columnRef ) ) return false;
+            if ( false == ColumnRefSnapshot.isValid( snapshotFile( node, columnRef ) ) ) return false;
+        }
+        Fingerprint fingerprint = previous;
+        if ( previous.modified != file.lastModified() )
+        {
+            if ( UNKNOWN_HASH.equals( previous.hash ) ) return false;
+            String hash = hash( file );
+            if ( false == previous.hash.equals( hash ) ) return false;
+            fingerprint = new Fingerprint( previous.checks, previous.size, file.lastModified(), hash, true );
+        }
+        fingerprints.put( file.getName(), fingerprint );
+        return true;
+    }
+
+    private File snapshotFile( Node node, ColumnRef<?> columnRef )
+    {
+        return new File( directory, node.getFile().getName() + "." + columnRef.getName() + ".snapshot" );
+    }
+
+    private static String checksOf( Node node )
+    {
+        List<String> checks = new ArrayList<String>();
+        for ( FileCheck fileCheck : node.getFileChecks() )
+        {
+            checks.add( fileCheck.getClass().getSimpleName() );
+        }
+        return checks.toString();
+    }
+
+    private static String hash( File file ) throws IOException
+    {
+        return Files.hash( file, Hashing.murmur3_128() ).toString();
+    }
+
+    /**
+     * @return hash of the jars or class directories the classes were loaded from, so that changes to the code of the
+     *         checks, e.g. their column constraints, change the configuration too
+     */
+    public static String codeHash( Class<?>... classes ) throws IOException
+    {
+        Set<File> locations = new TreeSet<File>();
+        for ( Class<?> klass : classes )
+        {
+            CodeSource codeSource = klass.getProtectionDomain().getCodeSource();
+            URL location = ( null == codeSource ) ? null : codeSource.getLocation();
+            if ( null == location || false == "file".equals( location.getProtocol() ) ) continue;
+            try
+            {
+                locations.add( new File( location.toURI() ) );
+            }
+            catch ( URISyntaxException e )
+            {
+                throw new IOException( String.format( "Error locating code of %s", klass.getName() ), e );
+            }
+        }
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for ( File location : locations )
+        {
+            hashCode( location, location.getName(), hasher );
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void hashCode( File file, String path, Hasher hasher ) throws IOException
+    {
+        if ( file.isDirectory() )
+        {
+            String[] names = file.list();
+            Arrays.sort( names );
+            for ( String name : names )
+            {
+                hashCode( new File( file, name ), path + "/" + name, hasher );
+            }
+        }
+        else if ( file.isFile() )
+        {
+            hasher.putString( path, Charsets.UTF_8 ).putString( hash( file ), Charsets.UTF_8 );
+        }
+    }
+
+    private static class Fingerprint
+    {
+        private final String checks;
+        private final long size;
+        private final long modified;
+        private final String hash;
+        private final boolean passed;
+
+        private Fingerprint( String checks, long size, long modified, String hash, boolean passed )
+        {
+            this.checks = checks;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.passed = passed;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.ldbc.datachecker;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Reads '|' separated files through a memory-mapped window, tokenizing bytes directly.
+ *
+ * Columns are exposed as slices of the mapped window, no Strings are created unless a column asks for one. Lines
+ * end at '\n', '\r' or "\r\n", the same as BufferedReader.readLine(). Bytes are decoded as UTF-8. The same CsvLine
+ * instance is returned for every line.
+ *
+ * A reader can be limited to a byte range of the file, which must start at the beginning of a line, so that chunks
+ * of one file can be read in parallel (see lineAlignedOffsets()).
+ */
+public class MappedCsvFileReader implements Iterator<CsvLine>
+{
+    private static final Logger logger = Logger.getLogger( MappedCsvFileReader.class );
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final byte COLUMN_SEPARATOR = '|';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final File csvFile;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final int windowSize;
+    private final CsvLine line = new CsvLine();
+
+    private MappedByteBuffer window = null;
+    private long windowStart = 0;
+    private int position = 0;
+    private boolean lineReady = false;
+    private boolean closed = false;
+    private Hasher hasher = null;
+    private String contentHash = null;
+
+    public MappedCsvFileReader( File csvFile ) throws FileNotFoundException
+    {
+        this( csvFile, DEFAULT_WINDOW_SIZE );
+    }
+
+    public MappedCsvFileReader( File csvFile, int windowSize ) throws FileNotFoundException
+    {
+        this( csvFile, 0, csvFile.length(), windowSize );
+    }
+
+    /**
+     * @param start offset of the first line to read
+     * @param end offset after the last byte to read
+     */
+    public MappedCsvFileReader( File csvFile, long start, long end, int windowSize ) throws FileNotFoundException
+    {
+        this.csvFile = csvFile;
+        this.randomAccessFile = new RandomAccessFile( csvFile, "r" );
+        this.channel = randomAccessFile.getChannel();
+        this.start = start;
+        this.windowSize = windowSize;
+        try
+        {
+            this.end = Math.min( end, channel.size() );
+            map( start );
+        }
+        catch ( IOException e )
+        {
+            String errMsg = String.format( "Error mapping file [%s]", csvFile.getAbsolutePath() );
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if ( true == closed ) return false;
+        lineReady = ( lineReady ) ? true : nextLine();
+        if ( false == lineReady )
+        {
+            if ( null != hasher )
+            {
+                hashWindow();
+                contentHash = hasher.hash().toString();
+            }
+            closed = closeReader();
+        }
+        return lineReady;
+    }
+
+    @Override
+    public CsvLine next()
+    {
+        if ( false == hasNext() ) throw new NoSuchElementException( "No more lines to read" );
+        lineReady = false;
+        return line;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the file of a reader that is not read to its end, readers close themselves once they are. Can be called
+     * more than once.
+     */
+    public void close()
+    {
+        if ( false == closed ) closed = closeReader();
+    }
+
+    /**
+     * @return bytes of the lines returned so far, including their line terminators
+     */
+    public long bytesRead()
+    {
+        return windowStart + position - start;
+    }
+
+    /**
+     * Hashes the bytes while they are read, call before reading any line
+     */
+    public MappedCsvFileReader withContentHash()
+    {
+        hasher = Hashing.murmur3_128().newHasher();
+        return this;
+    }
+
+    /**
+     * @return hash of the bytes read, for a reader of the whole file the same as Files.hash( csvFile,
+     *         Hashing.murmur3_128() ), or null if the reader was not read to its end or withContentHash() was not
+     *         called
+     */
+    public String contentHash()
+    {
+        return contentHash;
+    }
+
+    private boolean nextLine()
+    {
+        if ( windowStart + position >= end ) return false;
+        while ( true )
+        {
+            int limit = window.limit();
+            boolean windowEndsInFile = windowStart + limit < end;
+            line.reset( window );
+            int columnStart = position;
+            int i = position;
+            byte b = 0;
+            while ( i < limit )
+            {
+                b = window.get( i );
+                if ( COLUMN_SEPARATOR == b )
+                {
+                    line.addColumn( columnStart, i );
+                    columnStart = i + 1;
+                }
+                else if ( LINE_FEED == b || CARRIAGE_RETURN == b )
+                {
+                    break;
+                }
+                i++;
+            }
+            // line, or its "\r\n" terminator, continues past the end of the window
+            if ( windowEndsInFile && ( i >= limit - 1 ) && ( i == limit || CARRIAGE_RETURN == b ) )
+            {
+                if ( 0 == position )
+                {
+                    throw new RuntimeException( String.format( "Line at offset %s of [%s] is longer than %s bytes",
+                            windowStart, csvFile.getAbsolutePath(), windowSize ) );
+                }
+                remap( windowStart + position );
+                continue;
+            }
+            line.addColumn( columnStart, i );
+            if ( i < limit )
+            {
+                i++;
+                if ( CARRIAGE_RETURN == b && i < limit && LINE_FEED == window.get( i ) ) i++;
+            }
+            position = i;
+            if ( position == limit && windowEndsInFile )
+            {
+                remap( windowStart + position );
+            }
+            return true;
+        }
+    }
+
+    private void remap( long start )
+    {
+        try
+        {
+            map( start );
+        }
+        catch ( IOException e )
+        {
+            String errMsg = String.format( "Error mapping file [%s] at offset %s", csvFile.getAbsolutePath(), start );
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+    }
+
+    private void map( long start ) throws IOException
+    {
+        hashWindow();
+        long size = Math.max( 0, Math.min( windowSize, end - start ) );
+        window = channel.map( FileChannel.MapMode.READ_ONLY, start, size );
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Splits a file into byte ranges of roughly chunkSize bytes, each starting at the beginning of a line
+     *
+     * @return offsets of the first byte of each range, followed by the file size
+     */
+    public static long[] lineAlignedOffsets( File csvFile, long chunkSize ) throws IOException
+    {
+        long fileSize = csvFile.length();
+        List<Long> offsets = new ArrayList<Long>();
+        offsets.add( 0l );
+        RandomAccessFile file = new RandomAccessFile( csvFile, "r" );
+        try
+        {
+            byte[] buffer = new byte[64 * 1024];
+            long offset = chunkSize - 1;
+            while ( offset < fileSize )
+            {
+                // start of the first line after offset, i.e. after the next '\n'
+                long lineStart = -1;
+                file.seek( offset );
+                long bufferStart = offset;
+                int read;
+                while ( -1 == lineStart && ( read = file.read( buffer ) ) > 0 )
+                {
+                    for ( int i = 0; i < read; i++ )
+                    {
+                        if ( LINE_FEED == buffer[i] )
+                        {
+                            lineStart = bufferStart + i + 1;
+                            break;
+                        }
+                    }
+                    bufferStart += read;
+                }
+                if ( -1 == lineStart || lineStart >= fileSize ) break;
+                offsets.add( lineStart );
+                offset = lineStart + chunkSize - 1;
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+        offsets.add( fileSize );
+        long[] offsetsArray = new long[offsets.size()];
+        for ( int i = 0; i < offsetsArray.length; i++ )
+        {
+            offsetsArray[i] = offsets.get( i );
+        }
+        return offsetsArray;
+    }
+
+    /**
+     * @return number of lines a reader of the same byte range returns, without tokenizing them
+     */
+    public static long countLines( File csvFile, long start, long end ) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile( csvFile, "r" );
+        try
+        {
+            FileChannel channel = file.getChannel();
+            end = Math.min( end, channel.size() );
+            long lines = 0;
+            byte previous = LINE_FEED;
+            long windowStart = start;
+            while ( windowStart < end )
+            {
+                long size = Math.min( DEFAULT_WINDOW_SIZE, end - windowStart );
+                ByteBuffer window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, size );
+                for ( int i = 0; i < size; i++ )
+                {
+                    byte b = window.get( i );
+                    if ( CARRIAGE_RETURN == b || ( LINE_FEED == b && CARRIAGE_RETURN != previous ) ) lines++;
+                    previous = b;
+                }
+                windowStart += size;
+            }
+            // last line has no terminator
+            if ( LINE_FEED != previous && CARRIAGE_RETURN != previous ) lines++;
+            return lines;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private boolean closeReader()
+    {
+        if ( true == closed )
+        {
+            String errMsg = "Can not close file multiple times";
+            logger.error( errMsg );
+            throw new RuntimeException( errMsg );
+        }
+        try
+        {
+            randomAccessFile.close();
+        }
+        catch ( IOException e )
+        {
+            String errMsg = String.format( "Error closing file [%s]", csvFile.getAbsolutePath() );
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+        window = null;
+        return true;
+    }
+
+    /*
+     * Hashes the bytes of the window read so far, the rest of the window is mapped again by the next window
+     */
+    private void hashWindow()
+    {
+        if ( null == hasher || null == window ) return;
+        ByteBuffer bytes = window.duplicate();
+        bytes.position( 0 );
+        bytes.limit( position );
+        byte[] buffer = new byte[Math.min( HASH_BUFFER_SIZE, Math.max( 1, position ) )];
+        while ( bytes.hasRemaining() )
+        {
+            int length = Math.min( buffer.length, bytes.remaining() );
+            bytes.get( buffer, 0, length );
+            hasher.putBytes( buffer, 0, length );
+        }
+    }
+}
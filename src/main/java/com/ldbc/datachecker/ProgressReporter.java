@@ -0,0 +1,173 @@
+package com.ldbc.datachecker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Logs the progress of a run from a background thread: bytes checked out of the bytes of all files to check,
+ * throughput and ETA, and how far each file being checked is.
+ *
+ * Checking threads only add the bytes they read to a counter every few thousand lines (see FileCheckRunner), the
+ * reporter thread reads the counters, so reporting costs nothing per line. ETA assumes the remaining files are
+ * checked at the throughput so far, which ignores that relationship files often wait for node files.
+ */
+public class ProgressReporter
+{
+    private static final Logger logger = Logger.getLogger( ProgressReporter.class );
+    private static final double MB = 1024 * 1024;
+
+    private final long totalBytes;
+    private final long intervalMillis;
+    private final AtomicLong finishedBytes = new AtomicLong( 0 );
+    private final List<FileProgress> activeFiles = new CopyOnWriteArrayList<FileProgress>();
+    private Thread reporter = null;
+    private long startNanos = 0;
+
+    /**
+     * @param totalBytes bytes of all files that will be checked
+     */
+    public ProgressReporter( long totalBytes, long intervalMillis )
+    {
+        this.totalBytes = totalBytes;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void start()
+    {
+        startNanos = System.nanoTime();
+        reporter = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while ( true )
+                {
+                    try
+                    {
+                        Thread.sleep( intervalMillis );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    logger.info( progress() );
+                }
+            }
+        }, "progress-reporter" );
+        reporter.setDaemon( true );
+        reporter.start();
+    }
+
+    /**
+     * Stops reporting and logs the final progress
+     */
+    public void stop()
+    {
+        if ( null == reporter ) return;
+        reporter.interrupt();
+        try
+        {
+            reporter.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        reporter = null;
+        logger.info( progress() );
+    }
+
+    FileProgress startFile( File file )
+    {
+        FileProgress fileProgress = new FileProgress( file );
+        activeFiles.add( fileProgress );
+        return fileProgress;
+    }
+
+    /**
+     * @return bytes of finished files plus bytes read of files being checked, consistent with files that finish
+     *         concurrently, see FileProgress.finish()
+     */
+    public synchronized long checkedBytes()
+    {
+        long checkedBytes = finishedBytes.get();
+        for ( FileProgress fileProgress : activeFiles )
+        {
+            checkedBytes += Math.min( fileProgress.bytesRead.get(), fileProgress.size );
+        }
+        return checkedBytes;
+    }
+
+    String progress()
+    {
+        List<FileProgress> files = new ArrayList<FileProgress>( activeFiles );
+        long checkedBytes = checkedBytes();
+        double seconds = ( System.nanoTime() - startNanos ) / 1e9;
+        double bytesPerSecond = ( seconds > 0 ) ? checkedBytes / seconds : 0;
+        StringBuilder progress = new StringBuilder();
+        progress.append( String.format( Locale.ROOT, "Progress %.1f%% (%.1f of %.1f MB) %.1f MB/s ETA %s",
+                percent( checkedBytes, totalBytes ), checkedBytes / MB, totalBytes / MB, bytesPerSecond / MB,
+                eta( totalBytes - checkedBytes, bytesPerSecond ) ) );
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            FileProgress fileProgress = files.get( i );
+            progress.append( ( 0 == i ) ? " - " : ", " );
+            progress.append( String.format( Locale.ROOT, "%s %.0f%%", fileProgress.file.getName(),
+                    percent( fileProgress.bytesRead.get(), fileProgress.size ) ) );
+        }
+        return progress.toString();
+    }
+
+    private static double percent( long bytes, long totalBytes )
+    {
+        return ( totalBytes > 0 ) ? Math.min( 100.0, 100.0 * bytes / totalBytes ) : 100.0;
+    }
+
+    private static String eta( long remainingBytes, double bytesPerSecond )
+    {
+        if ( remainingBytes <= 0 ) return "0:00:00";
+        if ( bytesPerSecond <= 0 ) return "unknown";
+        long seconds = (long) Math.ceil( remainingBytes / bytesPerSecond );
+        return String.format( "%d:%02d:%02d", TimeUnit.SECONDS.toHours( seconds ), ( seconds / 60 ) % 60,
+                seconds % 60 );
+    }
+
+    /**
+     * Bytes read of one file, added to by all threads that check chunks of it
+     */
+    class FileProgress
+    {
+        private final File file;
+        private final long size;
+        private final AtomicLong bytesRead = new AtomicLong( 0 );
+
+        private FileProgress( File file )
+        {
+            this.file = file;
+            this.size = file.length();
+        }
+
+        void addBytesRead( long bytes )
+        {
+            bytesRead.addAndGet( bytes );
+        }
+
+        void finish()
+        {
+            // counted by size, as bytes read are sampled, and moved under the lock of checkedBytes() so a report never
+            // counts the file in neither or both
+            synchronized ( ProgressReporter.this )
+            {
+                finishedBytes.addAndGet( size );
+                activeFiles.remove( this );
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.ldbc.datachecker;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+import com.ldbc.datachecker.Column.Timings;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedDirectoryCheckPolicy;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
+
+/**
+ * Statistics of a run, per file, FileCheck and column, written as a csv file with one row per FileCheck and one row
+ * per column of each TimedFileCheck:
+ *
+ * rows and bytes read, wall and CPU time of reading and checking the file, rows and bytes per second of wall time,
+ * time spent in each FileCheck, time each column spent parsing, checking and in ColumnRefs, and failures.
+ *
+ * Failures are only counted when they are reported through the policy returned by countFailures(). Column timings
+ * must be enabled, see TimedFileCheck.withTimings(), before the run starts.
+ */
+public class RunReport
+{
+    public static final char CSV_SEPARATOR = ';';
+    public static final String[] HEADER = { "file", "check", "column", "rows", "bytes", "wall_ms", "cpu_ms",
+            "rows_per_s", "bytes_per_s", "check_ms", "parse_ms", "do_check_ms", "column_ref_ms", "failures" };
+    // column of failures of whole lines and files
+    private static final int NO_COLUMN = -1;
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final List<FileStats> fileStats = Collections.synchronizedList( new ArrayList<FileStats>() );
+    private final ConcurrentMap<FileCheck, ConcurrentMap<Integer, AtomicLong>> failureCounts =
+            new ConcurrentHashMap<FileCheck, ConcurrentMap<Integer, AtomicLong>>();
+    // failures of chunks are counted for the check they were created from
+    private final ConcurrentMap<FileCheck, FileCheck> chunkParents = new ConcurrentHashMap<FileCheck, FileCheck>();
+
+    /**
+     * @return policy that counts failures per FileCheck and column, then passes them on to policy
+     */
+    public FailedCheckPolicy countFailures( final FailedCheckPolicy policy )
+    {
+        return new FailedCheckPolicy()
+        {
+            @Override
+            public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber,
+                    CsvLine line )
+            {
+                final FailedColumnCheckPolicy columnPolicy = policy.getFailedColumnCheckPolicy( fileCheck,
+                        lineNumber, line );
+                return new FailedColumnCheckPolicy( fileCheck, lineNumber, line )
+                {
+                    @Override
+                    public void handleFailedColumnCheck( String columnString, String message )
+                            throws ColumnCheckException
+                    {
+                        countFailure( getFileCheck(), getColumn() );
+                        columnPolicy.forLine( getLineNumber(), getLine() ).forColumn( getColumn() );
+                        columnPolicy.handleFailedColumnCheck( columnString, message );
+                    }
+                };
+            }
+
+            @Override
+            public FailedFileCheckPolicy getFailedFileCheckPolicy()
+            {
+                final FailedFileCheckPolicy filePolicy = policy.getFailedFileCheckPolicy();
+                return new FailedFileCheckPolicy()
+                {
+                    @Override
+                    public void handleFailedLineCheck( FileCheck fileCheck, String message, long lineNumber,
+                            String[] row ) throws FileCheckException
+                    {
+                        countFailure( fileCheck, NO_COLUMN );
+                        filePolicy.handleFailedLineCheck( fileCheck, message, lineNumber, row );
+                    }
+
+                    @Override
+                    public void handleFailedFileCheck( FileCheck fileCheck, String message ) throws FileCheckException
+                    {
+                        countFailure( fileCheck, NO_COLUMN );
+                        filePolicy.handleFailedFileCheck( fileCheck, message );
+                    }
+                };
+            }
+
+            @Override
+            public FailedDirectoryCheckPolicy getFailedDirectoryCheckPolicy()
+            {
+                return policy.getFailedDirectoryCheckPolicy();
+            }
+        };
+    }
+
+    /**
+     * @param column index of the column, or -1 for failures of whole lines and files
+     */
+    public long getFailureCount( FileCheck fileCheck, int column )
+    {
+        ConcurrentMap<Integer, AtomicLong> columnCounts = failureCounts.get( fileCheck );
+        if ( null == columnCounts ) return 0;
+        AtomicLong count = columnCounts.get( column );
+        return ( null == count ) ? 0 : count.get();
+    }
+
+    /**
+     * @return failures of fileCheck, of all columns, lines and the file
+     */
+    public long getFailureCount( FileCheck fileCheck )
+    {
+        ConcurrentMap<Integer, AtomicLong> columnCounts = failureCounts.get( fileCheck );
+        if ( null == columnCounts ) return 0;
+        long failureCount = 0;
+        for ( AtomicLong count : columnCounts.values() )
+        {
+            failureCount += count.get();
+        }
+        return failureCount;
+    }
+
+    /**
+     * @return files in the order they started being checked
+     */
+    public List<FileStats> getFileStats()
+    {
+        synchronized ( fileStats )
+        {
+            return new ArrayList<FileStats>( fileStats );
+        }
+    }
+
+    public void write( File reportFile ) throws IOException
+    {
+        CSVWriter csvWriter = new CSVWriter( new FileWriter( reportFile ), CSV_SEPARATOR );
+        try
+        {
+            csvWriter.writeNext( HEADER );
+            for ( FileStats stats : getFileStats() )
+            {
+                writeFile( csvWriter, stats );
+            }
+        }
+        finally
+        {
+            csvWriter.close();
+        }
+    }
+
+    private void writeFile( CSVWriter csvWriter, FileStats stats )
+    {
+        String filename = stats.file.getName();
+        long rows = stats.getRows();
+        double wallSeconds = stats.getWallNanos() / 1e9;
+        for ( int i = 0; i < stats.fileChecks.size(); i++ )
+        {
+            FileCheck fileCheck = stats.fileChecks.get( i );
+            String checkName = fileCheck.getClass().getSimpleName();
+            csvWriter.writeNext( new String[] { filename, checkName, "", Long.toString( rows ),
+                    Long.toString( stats.bytes ), millis( stats.getWallNanos() ), millis( stats.getCpuNanos() ),
+                    perSecond( rows, wallSeconds ), perSecond( stats.bytes, wallSeconds ),
+                    millis( stats.getCheckNanos( i ) ), "", "", "", Long.toString( getFailureCount( fileCheck ) ) } );
+            if ( false == ( fileCheck instanceof TimedFileCheck ) ) continue;
+            TimedFileCheck timedFileCheck = (TimedFileCheck) fileCheck;
+            for ( int column = 0; column < timedFileCheck.getColumnCount(); column++ )
+            {
+                Timings timings = timedFileCheck.getColumn( column ).getTimings();
+                if ( null == timings ) continue;
+                long columnNanos = timings.getParseNanos() + timings.getCheckNanos() + timings.getColumnRefNanos();
+                csvWriter.writeNext( new String[] { filename, checkName, Integer.toString( column ),
+                        Long.toString( rows ), "", "", "", perSecond( rows, columnNanos / 1e9 ), "",
+                        millis( columnNanos ), millis( timings.getParseNanos() ), millis( timings.getCheckNanos() ),
+                        millis( timings.getColumnRefNanos() ),
+                        Long.toString( getFailureCount( fileCheck, column ) ) } );
+            }
+        }
+    }
+
+    private static String millis( long nanos )
+    {
+        return String.format( Locale.ROOT, "%.3f", nanos / 1e6 );
+    }
+
+    private static String perSecond( long count, double seconds )
+    {
+        return ( seconds > 0 ) ? Long.toString( Math.round( count / seconds ) ) : "";
+    }
+
+    private void countFailure( FileCheck fileCheck, int column )
+    {
+        FileCheck parent = chunkParents.get( fileCheck );
+        if ( null != parent ) fileCheck = parent;
+        ConcurrentMap<Integer, AtomicLong> columnCounts = failureCounts.get( fileCheck );
+        if ( null == columnCounts )
+        {
+            ConcurrentMap<Integer, AtomicLong> newColumnCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+            columnCounts = failureCounts.putIfAbsent( fileCheck, newColumnCounts );
+            if ( null == columnCounts ) columnCounts = newColumnCounts;
+        }
+        AtomicLong count = columnCounts.get( column );
+        if ( null == count )
+        {
+            AtomicLong newCount = new AtomicLong( 0 );
+            count = columnCounts.putIfAbsent( column, newCount );
+            if ( null == count ) count = newCount;
+        }
+        count.incrementAndGet();
+    }
+
+    FileStats startFile( File file, List<FileCheck> fileChecks )
+    {
+        FileStats stats = new FileStats( file, fileChecks );
+        fileStats.add( stats );
+        return stats;
+    }
+
+    void addChunk( FileCheck chunk, FileCheck fileCheck )
+    {
+        chunkParents.put( chunk, fileCheck );
+    }
+
+    /**
+     * @return CPU time of the current thread, or 0 if the JVM does not measure it
+     */
+    static long currentThreadCpuNanos()
+    {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Statistics of reading and checking one file, updated by all threads that check chunks of it
+     */
+    public static class FileStats
+    {
+        private final File file;
+        private final List<FileCheck> fileChecks;
+        private final long bytes;
+        private final AtomicLong rows = new AtomicLong( 0 );
+        private final AtomicLong cpuNanos = new AtomicLong( 0 );
+        private final AtomicLongArray checkNanos;
+        private volatile long wallNanos = 0;
+
+        private FileStats( File file, List<FileCheck> fileChecks )
+        {
+            this.file = file;
+            this.fileChecks = fileChecks;
+            this.bytes = file.length();
+            this.checkNanos = new AtomicLongArray( fileChecks.size() );
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * @return lines read, including those before the start line of checks
+         */
+        public long getRows()
+        {
+            return rows.get();
+        }
+
+        /**
+         * @return 0 until the file was checked
+         */
+        public long getWallNanos()
+        {
+            return wallNanos;
+        }
+
+        /**
+         * @return CPU time of all threads that checked the file
+         */
+        public long getCpuNanos()
+        {
+            return cpuNanos.get();
+        }
+
+        /**
+         * @param fileCheck index of the check in the list of checks of the file
+         * @return time spent in checkLine(), mergeChunks() and checkFile() of the check, summed over the threads that
+         *         checked chunks of the file, so it can exceed the wall time
+         */
+        public long getCheckNanos( int fileCheck )
+        {
+            return checkNanos.get( fileCheck );
+        }
+
+        void addRows( long rows )
+        {
+            this.rows.addAndGet( rows );
+        }
+
+        void addCpuNanos( long cpuNanos )
+        {
+            this.cpuNanos.addAndGet( cpuNanos );
+        }
+
+        void addCheckNanos( int fileCheck, long nanos )
+        {
+            checkNanos.addAndGet( fileCheck, nanos );
+        }
+
+        void finish( long wallNanos )
+        {
+            this.wallNanos = wallNanos;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ldbc.datachecker;
+
+import java.util.List;
+
+/**
+ * FileCheck whose lines can be checked as independent chunks of the file, in parallel, and combined afterwards.
+ */
+public interface SplittableFileCheck extends FileCheck
+{
+    /**
+     * @return false if, as configured, lines must be checked in a single pass, e.g. to check ColumnRef uniqueness
+     */
+    public boolean isSplittable();
+
+    /**
+     * @return check with the same configuration and fresh state, used to check one chunk of the file
+     */
+    public SplittableFileCheck newChunk();
+
+    /**
+     * Combines the state of chunk checks into this check, reporting failures that span chunk boundaries. Called
+     * once all chunks have been checked and before checkFile().
+     *
+     * @param chunks checks returned by newChunk(), in file order
+     */
+    public void mergeChunks( List<SplittableFileCheck> chunks, FailedCheckPolicy policy )
+            throws ColumnCheckException, FileCheckException;
+}
@@ -0,0 +1,16 @@
+package com.ldbc.datachecker;
+
+/**
+ * FileCheck that checks lines column by column and can measure the time spent in each column, see RunReport.
+ */
+public interface TimedFileCheck extends FileCheck
+{
+    /**
+     * Starts measuring the time of every column, see Column.withTimings()
+     */
+    public TimedFileCheck withTimings();
+
+    public int getColumnCount();
+
+    public Column getColumn( int column );
+}
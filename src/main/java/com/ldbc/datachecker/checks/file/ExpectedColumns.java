@@ -1,19 +1,32 @@
 package com.ldbc.datachecker.checks.file;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.ldbc.datachecker.Column;
 import com.ldbc.datachecker.ColumnCheckException;
-import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.ColumnRef;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.FailedCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
 import com.ldbc.datachecker.FileCheckException;
+import com.ldbc.datachecker.SplittableFileCheck;
+import com.ldbc.datachecker.TimedFileCheck;
 
-public class ExpectedColumns implements FileCheck
+public class ExpectedColumns implements SplittableFileCheck, TimedFileCheck
 {
     private final int startLine;
     private final File forFile;
     private final Column[] columns;
+    private long maxFailuresPerColumn = 0;
+    // shared by chunks of the file
+    private AtomicLongArray failureCounts = null;
+    private FailureCountingPolicy countingPolicy = null;
 
     public ExpectedColumns( String filename, Column... columns )
     {
@@ -27,6 +40,51 @@ public class ExpectedColumns implements FileCheck
         this.columns = columns;
     }
 
+    /**
+     * Once a column failed this many times its values are no longer validated, which is reported once, but are still
+     * saved to and checked in ColumnRefs, so checks of other files that look them up are not affected. When a file
+     * is checked in chunks the count is shared, but which values are still validated depends on chunk scheduling.
+     *
+     * @param maxFailuresPerColumn 0 validates all values
+     */
+    public ExpectedColumns withMaxFailuresPerColumn( long maxFailuresPerColumn )
+    {
+        this.maxFailuresPerColumn = maxFailuresPerColumn;
+        this.failureCounts = ( maxFailuresPerColumn > 0 ) ? new AtomicLongArray( columns.length ) : null;
+        this.countingPolicy = ( maxFailuresPerColumn > 0 ) ? new FailureCountingPolicy() : null;
+        return this;
+    }
+
+    /**
+     * @return number of failures of column, counted when withMaxFailuresPerColumn() is used
+     */
+    public long getFailureCount( int column )
+    {
+        return ( null == failureCounts ) ? 0 : failureCounts.get( column );
+    }
+
+    @Override
+    public ExpectedColumns withTimings()
+    {
+        for ( Column column : columns )
+        {
+            column.withTimings();
+        }
+        return this;
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return columns.length;
+    }
+
+    @Override
+    public Column getColumn( int column )
+    {
+        return columns[column];
+    }
+
     @Override
     public File forFile()
     {
@@ -39,24 +97,146 @@ public class ExpectedColumns implements FileCheck
         return startLine;
     }
 
+    @Override
+    public Set<ColumnRef<?>> writesTo()
+    {
+        Set<ColumnRef<?>> columnRefs = new HashSet<ColumnRef<?>>();
+        for ( Column column : columns )
+        {
+            columnRefs.addAll( column.getSaveToColumnRefs() );
+            columnRefs.addAll( column.getSaveToGroupAndCheckUniqueColumnRefs() );
+        }
+        return columnRefs;
+    }
+
+    @Override
+    public Set<ColumnRef<?>> readsFrom()
+    {
+        Set<ColumnRef<?>> columnRefs = new HashSet<ColumnRef<?>>();
+        for ( Column column : columns )
+        {
+            columnRefs.addAll( column.getCheckInColumnRefs() );
+        }
+        return columnRefs;
+    }
+
     @Override
     public void checkLine( FailedFileCheckPolicy filePolicy, FailedColumnCheckPolicy columnPolicy, long lineNumber,
-            String[] stringColumns ) throws FileCheckException, ColumnCheckException
+            CsvLine line ) throws FileCheckException, ColumnCheckException
     {
-        if ( columns.length != stringColumns.length )
+        if ( columns.length != line.columnCount() )
         {
             filePolicy.handleFailedLineCheck( this,
-                    String.format( "Expected %s columns but found %s", columns.length, stringColumns.length ),
-                    lineNumber, stringColumns );
+                    String.format( "Expected %s columns but found %s", columns.length, line.columnCount() ),
+                    lineNumber, line.toStringArray() );
+        }
+        int columnCount = Math.min( columns.length, line.columnCount() );
+        if ( null == failureCounts )
+        {
+            for ( int i = 0; i < columnCount; i++ )
+            {
+                columns[i].check( columnPolicy.forColumn( i ), line, i );
+            }
+            return;
+        }
+        for ( int i = 0; i < columnCount; i++ )
+        {
+            if ( failureCounts.get( i ) >= maxFailuresPerColumn )
+            {
+                columns[i].checkColumnRefs( columnPolicy.forColumn( i ), line, i );
+            }
+            else
+            {
+                columns[i].check( countingPolicy.forColumn( columnPolicy, lineNumber, line, i ), line, i );
+            }
         }
+    }
+
+    @Override
+    public void checkFile( FailedFileCheckPolicy filePolicy ) throws FileCheckException
+    {
         for ( int i = 0; i < columns.length; i++ )
         {
-            columns[i].check( columnPolicy, stringColumns[i] );
+            columns[i].checkDeferred( this, filePolicy, i );
+        }
+    }
+
+    @Override
+    public boolean isSplittable()
+    {
+        for ( Column column : columns )
+        {
+            if ( false == column.isSplittable() ) return false;
         }
+        Set<ColumnRef<?>> columnRefs = writesTo();
+        columnRefs.retainAll( readsFrom() );
+        return columnRefs.isEmpty();
     }
 
     @Override
-    public void checkFile( FailedFileCheckPolicy filePolicy )
+    public SplittableFileCheck newChunk()
     {
+        Column[] chunkColumns = new Column[columns.length];
+        for ( int i = 0; i < columns.length; i++ )
+        {
+            chunkColumns[i] = columns[i].newChunk();
+        }
+        ExpectedColumns chunk = new ExpectedColumns( forFile.getPath(), startLine, chunkColumns );
+        if ( null != failureCounts )
+        {
+            chunk.maxFailuresPerColumn = maxFailuresPerColumn;
+            chunk.failureCounts = failureCounts;
+            chunk.countingPolicy = chunk.new FailureCountingPolicy();
+        }
+        return chunk;
+    }
+
+    @Override
+    public void mergeChunks( List<SplittableFileCheck> chunks, FailedCheckPolicy policy )
+            throws ColumnCheckException
+    {
+        for ( int i = 0; i < columns.length; i++ )
+        {
+            List<Column> chunkColumns = new ArrayList<Column>();
+            for ( SplittableFileCheck chunk : chunks )
+            {
+                chunkColumns.add( ( (ExpectedColumns) chunk ).columns[i] );
+            }
+            columns[i].mergeChunks( chunkColumns, this, policy );
+        }
+    }
+
+    /*
+     * Counts failures of the column being checked, and passes them on to the policy of the line
+     */
+    private class FailureCountingPolicy extends FailedColumnCheckPolicy
+    {
+        private FailedColumnCheckPolicy columnPolicy = null;
+
+        FailureCountingPolicy()
+        {
+            super( ExpectedColumns.this, 0, null );
+        }
+
+        FailedColumnCheckPolicy forColumn( FailedColumnCheckPolicy columnPolicy, long lineNumber, CsvLine line,
+                int column )
+        {
+            this.columnPolicy = columnPolicy.forColumn( column );
+            forLine( lineNumber, line );
+            forColumn( column );
+            return this;
+        }
+
+        @Override
+        public void handleFailedColumnCheck( String columnString, String message ) throws ColumnCheckException
+        {
+            columnPolicy.handleFailedColumnCheck( columnString, message );
+            if ( failureCounts.incrementAndGet( getColumn() ) == maxFailuresPerColumn )
+            {
+                columnPolicy.handleFailedColumnCheck( columnString, String.format(
+                        "Column failed %s times, further values are only saved to and checked in ColumnRefs",
+                        maxFailuresPerColumn ) );
+            }
+        }
     }
 }
@@ -1,13 +1,19 @@
 package com.ldbc.datachecker.checks.file;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
-import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.ColumnRef;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.FailedCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
 import com.ldbc.datachecker.FailedCheckPolicy.FailedFileCheckPolicy;
 import com.ldbc.datachecker.FileCheckException;
+import com.ldbc.datachecker.SplittableFileCheck;
 
-public class ExpectedLength implements FileCheck
+public class ExpectedLength implements SplittableFileCheck
 {
     private final int startLine;
     private final File forFile;
@@ -39,9 +45,21 @@ public class ExpectedLength implements FileCheck
         return startLine;
     }
 
+    @Override
+    public Set<ColumnRef<?>> writesTo()
+    {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<ColumnRef<?>> readsFrom()
+    {
+        return Collections.emptySet();
+    }
+
     @Override
     public void checkLine( FailedFileCheckPolicy filePolicy, FailedColumnCheckPolicy columnPolicy, long lineNumber,
-            String[] stringColumns )
+            CsvLine line )
     {
         lineCount++;
     }
@@ -55,4 +73,25 @@ public class ExpectedLength implements FileCheck
                     String.format( "File expected to have %s lines, found %s", expectedLineCount, lineCount ) );
         }
     }
+
+    @Override
+    public boolean isSplittable()
+    {
+        return true;
+    }
+
+    @Override
+    public SplittableFileCheck newChunk()
+    {
+        return new ExpectedLength( forFile.getPath(), startLine, expectedLineCount );
+    }
+
+    @Override
+    public void mergeChunks( List<SplittableFileCheck> chunks, FailedCheckPolicy policy )
+    {
+        for ( SplittableFileCheck chunk : chunks )
+        {
+            lineCount += ( (ExpectedLength) chunk ).lineCount;
+        }
+    }
 }
@@ -0,0 +1,257 @@
+package com.ldbc.datachecker.failure;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.FailedCheckPolicy;
+import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.FileCheckException;
+
+/**
+ * Groups failures by file, column and message, with values and numbers replaced by placeholders, e.g. all "Value 7
+ * not found in ColumnRef[persons]" failures of column 1 of a file are one category. Only the first samplesPerCategory
+ * failures of each category are passed on to another policy, the rest are counted, so a systematic problem costs one
+ * pass over the message and a counter increment per line rather than a log line. Call logSummary() once checking is
+ * done.
+ */
+public class AggregatingFailedCheckPolicy implements FailedCheckPolicy
+{
+    private static final Logger logger = Logger.getLogger( AggregatingFailedCheckPolicy.class );
+    private static final String VALUE = "<value>";
+
+    private final FailedCheckPolicy policy;
+    private final long samplesPerCategory;
+    private final ConcurrentMap<Key, Category> categories = new ConcurrentHashMap<Key, Category>();
+
+    public AggregatingFailedCheckPolicy( FailedCheckPolicy policy, long samplesPerCategory )
+    {
+        this.policy = policy;
+        this.samplesPerCategory = samplesPerCategory;
+    }
+
+    /**
+     * @return categories with the most failures first
+     */
+    public List<Category> getCategories()
+    {
+        List<Category> sortedCategories = new ArrayList<Category>( categories.values() );
+        Collections.sort( sortedCategories, new Comparator<Category>()
+        {
+            @Override
+            public int compare( Category category1, Category category2 )
+            {
+                long count1 = category1.getCount();
+                long count2 = category2.getCount();
+                if ( count1 != count2 ) return ( count1 > count2 ) ? -1 : 1;
+                return category1.toString().compareTo( category2.toString() );
+            }
+        } );
+        return sortedCategories;
+    }
+
+    public void logSummary()
+    {
+        List<Category> sortedCategories = getCategories();
+        long failureCount = 0;
+        for ( Category category : sortedCategories )
+        {
+            failureCount += category.getCount();
+        }
+        logger.info( String.format( "%s failures in %s categories", failureCount, sortedCategories.size() ) );
+        for ( Category category : sortedCategories )
+        {
+            logger.info( String.format( "Count[%s] %s", category.getCount(), category ) );
+        }
+    }
+
+    @Override
+    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
+    {
+        return new FailedColumnCheckPolicy( fileCheck, lineNumber, line )
+        {
+            @Override
+            public void handleFailedColumnCheck( String columnString, String message ) throws ColumnCheckException
+            {
+                if ( isSample( getFileCheck(), getColumn(), template( message, columnString ) ) )
+                {
+                    CsvLine sampleLine = CsvLine.fromColumns( getRow() );
+                    FailedColumnCheckPolicy samplePolicy = policy.getFailedColumnCheckPolicy( getFileCheck(),
+                            getLineNumber(), sampleLine );
+                    samplePolicy.forColumn( getColumn() ).handleFailedColumnCheck( columnString, message );
+                }
+            }
+        };
+    }
+
+    @Override
+    public FailedFileCheckPolicy getFailedFileCheckPolicy()
+    {
+        final FailedFileCheckPolicy filePolicy = policy.getFailedFileCheckPolicy();
+        return new FailedFileCheckPolicy()
+        {
+            @Override
+            public void handleFailedLineCheck( FileCheck fileCheck, String message, long lineNumber, String[] row )
+                    throws FileCheckException
+            {
+                if ( isSample( fileCheck, -1, template( message, null ) ) )
+                {
+                    filePolicy.handleFailedLineCheck( fileCheck, message, lineNumber, row );
+                }
+            }
+
+            @Override
+            public void handleFailedFileCheck( FileCheck fileCheck, String message ) throws FileCheckException
+            {
+                if ( isSample( fileCheck, -1, template( message, null ) ) )
+                {
+                    filePolicy.handleFailedFileCheck( fileCheck, message );
+                }
+            }
+        };
+    }
+
+    @Override
+    public FailedDirectoryCheckPolicy getFailedDirectoryCheckPolicy()
+    {
+        // few and all different, reported as they are
+        return policy.getFailedDirectoryCheckPolicy();
+    }
+
+    private boolean isSample( FileCheck fileCheck, int column, String template )
+    {
+        Key key = new Key( fileCheck.forFile(), column, template );
+        Category category = categories.get( key );
+        if ( null == category )
+        {
+            Category newCategory = new Category( key.file.getName(), column, template );
+            category = categories.putIfAbsent( key, newCategory );
+            if ( null == category ) category = newCategory;
+        }
+        return category.count.incrementAndGet() <= samplesPerCategory;
+    }
+
+    /**
+     * @return message with the failed value (where it is not part of a longer word) and numbers replaced by
+     *         placeholders, in one pass without regular expressions as it runs for every failure
+     */
+    static String template( String message, String columnString )
+    {
+        boolean hasValue = null != columnString && false == columnString.isEmpty();
+        StringBuilder template = new StringBuilder( message.length() );
+        int i = 0;
+        while ( i < message.length() )
+        {
+            char c = message.charAt( i );
+            if ( hasValue && message.startsWith( columnString, i ) && ( 0 == i || false == isWordChar(
+                    message.charAt( i - 1 ) ) ) )
+            {
+                int end = i + columnString.length();
+                if ( end == message.length() || false == isWordChar( message.charAt( end ) ) )
+                {
+                    template.append( VALUE );
+                    i = end;
+                    continue;
+                }
+            }
+            if ( c >= '0' && c <= '9' )
+            {
+                template.append( '#' );
+                while ( i < message.length() && message.charAt( i ) >= '0' && message.charAt( i ) <= '9' )
+                {
+                    i++;
+                }
+                continue;
+            }
+            template.append( c );
+            i++;
+        }
+        return template.toString();
+    }
+
+    private static boolean isWordChar( char c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || '_' == c;
+    }
+
+    private static class Key
+    {
+        private final File file;
+        private final int column;
+        private final String template;
+
+        private Key( File file, int column, String template )
+        {
+            this.file = file;
+            this.column = column;
+            this.template = template;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            if ( false == ( other instanceof Key ) ) return false;
+            Key key = (Key) other;
+            return column == key.column && template.equals( key.template ) && file.equals( key.file );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ( 31 * file.hashCode() + column ) * 31 + template.hashCode();
+        }
+    }
+
+    public static class Category
+    {
+        private final String file;
+        private final int column;
+        private final String template;
+        private final AtomicLong count = new AtomicLong( 0 );
+
+        private Category( String file, int column, String template )
+        {
+            this.file = file;
+            this.column = column;
+            this.template = template;
+        }
+
+        public String getFile()
+        {
+            return file;
+        }
+
+        /**
+         * @return index of the failed column, or -1 for failures of whole lines or files
+         */
+        public int getColumn()
+        {
+            return column;
+        }
+
+        public String getTemplate()
+        {
+            return template;
+        }
+
+        public long getCount()
+        {
+            return count.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "File[%s] Column[%s] Message[%s]", file, column, template );
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.ldbc.datachecker.failure;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.DirectoryCheck;
+import com.ldbc.datachecker.DirectoryCheckException;
+import com.ldbc.datachecker.FailedCheckPolicy;
+import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.FileCheckException;
+
+/**
+ * Hands failures to a background thread, which reports them in batches to another policy, e.g. a
+ * LoggingFailedCheckPolicy, so formatting and writing failures does not slow down checking. Checking threads block
+ * when the queue is full, no failure is dropped. If the background thread stops, e.g. it was interrupted, checking
+ * threads fail with a RuntimeException instead of waiting for it.
+ *
+ * Failures are reported after the check that found them carried on, so the policy reported to should not throw, i.e.
+ * this is not useful with TerminateFailedCheckPolicy. Call close() once checking is done.
+ */
+public class AsyncFailedCheckPolicy implements FailedCheckPolicy
+{
+    public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    // how often a checking thread waiting for queue space checks the writer is still running
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final Logger logger = Logger.getLogger( AsyncFailedCheckPolicy.class );
+
+    private final FailedCheckPolicy policy;
+    private final BlockingQueue<Failure> queue;
+    private final Thread writer;
+    private volatile boolean writerStopped = false;
+    private volatile Throwable writerFailure = null;
+
+    public AsyncFailedCheckPolicy( FailedCheckPolicy policy )
+    {
+        this( policy, DEFAULT_QUEUE_CAPACITY );
+    }
+
+    public AsyncFailedCheckPolicy( FailedCheckPolicy policy, int queueCapacity )
+    {
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<Failure>( queueCapacity );
+        this.writer = new Thread( new Writer(), "failure-writer" );
+        this.writer.setDaemon( true );
+        this.writer.start();
+    }
+
+    /**
+     * Waits until all queued failures were reported
+     *
+     * @throws RuntimeException if the writer stopped before reporting all failures
+     */
+    public void close()
+    {
+        if ( writerStopped )
+        {
+            if ( null == writerFailure ) return;
+            throw writerStoppedException();
+        }
+        enqueue( END );
+        try
+        {
+            writer.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            String errMsg = "Interrupted while waiting for failures to be reported";
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+        if ( null != writerFailure ) throw writerStoppedException();
+    }
+
+    @Override
+    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
+    {
+        return new FailedColumnCheckPolicy( fileCheck, lineNumber, line )
+        {
+            @Override
+            public void handleFailedColumnCheck( String columnString, String message )
+            {
+                // the line is reused by the reader, so the row is decoded now
+                enqueue( new ColumnFailure( getFileCheck(), getLineNumber(), getRow(), getColumn(), columnString,
+                        message ) );
+            }
+        };
+    }
+
+    @Override
+    public FailedFileCheckPolicy getFailedFileCheckPolicy()
+    {
+        return new FailedFileCheckPolicy()
+        {
+            @Override
+            public void handleFailedLineCheck( FileCheck fileCheck, String message, long lineNumber, String[] row )
+            {
+                enqueue( new LineFailure( fileCheck, message, lineNumber, row ) );
+            }
+
+            @Override
+            public void handleFailedFileCheck( FileCheck fileCheck, String message )
+            {
+                enqueue( new FileFailure( fileCheck, message ) );
+            }
+        };
+    }
+
+    @Override
+    public FailedDirectoryCheckPolicy getFailedDirectoryCheckPolicy()
+    {
+        return new FailedDirectoryCheckPolicy()
+        {
+            @Override
+            public void handleFailedDirectoryCheck( DirectoryCheck directoryCheck, File directory, String message )
+            {
+                enqueue( new DirectoryFailure( directoryCheck, directory, message ) );
+            }
+        };
+    }
+
+    private void enqueue( Failure failure )
+    {
+        try
+        {
+            do
+            {
+                if ( writerStopped ) throw writerStoppedException();
+            }
+            while ( false == queue.offer( failure, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            String errMsg = "Interrupted while queueing failure";
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+    }
+
+    private RuntimeException writerStoppedException()
+    {
+        String errMsg = "Failure writer stopped, remaining failures are not reported";
+        return new RuntimeException( errMsg, writerFailure );
+    }
+
+    private class Writer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                reportFailures();
+            }
+            catch ( Throwable e )
+            {
+                writerFailure = e;
+                logger.error( "Failure writer stopped, remaining failures are not reported", e );
+            }
+            finally
+            {
+                writerStopped = true;
+            }
+        }
+
+        private void reportFailures() throws InterruptedException
+        {
+            List<Failure> batch = new ArrayList<Failure>( BATCH_SIZE );
+            while ( true )
+            {
+                batch.add( queue.take() );
+                queue.drainTo( batch, BATCH_SIZE - 1 );
+                for ( Failure failure : batch )
+                {
+                    if ( END == failure ) return;
+                    try
+                    {
+                        failure.report( policy );
+                    }
+                    catch ( Exception e )
+                    {
+                        logger.error( "Error reporting failure", e );
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private static abstract class Failure
+    {
+        abstract void report( FailedCheckPolicy policy ) throws Exception;
+    }
+
+    private static final Failure END = new Failure()
+    {
+        @Override
+        void report( FailedCheckPolicy policy )
+        {
+        }
+    };
+
+    private static class ColumnFailure extends Failure
+    {
+        private final FileCheck fileCheck;
+        private final long lineNumber;
+        private final String[] row;
+        private final int column;
+        private final String columnString;
+        private final String message;
+
+        ColumnFailure( FileCheck fileCheck, long lineNumber, String[] row, int column, String columnString,
+                String message )
+        {
+            this.fileCheck = fileCheck;
+            this.lineNumber = lineNumber;
+            this.row = row;
+            this.column = column;
+            this.columnString = columnString;
+            this.message = message;
+        }
+
+        @Override
+        void report( FailedCheckPolicy policy ) throws ColumnCheckException
+        {
+            CsvLine line = CsvLine.fromColumns( row );
+            FailedColumnCheckPolicy columnPolicy = policy.getFailedColumnCheckPolicy( fileCheck, lineNumber, line );
+            columnPolicy.forColumn( column ).handleFailedColumnCheck( columnString, message );
+        }
+    }
+
+    private static class LineFailure extends Failure
+    {
+        private final FileCheck fileCheck;
+        private final String message;
+        private final long lineNumber;
+        private final String[] row;
+
+        LineFailure( FileCheck fileCheck, String message, long lineNumber, String[] row )
+        {
+            this.fileCheck = fileCheck;
+            this.message = message;
+            this.lineNumber = lineNumber;
+            this.row = row;
+        }
+
+        @Override
+        void report( FailedCheckPolicy policy ) throws FileCheckException
+        {
+            policy.getFailedFileCheckPolicy().handleFailedLineCheck( fileCheck, message, lineNumber, row );
+        }
+    }
+
+    private static class FileFailure extends Failure
+    {
+        private final FileCheck fileCheck;
+        private final String message;
+
+        FileFailure( FileCheck fileCheck, String message )
+        {
+            this.fileCheck = fileCheck;
+            this.message = message;
+        }
+
+        @Override
+        void report( FailedCheckPolicy policy ) throws FileCheckException
+        {
+            policy.getFailedFileCheckPolicy().handleFailedFileCheck( fileCheck, message );
+        }
+    }
+
+    private static class DirectoryFailure extends Failure
+    {
+        private final DirectoryCheck directoryCheck;
+        private final File directory;
+        private final String message;
+
+        DirectoryFailure( DirectoryCheck directoryCheck, File directory, String message )
+        {
+            this.directoryCheck = directoryCheck;
+            this.directory = directory;
+            this.message = message;
+        }
+
+        @Override
+        void report( FailedCheckPolicy policy ) throws DirectoryCheckException
+        {
+            policy.getFailedDirectoryCheckPolicy().handleFailedDirectoryCheck( directoryCheck, directory, message );
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.apache.log4j.Logger;
 import au.com.bytecode.opencsv.CSVWriter;
 
 import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.CsvLine;
 import com.ldbc.datachecker.DirectoryCheck;
 import com.ldbc.datachecker.DirectoryCheckException;
 import com.ldbc.datachecker.FailedCheckPolicy;
@@ -45,9 +46,9 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
     }
 
     @Override
-    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, String[] row )
+    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
     {
-        return new LoggingFailedColumnCheckPolicy( consoleLogger, csvWriter, fileCheck, lineNumber, row );
+        return new LoggingFailedColumnCheckPolicy( consoleLogger, csvWriter, fileCheck, lineNumber, line );
     }
 
     @Override
@@ -68,9 +69,9 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
         private final CSVWriter csvWriter;
 
         public LoggingFailedColumnCheckPolicy( Logger consoleLogger, CSVWriter csvWriter, FileCheck fileCheck,
-                long lineNumber, String[] row )
+                long lineNumber, CsvLine line )
         {
-            super( fileCheck, lineNumber, row );
+            super( fileCheck, lineNumber, line );
             this.consoleLogger = consoleLogger;
             this.csvWriter = csvWriter;
         }
@@ -88,7 +89,10 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
                 String[] nextLine = new String[] { getFileCheck().getClass().getSimpleName(),
                         getFileCheck().forFile().getAbsolutePath(), Long.toString( getLineNumber() ),
                         Arrays.toString( getRow() ), columnString, message };
-                csvWriter.writeNext( nextLine );
+                synchronized ( csvWriter )
+                {
+                    csvWriter.writeNext( nextLine );
+                }
             }
         }
     }
@@ -119,7 +123,10 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
                 // Check;File;Line;Row;Column;Message
                 String[] nextLine = new String[] { fileCheck.getClass().getSimpleName(), fileCheck.forFile().getName(),
                         Long.toString( lineNumber ), Arrays.toString( row ), message };
-                csvWriter.writeNext( nextLine );
+                synchronized ( csvWriter )
+                {
+                    csvWriter.writeNext( nextLine );
+                }
 
             }
         }
@@ -137,7 +144,10 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
                 // Check;File;Line;Row;Column;Message
                 String[] nextLine = new String[] { fileCheck.getClass().getSimpleName(), fileCheck.forFile().getName(),
                         "", "", "", message };
-                csvWriter.writeNext( nextLine );
+                synchronized ( csvWriter )
+                {
+                    csvWriter.writeNext( nextLine );
+                }
             }
         }
     }
@@ -166,7 +176,10 @@ public class LoggingFailedCheckPolicy implements FailedCheckPolicy
                 // Check;File;Line;Row;Column;Message
                 String[] nextLine = new String[] { directoryCheck.getClass().getSimpleName(),
                         directory.getAbsolutePath(), "", "", "", message };
-                csvWriter.writeNext( nextLine );
+                synchronized ( csvWriter )
+                {
+                    csvWriter.writeNext( nextLine );
+                }
             }
         }
     }
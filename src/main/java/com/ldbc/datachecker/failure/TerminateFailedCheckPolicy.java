@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.Arrays;
 
 import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.CsvLine;
 import com.ldbc.datachecker.DirectoryCheck;
 import com.ldbc.datachecker.DirectoryCheckException;
 import com.ldbc.datachecker.FailedCheckPolicy;
@@ -13,9 +14,9 @@ import com.ldbc.datachecker.FileCheckException;
 public class TerminateFailedCheckPolicy implements FailedCheckPolicy
 {
     @Override
-    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, String[] row )
+    public FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
     {
-        return new TerminateFailedColumnCheckPolicy( fileCheck, lineNumber, row );
+        return new TerminateFailedColumnCheckPolicy( fileCheck, lineNumber, line );
     }
 
     @Override
@@ -32,9 +33,9 @@ public class TerminateFailedCheckPolicy implements FailedCheckPolicy
 
     public static class TerminateFailedColumnCheckPolicy extends FailedColumnCheckPolicy
     {
-        public TerminateFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, String[] row )
+        public TerminateFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber, CsvLine line )
         {
-            super( fileCheck, lineNumber, row );
+            super( fileCheck, lineNumber, line );
         }
 
         public void handleFailedColumnCheck( String columnString, String message ) throws ColumnCheckException
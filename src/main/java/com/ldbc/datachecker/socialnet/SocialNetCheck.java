@@ -30,11 +30,16 @@ import com.ldbc.datachecker.Check;
 import com.ldbc.datachecker.CheckRunner;
 import com.ldbc.datachecker.ColumnRef;
 import com.ldbc.datachecker.DirectoryCheck;
+import com.ldbc.datachecker.ExternalLongColumnRef;
 import com.ldbc.datachecker.FailedCheckPolicy;
 import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.FileCheckRunner.ReaderType;
+import com.ldbc.datachecker.MappedCsvFileReader;
 import com.ldbc.datachecker.checks.directory.DirectoryContainsAllAndOnlyExpectedCsvFiles;
 import com.ldbc.datachecker.checks.file.ExpectedColumns;
 import com.ldbc.datachecker.checks.file.ExpectedLength;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy;
+import com.ldbc.datachecker.failure.AsyncFailedCheckPolicy;
 import com.ldbc.datachecker.failure.LoggingFailedCheckPolicy;
 import com.ldbc.datachecker.failure.TerminateFailedCheckPolicy;
 
@@ -47,6 +52,16 @@ public class SocialNetCheck implements Check
     private static final String DIR = "dir";
     private static final String TERMINATE = "terminate";
     private static final String LOG = "log";
+    private static final String WORKERS = "workers";
+    private static final String MMAP = "mmap";
+    private static final String CHUNK = "chunk";
+    private static final String REFS = "refs";
+    private static final String ASYNC = "async";
+    private static final String SAMPLES = "samples";
+    private static final String ERRORS = "errors";
+    private static final String REPORT = "report";
+    private static final String PROGRESS = "progress";
+    private static final String INCREMENTAL = "incremental";
 
     public static void main( String[] args ) throws IOException
     {
@@ -104,9 +119,71 @@ public class SocialNetCheck implements Check
          */
         boolean logToFile = Boolean.parseBoolean( params.get( LOG ) );
 
+        /*
+         * number of files checked concurrently
+         */
+        int workerCount = Integer.parseInt( params.get( WORKERS ) );
+
+        /*
+         * read files through memory-mapped, byte-level tokenizer
+         */
+        ReaderType readerType = Boolean.parseBoolean( params.get( MMAP ) ) ? ReaderType.MEMORY_MAPPED
+                : ReaderType.BUFFERED;
+
+        /*
+         * files larger than this many MB are split and checked in parallel (requires mmap and workers)
+         */
+        long chunkSize = Long.parseLong( params.get( CHUNK ) ) * 1024 * 1024;
+
+        /*
+         * how node ids are stored for relationship files to look up
+         */
+        NodeRefType nodeRefType;
+        try
+        {
+            nodeRefType = NodeRefType.valueOf( params.get( REFS ).toUpperCase() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            logger.error( String.format( "Unknown node ref type [%s]", params.get( REFS ) ) );
+            return;
+        }
+
+        /*
+         * report failures from a background thread
+         */
+        boolean reportAsync = Boolean.parseBoolean( params.get( ASYNC ) );
+
+        /*
+         * report only this many failures of each kind, then a summary (0 reports all)
+         */
+        long samplesPerCategory = Long.parseLong( params.get( SAMPLES ) );
+
+        /*
+         * stop validating a column of a file after this many failures (0 validates all values)
+         */
+        long maxFailuresPerColumn = Long.parseLong( params.get( ERRORS ) );
+
+        /*
+         * write timings and failure counts of every file and column to this csv file (null for no report)
+         */
+        String reportPath = params.get( REPORT );
+
+        /*
+         * log progress and ETA every this many seconds (0 for no progress)
+         */
+        long progressSeconds = Long.parseLong( params.get( PROGRESS ) );
+
+        /*
+         * skip files that did not change since the last run with this state directory (null checks all files)
+         */
+        String incrementalPath = params.get( INCREMENTAL );
+
         CSVWriter csvWriter = null;
 
         FailedCheckPolicy policy = null;
+        AsyncFailedCheckPolicy asyncPolicy = null;
+        AggregatingFailedCheckPolicy aggregatingPolicy = null;
         if ( true == terminateOnError )
         {
             policy = new TerminateFailedCheckPolicy();
@@ -118,6 +195,16 @@ public class SocialNetCheck implements Check
                 csvWriter = createCSVWriter( CSV_FILENAME );
             }
             policy = LoggingFailedCheckPolicy.toConsoleAndFile( logger, csvWriter );
+            if ( reportAsync )
+            {
+                asyncPolicy = new AsyncFailedCheckPolicy( policy );
+                policy = asyncPolicy;
+            }
+            if ( samplesPerCategory > 0 )
+            {
+                aggregatingPolicy = new AggregatingFailedCheckPolicy( policy, samplesPerCategory );
+                policy = aggregatingPolicy;
+            }
         }
 
         // TODO 1
@@ -125,8 +212,18 @@ public class SocialNetCheck implements Check
 
         try
         {
-            Check socialNetCheck = new SocialNetCheck( dataDirectory, idsShouldIncrementBy, personCount );
-            CheckRunner checkRunner = new CheckRunner( dataDirectory, socialNetCheck, policy );
+            SocialNetCheck socialNetCheck = new SocialNetCheck( dataDirectory, idsShouldIncrementBy, personCount );
+            socialNetCheck.withNodeRefType( nodeRefType ).withMaxFailuresPerColumn( maxFailuresPerColumn );
+            CheckRunner checkRunner = new CheckRunner( dataDirectory, socialNetCheck, policy, workerCount );
+            checkRunner.withReaderType( readerType ).withChunkSize( chunkSize ).withProgress( progressSeconds * 1000 );
+            if ( null != reportPath )
+            {
+                checkRunner.withRunReport( new File( reportPath ) );
+            }
+            if ( null != incrementalPath )
+            {
+                checkRunner.withIncremental( new File( incrementalPath ), socialNetCheck.getConfiguration() );
+            }
             checkRunner.check();
         }
         catch ( Exception e )
@@ -134,6 +231,17 @@ public class SocialNetCheck implements Check
             logger.error( e.getMessage() );
             return;
         }
+        finally
+        {
+            if ( null != asyncPolicy )
+            {
+                asyncPolicy.close();
+            }
+            if ( null != aggregatingPolicy )
+            {
+                aggregatingPolicy.logSummary();
+            }
+        }
 
         if ( null != csvWriter )
         {
@@ -156,11 +264,53 @@ public class SocialNetCheck implements Check
                 "t" );
         Option logToFileOption = OptionBuilder.withLongOpt( "log" ).withDescription( "Log errors to csv file" ).create(
                 "l" );
+        Option workersOption = OptionBuilder.hasArg().withArgName( "count" ).withLongOpt( "workers" ).withDescription(
+                "Number of files to check concurrently (default 1)" ).create( "w" );
+        Option mmapOption = OptionBuilder.withLongOpt( "mmap" ).withDescription(
+                "Read files as memory-mapped UTF-8 bytes" ).create( "m" );
+        Option chunkOption = OptionBuilder.hasArg().withArgName( "MB" ).withLongOpt( "chunk" ).withDescription(
+                "Split files larger than this into chunks checked in parallel, requires -m and -w (default 0, off)" ).create(
+                "c" );
+
+        Option refsOption = OptionBuilder.hasArg().withArgName( "type" ).withLongOpt( "refs" ).withDescription(
+                "How node ids are stored: bitmap, hash, off_heap or external (default hash)" ).create( "r" );
+
+        Option asyncOption = OptionBuilder.withLongOpt( "async" ).withDescription(
+                "Report errors from a background thread, ignored with -t" ).create( "a" );
+
+        Option samplesOption = OptionBuilder.hasArg().withArgName( "count" ).withLongOpt( "samples" ).withDescription(
+                "Report the first <count> errors of each kind, then a summary, ignored with -t (default 0, all)" ).create(
+                "s" );
+
+        Option errorsOption = OptionBuilder.hasArg().withArgName( "count" ).withLongOpt( "errors" ).withDescription(
+                "Stop validating a column of a file after <count> errors, ids are still checked (default 0, off)" ).create(
+                "e" );
+
+        Option reportOption = OptionBuilder.hasArg().withArgName( "path" ).withLongOpt( "report" ).withDescription(
+                "Write rows/s, wall and CPU time, column timings and error counts of every file to a csv file" ).create(
+                "o" );
+
+        Option progressOption = OptionBuilder.hasArg().withArgName( "seconds" ).withLongOpt( "progress" ).withDescription(
+                "Log progress, throughput and ETA every <seconds> (default 0, off)" ).create( "p" );
+
+        Option incrementalOption = OptionBuilder.hasArg().withArgName( "path" ).withLongOpt( "incremental" ).withDescription(
+                "Skip files that passed and did not change since the last run with the state directory <path>" ).create(
+                "i" );
 
         Options options = new Options();
         options.addOption( dataDirOption );
         options.addOption( terminateOption );
         options.addOption( logToFileOption );
+        options.addOption( workersOption );
+        options.addOption( mmapOption );
+        options.addOption( chunkOption );
+        options.addOption( refsOption );
+        options.addOption( asyncOption );
+        options.addOption( samplesOption );
+        options.addOption( errorsOption );
+        options.addOption( reportOption );
+        options.addOption( progressOption );
+        options.addOption( incrementalOption );
 
         return options;
     }
@@ -176,6 +326,16 @@ public class SocialNetCheck implements Check
         params.put( DIR, cmd.getOptionValue( 'd' ) );
         params.put( TERMINATE, Boolean.toString( cmd.hasOption( 't' ) ) );
         params.put( LOG, Boolean.toString( cmd.hasOption( 'l' ) ) );
+        params.put( WORKERS, cmd.getOptionValue( 'w', "1" ) );
+        params.put( MMAP, Boolean.toString( cmd.hasOption( 'm' ) ) );
+        params.put( CHUNK, cmd.getOptionValue( 'c', "0" ) );
+        params.put( REFS, cmd.getOptionValue( 'r', "hash" ) );
+        params.put( ASYNC, Boolean.toString( cmd.hasOption( 'a' ) ) );
+        params.put( SAMPLES, cmd.getOptionValue( 's', "0" ) );
+        params.put( ERRORS, cmd.getOptionValue( 'e', "0" ) );
+        params.put( REPORT, cmd.getOptionValue( 'o' ) );
+        params.put( PROGRESS, cmd.getOptionValue( 'p', "0" ) );
+        params.put( INCREMENTAL, cmd.getOptionValue( 'i' ) );
 
         return params;
     }
@@ -201,9 +361,32 @@ public class SocialNetCheck implements Check
         writer.flush();
     }
 
+    public static enum NodeRefType
+    {
+        /**
+         * ColumnRef.StridedBitmapColumnRef, compact when ids are (close to) an arithmetic sequence. Only used for node
+         * ids checked to be consecutive, the others use HASH, as sparse ids would cost a page of bits each.
+         */
+        BITMAP,
+        /**
+         * ColumnRef.LongColumnRef, on-heap hash set
+         */
+        HASH,
+        /**
+         * ColumnRef.OffHeapLongColumnRef, hash set in direct memory, presized from the line count of the node file
+         */
+        OFF_HEAP,
+        /**
+         * ExternalLongColumnRef, sorted runs on disk, references are verified once each relationship file is read
+         */
+        EXTERNAL
+    }
+
     private final File dataDirectory;
     private final long idsShouldIncrementBy;
     private final long personCount;
+    private NodeRefType nodeRefType = NodeRefType.HASH;
+    private long maxFailuresPerColumn = 0;
 
     public SocialNetCheck( File dataDirectory, long idsShouldIncrementBy, long personCount )
     {
@@ -212,6 +395,30 @@ public class SocialNetCheck implements Check
         this.personCount = personCount;
     }
 
+    public SocialNetCheck withNodeRefType( NodeRefType nodeRefType )
+    {
+        this.nodeRefType = nodeRefType;
+        return this;
+    }
+
+    /**
+     * @see ExpectedColumns#withMaxFailuresPerColumn(long)
+     */
+    public SocialNetCheck withMaxFailuresPerColumn( long maxFailuresPerColumn )
+    {
+        this.maxFailuresPerColumn = maxFailuresPerColumn;
+        return this;
+    }
+
+    /**
+     * @return the parameters the checks are created with, see CheckRunner.withIncremental()
+     */
+    public String getConfiguration()
+    {
+        return String.format( "idsShouldIncrementBy=%s personCount=%s nodeRefType=%s maxFailuresPerColumn=%s",
+                idsShouldIncrementBy, personCount, nodeRefType, maxFailuresPerColumn );
+    }
+
     @Override
     public List<DirectoryCheck> getDirectoryChecks()
     {
@@ -230,76 +437,72 @@ public class SocialNetCheck implements Check
          * Nodes
          */
 
-        ColumnRef<Long> commentsRef = new ColumnRef.LongColumnRef( "comments" );
+        ColumnRef<Long> commentsRef = nodeRef( "comments", "comment.csv", true );
 
         // id|creationDate|locationIP|browserUsed|content
         fileChecks.add( new ExpectedColumns( inDir( "comment.csv" ),
                 isLong().withConsecutive( 0l, idsShouldIncrementBy ).saveTo( commentsRef ),
-                isDate( SocialNetConstants.dateTimeFormat() ), isString().withRegex(
-                        SocialNetConstants.locationIpRegex() ), isFiniteSet( SocialNetConstants.browsers() ),
-                isString() ) );
+                isDate( SocialNetConstants.dateTimeFormat() ), isIpAddress(),
+                isFiniteSet( SocialNetConstants.browsers() ), isString() ) );
 
-        ColumnRef<Long> forumsRef = new ColumnRef.LongColumnRef( "forums" );
+        ColumnRef<Long> forumsRef = nodeRef( "forums", "forum.csv", false );
 
         // id|title|creationDate
         // TODO id = isLong().withConsecutive( 0l, idsShouldIncrementBy )
         fileChecks.add( new ExpectedColumns( inDir( "forum.csv" ), isLong().saveTo( forumsRef ), isString(),
                 isDate( SocialNetConstants.dateTimeFormat() ) ) );
 
-        ColumnRef<Long> organisationsRef = new ColumnRef.LongColumnRef( "organisations" );
+        ColumnRef<Long> organisationsRef = nodeRef( "organisations", "organisation.csv", true );
 
         // id|type|name|url
-        // TODO url = isUrl()
         fileChecks.add( new ExpectedColumns( inDir( "organisation.csv" ), isLong().withConsecutive( 0l,
                 idsShouldIncrementBy ).saveTo( organisationsRef ),
-                isFiniteSet( SocialNetConstants.organisationTypes() ), isString(), isString() ) );
+                isFiniteSet( SocialNetConstants.organisationTypes() ), isString(), isUrl().withAccents( false ) ) );
 
-        ColumnRef<Long> personsRef = new ColumnRef.LongColumnRef( "persons" );
+        ColumnRef<Long> personsRef = nodeRef( "persons", personCount, false );
 
         // id|firstName|lastName|gender|birthday|creationDate|locationIP|browserUsed
         // TODO id = isLong().withConsecutive( 0l, idsShouldIncrementBy )
         fileChecks.add( new ExpectedColumns( inDir( "person.csv" ), isLong().saveTo( personsRef ), isString(),
                 isString(), isFiniteSet( SocialNetConstants.genders() ), isDate( SocialNetConstants.dateFormat() ),
-                isDate( SocialNetConstants.dateTimeFormat() ), isString().withRegex(
-                        SocialNetConstants.locationIpRegex() ), isFiniteSet( SocialNetConstants.browsers() ) ) );
+                isDate( SocialNetConstants.dateTimeFormat() ), isIpAddress(),
+                isFiniteSet( SocialNetConstants.browsers() ) ) );
 
         // start at line 1 instead of 0 - don't count headers
         int startLine = 1;
         fileChecks.add( new ExpectedLength( inDir( "person.csv" ), startLine, personCount ) );
 
-        ColumnRef<Long> placesRef = new ColumnRef.LongColumnRef( "places" );
+        ColumnRef<Long> placesRef = nodeRef( "places", "place.csv", false );
 
         // id|name|url|type
-        // TODO url = isUrl()
         // TODO id = isLong().withConsecutive( 0l, idsShouldIncrementBy )
         fileChecks.add( new ExpectedColumns( inDir( "place.csv" ), isLong().saveTo( placesRef ), isString(),
-                isString(), isFiniteSet( SocialNetConstants.placeTypes() ) ) );
+                isUrl().withAccents( false ), isFiniteSet( SocialNetConstants.placeTypes() ) ) );
 
-        ColumnRef<Long> postsRef = new ColumnRef.LongColumnRef( "posts" );
+        ColumnRef<Long> postsRef = nodeRef( "posts", "post.csv", true );
 
         // id|imageFile|creationDate|locationIP|browserUsed|language|content
         boolean imageIsOptional = true;
         fileChecks.add( new ExpectedColumns( inDir( "post.csv" ),
-                isLong().withConsecutive( 0l, idsShouldIncrementBy ).saveTo( postsRef ), isString().withRegex(
-                        SocialNetConstants.imageFileRegex( imageIsOptional ) ),
-                isDate( SocialNetConstants.dateTimeFormat() ), isString().withRegex(
-                        SocialNetConstants.locationIpRegex() ), isFiniteSet( SocialNetConstants.browsers() ),
-                isFiniteSet( SocialNetConstants.languages( true ) ), isString() ) );
+                isLong().withConsecutive( 0l, idsShouldIncrementBy ).saveTo( postsRef ),
+                isImageFile( SocialNetConstants.imageFileExtension(), imageIsOptional ),
+                isDate( SocialNetConstants.dateTimeFormat() ), isIpAddress(),
+                isFiniteSet( SocialNetConstants.browsers() ), isFiniteSet( SocialNetConstants.languages( true ) ),
+                isString() ) );
 
-        ColumnRef<Long> tagclassesRef = new ColumnRef.LongColumnRef( "tagclasses" );
+        ColumnRef<Long> tagclassesRef = nodeRef( "tagclasses", "tagclass.csv", false );
 
         // id|name|url
-        // TODO url = isUrl()
         // TODO id = isLong().withConsecutive( 0l, idsShouldIncrementBy )
         fileChecks.add( new ExpectedColumns( inDir( "tagclass.csv" ), isLong().saveTo( tagclassesRef ), isString(),
-                isString() ) );
+                isUrl().withAccents( false ) ) );
 
-        ColumnRef<Long> tagsRef = new ColumnRef.LongColumnRef( "tags" );
+        ColumnRef<Long> tagsRef = nodeRef( "tags", "tag.csv", false );
 
         // id|name|url
-        // TODO url = isUrl()
         // TODO id = isLong().withConsecutive( 0l, idsShouldIncrementBy )
-        fileChecks.add( new ExpectedColumns( inDir( "tag.csv" ), isLong().saveTo( tagsRef ), isString(), isString() ) );
+        fileChecks.add( new ExpectedColumns( inDir( "tag.csv" ), isLong().saveTo( tagsRef ), isString(),
+                isUrl().withAccents( false ) ) );
 
         /*
         * Relationships
@@ -349,7 +552,7 @@ public class SocialNetCheck implements Check
         fileChecks.add( new ExpectedColumns( inDir( "person_isLocatedIn_place.csv" ), isLong().checkIn( personsRef ),
                 isLong().checkIn( placesRef ) ) );
 
-        ColumnRef<Long> personPersonRef = new ColumnRef.MultiLongColumnRef( "personperson", 2, true );
+        ColumnRef<Long> personPersonRef = new ColumnRef.LongPairColumnRef( "personperson", true );
 
         // Person.id|Person.id
         fileChecks.add( new ExpectedColumns( inDir( "person_knows_person.csv" ),
@@ -400,9 +603,62 @@ public class SocialNetCheck implements Check
         fileChecks.add( new ExpectedColumns( inDir( "organisation_isLocatedIn_place.csv" ), isLong().checkIn(
                 organisationsRef ), isLong().checkIn( placesRef ) ) );
 
+        if ( maxFailuresPerColumn > 0 )
+        {
+            for ( FileCheck fileCheck : fileChecks )
+            {
+                if ( fileCheck instanceof ExpectedColumns )
+                {
+                    ( (ExpectedColumns) fileCheck ).withMaxFailuresPerColumn( maxFailuresPerColumn );
+                }
+            }
+        }
+
         return fileChecks;
     }
 
+    /**
+     * @param consecutiveIds true if the ids saved to the ColumnRef are checked with withConsecutive()
+     */
+    private ColumnRef<Long> nodeRef( String name, String nodeFilename, boolean consecutiveIds )
+    {
+        long expectedCount = 0;
+        File nodeFile = new File( inDir( nodeFilename ) );
+        // missing files are reported by the directory and file checks
+        if ( NodeRefType.OFF_HEAP == nodeRefType && nodeFile.exists() )
+        {
+            try
+            {
+                // minus header
+                expectedCount = MappedCsvFileReader.countLines( nodeFile, 0, nodeFile.length() ) - 1;
+            }
+            catch ( IOException e )
+            {
+                String errMsg = String.format( "Error counting lines of file [%s]", nodeFile.getAbsolutePath() );
+                logger.error( errMsg, e );
+                throw new RuntimeException( errMsg, e );
+            }
+        }
+        return nodeRef( name, expectedCount, consecutiveIds );
+    }
+
+    private ColumnRef<Long> nodeRef( String name, long expectedCount, boolean consecutiveIds )
+    {
+        switch ( nodeRefType )
+        {
+        case BITMAP:
+            if ( consecutiveIds ) return new ColumnRef.StridedBitmapColumnRef( name );
+            return new ColumnRef.LongColumnRef( name );
+        case OFF_HEAP:
+            return new ColumnRef.OffHeapLongColumnRef( name, Math.max( expectedCount,
+                    ColumnRef.OffHeapLongColumnRef.DEFAULT_EXPECTED_COUNT ) );
+        case EXTERNAL:
+            return new ExternalLongColumnRef( name );
+        default:
+            return new ColumnRef.LongColumnRef( name );
+        }
+    }
+
     private String inDir( String filename )
     {
         return dataDirectory.getAbsolutePath() + "/" + filename;
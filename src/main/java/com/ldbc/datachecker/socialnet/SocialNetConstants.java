@@ -68,6 +68,11 @@ public class SocialNetConstants
         return "^\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}$";
     }
 
+    public static String imageFileExtension()
+    {
+        return ".jpg";
+    }
+
     public static String imageFileRegex( boolean optional )
     {
         String imagePattern = ".*\\.jpg$";
@@ -0,0 +1,856 @@
+package com.ldbc.datachecker.socialnet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.log4j.Logger;
+
+import com.ldbc.datachecker.CsvLine;
+
+/**
+ * Writes a dataset laid out like ldbc_socialnet_dbgen output, i.e. params.ini and outputDir/ with all files of
+ * SocialNetConstants.allCsvFilenames(), which passes SocialNetCheck. File sizes scale with the person count.
+ *
+ * Violations can be injected at a rate per value (per line for EXTRA_COLUMN), each fails exactly one check, so the
+ * failures of checking the dataset can be compared with the counts generate() returns.
+ *
+ * Every file is written from its own Random, seeded from the seed and the file name, so a seed, person count and
+ * violation configuration always give the same files, whatever the number of workers.
+ */
+public class SocialNetGenerator
+{
+    private static final Logger logger = Logger.getLogger( SocialNetGenerator.class );
+
+    private static final String DIR = "dir";
+    private static final String PERSONS = "persons";
+    private static final String RATE = "rate";
+    private static final String VIOLATIONS = "violations";
+    private static final String SEED = "seed";
+    private static final String WORKERS = "workers";
+
+    private static final long ID_STRIDE = 10;
+    private static final int POOL_SIZE = 4096;
+    private static final long ORGANISATION_COUNT = 1000;
+    private static final long PLACE_COUNT = 1000;
+    private static final long TAG_CLASS_COUNT = 100;
+    private static final long TAG_COUNT = 1000;
+    private static final long FORUMS_PER_PERSON = 1;
+    private static final long POSTS_PER_PERSON = 5;
+    private static final long COMMENTS_PER_PERSON = 10;
+    private static final long MEMBERS_PER_FORUM = 5;
+    private static final long LIKES_PER_PERSON = 10;
+    private static final long MAX_KNOWS_PER_PERSON = 10;
+    // 2010-01-01 to 2013-01-01
+    private static final long MIN_CREATION_DATE = 1262304000000l;
+    private static final long CREATION_DATE_RANGE = 94694400000l;
+    // 1980-01-01 to 1995-01-01
+    private static final long MIN_BIRTHDAY = 315532800000l;
+    private static final long BIRTHDAY_RANGE = 473385600000l;
+    private static final String[] WORDS = new String[] { "Berlin", "São_Paulo", "Zürich", "Kraków", "Lyon",
+            "Barcelona", "Malmö", "New_York", "Córdoba", "Amsterdam", "Reykjavík", "Dublin", "Gdańsk", "Bogotá",
+            "Montréal", "Mumbai" };
+    private static final String[] NAMES = new String[] { "Alex", "Ana", "Chen", "Jürgen", "Maria", "Mahinda", "Olga",
+            "Peter", "Rahul", "Sofía", "Yang", "Zoë" };
+    private static final String[] DOMAINS = new String[] { "gmail.com", "yahoo.com", "hotmail.com", "gmx.com" };
+
+    public static enum Violation
+    {
+        /**
+         * Relationship references an id that is not in its node file
+         */
+        MISSING_REFERENCE,
+        INVALID_DATE,
+        INVALID_IP_ADDRESS,
+        INVALID_BROWSER,
+        INVALID_URL,
+        INVALID_EMAIL_ADDRESS,
+        /**
+         * Line has one column more than expected
+         */
+        EXTRA_COLUMN
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        Map<String, String> params = null;
+        Options options = buildOptions();
+        try
+        {
+            params = parseArgs( args, options );
+        }
+        catch ( ParseException e )
+        {
+            logger.error( e.getMessage() );
+            System.out.println();
+            SocialNetCheck.printHelp( options, 110, "", "", 3, 5, true, System.out );
+            System.out.println();
+            return;
+        }
+
+        Set<Violation> violations = EnumSet.noneOf( Violation.class );
+        try
+        {
+            for ( String violation : params.get( VIOLATIONS ).split( "," ) )
+            {
+                violations.add( Violation.valueOf( violation.trim().toUpperCase() ) );
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            logger.error( String.format( "Unknown violation in [%s], expected some of %s", params.get( VIOLATIONS ),
+                    Arrays.toString( Violation.values() ) ) );
+            return;
+        }
+
+        SocialNetGenerator generator = new SocialNetGenerator( new File( params.get( DIR ) ),
+                Long.parseLong( params.get( PERSONS ) ) );
+        generator.withSeed( Long.parseLong( params.get( SEED ) ) );
+        generator.withViolations( Double.parseDouble( params.get( RATE ) ), violations );
+        generator.withWorkers( Integer.parseInt( params.get( WORKERS ) ) );
+        generator.generate();
+        logger.info( "Generation complete" );
+    }
+
+    private static Options buildOptions()
+    {
+        Option dirOption = OptionBuilder.isRequired().hasArg().withArgName( "path" ).withLongOpt( "dir" ).withDescription(
+                "Directory to write params.ini and outputDir/ to" ).create( "d" );
+        Option personsOption = OptionBuilder.hasArg().withArgName( "count" ).withLongOpt( "persons" ).withDescription(
+                "Number of persons, the size of most other files is a multiple of it (default 1000)" ).create( "p" );
+        Option rateOption = OptionBuilder.hasArg().withArgName( "rate" ).withLongOpt( "rate" ).withDescription(
+                "Fraction of values with an injected violation, e.g. 0.001 (default 0, valid dataset)" ).create( "r" );
+        String violationsDescription = "Comma separated violations to inject, of "
+                                       + Arrays.toString( Violation.values() ) + " (default all)";
+        Option violationsOption = OptionBuilder.hasArg().withArgName( "names" ).withLongOpt( "violations" ).withDescription(
+                violationsDescription ).create( "v" );
+        Option seedOption = OptionBuilder.hasArg().withArgName( "seed" ).withLongOpt( "seed" ).withDescription(
+                "Random seed (default 0)" ).create( "s" );
+        Option workersOption = OptionBuilder.hasArg().withArgName( "count" ).withLongOpt( "workers" ).withDescription(
+                "Number of files to write concurrently (default 1)" ).create( "w" );
+
+        Options options = new Options();
+        options.addOption( dirOption );
+        options.addOption( personsOption );
+        options.addOption( rateOption );
+        options.addOption( violationsOption );
+        options.addOption( seedOption );
+        options.addOption( workersOption );
+
+        return options;
+    }
+
+    private static Map<String, String> parseArgs( String[] args, Options options ) throws ParseException
+    {
+        Map<String, String> params = new HashMap<String, String>();
+
+        CommandLineParser parser = new BasicParser();
+
+        CommandLine cmd = parser.parse( options, args );
+
+        StringBuilder allViolations = new StringBuilder();
+        for ( Violation violation : Violation.values() )
+        {
+            if ( allViolations.length() > 0 ) allViolations.append( "," );
+            allViolations.append( violation.name() );
+        }
+
+        params.put( DIR, cmd.getOptionValue( 'd' ) );
+        params.put( PERSONS, cmd.getOptionValue( 'p', "1000" ) );
+        params.put( RATE, cmd.getOptionValue( 'r', "0" ) );
+        params.put( VIOLATIONS, cmd.getOptionValue( 'v', allViolations.toString() ) );
+        params.put( SEED, cmd.getOptionValue( 's', "0" ) );
+        params.put( WORKERS, cmd.getOptionValue( 'w', "1" ) );
+
+        return params;
+    }
+
+    private final File dataGenDirectory;
+    private final File outputDirectory;
+    private final long personCount;
+    private final long forumCount;
+    private final long postCount;
+    private final long commentCount;
+    private final long knowsPerPerson;
+    private long seed = 0;
+    private double violationRate = 0;
+    private Set<Violation> violations = EnumSet.noneOf( Violation.class );
+    private int workerCount = 1;
+
+    private byte[][] creationDates;
+    private byte[][] birthdays;
+    private byte[][] ipAddresses;
+    private byte[][] browsers;
+    private byte[][] languages;
+    private byte[][] names;
+    private byte[][] urls;
+    private byte[][] contents;
+
+    /**
+     * @param dataGenDirectory directory to write params.ini and outputDir/ to, i.e. what SocialNetCheck -d expects
+     */
+    public SocialNetGenerator( File dataGenDirectory, long personCount )
+    {
+        this.dataGenDirectory = dataGenDirectory;
+        this.outputDirectory = new File( dataGenDirectory, "outputDir" );
+        this.personCount = personCount;
+        this.forumCount = personCount * FORUMS_PER_PERSON;
+        this.postCount = personCount * POSTS_PER_PERSON;
+        this.commentCount = personCount * COMMENTS_PER_PERSON;
+        // pairs (i, i + 1..k) are unique, also when read in either order, while k <= (n - 1) / 2
+        this.knowsPerPerson = Math.min( MAX_KNOWS_PER_PERSON, ( personCount - 1 ) / 2 );
+    }
+
+    public SocialNetGenerator withSeed( long seed )
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param violationRate probability of a value (of a line, for EXTRA_COLUMN) to be invalid, for each violation
+     */
+    public SocialNetGenerator withViolations( double violationRate, Set<Violation> violations )
+    {
+        this.violationRate = violationRate;
+        this.violations = EnumSet.copyOf( violations );
+        return this;
+    }
+
+    public SocialNetGenerator withWorkers( int workerCount )
+    {
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    /**
+     * @return number of injected violations, by violation
+     */
+    public Map<Violation, Long> generate() throws IOException
+    {
+        if ( false == outputDirectory.isDirectory() && false == outputDirectory.mkdirs() )
+        {
+            throw new IOException( String.format( "Could not create directory %s", outputDirectory.getPath() ) );
+        }
+        writeParams();
+        createPools();
+
+        List<CsvFile> csvFiles = csvFiles();
+        ExecutorService executor = Executors.newFixedThreadPool( workerCount );
+        Map<Violation, Long> injectedCounts = new EnumMap<Violation, Long>( Violation.class );
+        for ( Violation violation : Violation.values() )
+        {
+            injectedCounts.put( violation, 0l );
+        }
+        try
+        {
+            List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+            for ( CsvFile csvFile : csvFiles )
+            {
+                futures.add( executor.submit( csvFile ) );
+            }
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                long[] fileCounts = futures.get( i ).get();
+                for ( Violation violation : Violation.values() )
+                {
+                    long count = fileCounts[violation.ordinal()];
+                    injectedCounts.put( violation, injectedCounts.get( violation ) + count );
+                    if ( count > 0 )
+                    {
+                        logger.info( String.format( "Injected %s %s into %s", count, violation,
+                                csvFiles.get( i ).filename ) );
+                    }
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            String errMsg = "Interrupted while generating files";
+            logger.error( errMsg, e );
+            throw new RuntimeException( errMsg, e );
+        }
+        catch ( ExecutionException e )
+        {
+            String errMsg = "Error generating files";
+            logger.error( errMsg, e.getCause() );
+            throw new RuntimeException( errMsg, e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return injectedCounts;
+    }
+
+    private void writeParams() throws IOException
+    {
+        OutputStream out = new FileOutputStream( new File( dataGenDirectory, "params.ini" ) );
+        try
+        {
+            out.write( String.format( "numtotalUser:%s\n", personCount ).getBytes( CsvLine.CHARSET ) );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /*
+     * Values are picked from pools of encoded values, formatting dates for every line would dominate generation
+     */
+    private void createPools()
+    {
+        Random random = new Random( seed );
+        SimpleDateFormat dateTimeFormat = new SimpleDateFormat( SocialNetConstants.dateTimeFormat() );
+        dateTimeFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( SocialNetConstants.dateFormat() );
+        dateFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        creationDates = new byte[POOL_SIZE][];
+        birthdays = new byte[POOL_SIZE][];
+        ipAddresses = new byte[POOL_SIZE][];
+        urls = new byte[POOL_SIZE][];
+        contents = new byte[POOL_SIZE][];
+        for ( int i = 0; i < POOL_SIZE; i++ )
+        {
+            long creationDate = MIN_CREATION_DATE + (long) ( random.nextDouble() * CREATION_DATE_RANGE );
+            creationDates[i] = encode( dateTimeFormat.format( new Date( creationDate ) ) );
+            long birthday = MIN_BIRTHDAY + (long) ( random.nextDouble() * BIRTHDAY_RANGE );
+            birthdays[i] = encode( dateFormat.format( new Date( birthday ) ) );
+            ipAddresses[i] = encode( String.format( "%s.%s.%s.%s", random.nextInt( 256 ), random.nextInt( 256 ),
+                    random.nextInt( 256 ), random.nextInt( 256 ) ) );
+            urls[i] = encode( "http://dbpedia.org/resource/" + WORDS[random.nextInt( WORDS.length )] + "_" + i );
+            StringBuilder content = new StringBuilder( "About" );
+            for ( int j = random.nextInt( 20 ); j >= 0; j-- )
+            {
+                content.append( ' ' ).append( WORDS[random.nextInt( WORDS.length )] );
+            }
+            contents[i] = encode( content.toString() );
+        }
+        browsers = encode( SocialNetConstants.browsers() );
+        languages = encode( SocialNetConstants.languages() );
+        names = encode( NAMES );
+    }
+
+    private static byte[] encode( String value )
+    {
+        return value.getBytes( CsvLine.CHARSET );
+    }
+
+    private static byte[][] encode( String[] values )
+    {
+        byte[][] encodedValues = new byte[values.length][];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            encodedValues[i] = encode( values[i] );
+        }
+        return encodedValues;
+    }
+
+    private List<CsvFile> csvFiles()
+    {
+        List<CsvFile> csvFiles = new ArrayList<CsvFile>();
+
+        /*
+         * Nodes
+         */
+
+        csvFiles.add( new CsvFile( "comment.csv", "id|creationDate|locationIP|browserUsed|content", commentCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                creationDate();
+                ipAddress();
+                browser();
+                pick( contents );
+            }
+        } );
+
+        csvFiles.add( new CsvFile( "forum.csv", "id|title|creationDate", forumCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( contents );
+                creationDate();
+            }
+        } );
+
+        final byte[][] organisationTypes = encode( SocialNetConstants.organisationTypes() );
+        csvFiles.add( new CsvFile( "organisation.csv", "id|type|name|url", ORGANISATION_COUNT )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( organisationTypes );
+                pick( names );
+                url();
+            }
+        } );
+
+        final byte[][] genders = encode( SocialNetConstants.genders() );
+        csvFiles.add( new CsvFile( "person.csv",
+                "id|firstName|lastName|gender|birthday|creationDate|locationIP|browserUsed", personCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( names );
+                pick( names );
+                pick( genders );
+                birthday();
+                creationDate();
+                ipAddress();
+                browser();
+            }
+        } );
+
+        final byte[][] placeTypes = encode( SocialNetConstants.placeTypes() );
+        csvFiles.add( new CsvFile( "place.csv", "id|name|url|type", PLACE_COUNT )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( names );
+                url();
+                pick( placeTypes );
+            }
+        } );
+
+        csvFiles.add( new CsvFile( "post.csv", "id|imageFile|creationDate|locationIP|browserUsed|language|content",
+                postCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                // image posts have no content, as in ldbc_socialnet_dbgen
+                boolean isImage = ( 0 == random.nextInt( 10 ) );
+                text( isImage ? "photo" + i + SocialNetConstants.imageFileExtension() : "" );
+                creationDate();
+                ipAddress();
+                browser();
+                if ( isImage ) text( "" );
+                else pick( languages );
+                if ( isImage ) text( "" );
+                else pick( contents );
+            }
+        } );
+
+        csvFiles.add( new CsvFile( "tagclass.csv", "id|name|url", TAG_CLASS_COUNT )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( names );
+                url();
+            }
+        } );
+
+        csvFiles.add( new CsvFile( "tag.csv", "id|name|url", TAG_COUNT )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( names );
+                url();
+            }
+        } );
+
+        /*
+         * Relationships, lines of those that have one line per node are in node order
+         */
+
+        csvFiles.add( new NodeToNode( "comment_hasCreator_person.csv", "Comment.id|Person.id", commentCount,
+                personCount ) );
+        csvFiles.add( new NodeToNode( "comment_isLocatedIn_place.csv", "Comment.id|Place.id", commentCount,
+                PLACE_COUNT ) );
+        // the first half of the comments reply to comments, the others to posts
+        final long commentReplyCount = commentCount / 2;
+        csvFiles.add( new NodeToNode( "comment_replyOf_comment.csv", "Comment.id|Comment.id", commentReplyCount,
+                commentCount ) );
+        csvFiles.add( new CsvFile( "comment_replyOf_post.csv", "Comment.id|Post.id", commentCount - commentReplyCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( commentReplyCount + i );
+                reference( postCount );
+            }
+        } );
+        csvFiles.add( new CsvFile( "forum_containerOf_post.csv", "Forum.id|Post.id", postCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                reference( forumCount );
+                id( i );
+            }
+        } );
+        long memberCount = forumCount * MEMBERS_PER_FORUM;
+        csvFiles.add( new CsvFile( "forum_hasMember_person.csv", "Forum.id|Person.id|joinDate", memberCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i / MEMBERS_PER_FORUM );
+                reference( personCount );
+                creationDate();
+            }
+        } );
+        csvFiles.add( new NodeToNode( "forum_hasModerator_person.csv", "Forum.id|Person.id", forumCount,
+                personCount ) );
+        csvFiles.add( new NodeToNode( "forum_hasTag_tag.csv", "Forum.id|Tag.id", forumCount, TAG_COUNT ) );
+        csvFiles.add( new CsvFile( "person_email_emailaddress.csv", "Person.id|email", personCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                emailAddress( i );
+            }
+        } );
+        csvFiles.add( new NodeToNode( "person_hasInterest_tag.csv", "Person.id|Tag.id", personCount, TAG_COUNT ) );
+        csvFiles.add( new NodeToNode( "person_isLocatedIn_place.csv", "Person.id|Place.id", personCount,
+                PLACE_COUNT ) );
+        csvFiles.add( new CsvFile( "person_knows_person.csv", "Person.id|Person.id", personCount * knowsPerPerson )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                long person = i / knowsPerPerson;
+                id( person );
+                long friend = ( person + 1 + i % knowsPerPerson ) % personCount;
+                if ( inject( Violation.MISSING_REFERENCE ) ) missingId( friend );
+                else id( friend );
+            }
+        } );
+        long likeCount = personCount * LIKES_PER_PERSON;
+        csvFiles.add( new CsvFile( "person_likes_post.csv", "Person.id|Post.id|creationDate", likeCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i / LIKES_PER_PERSON );
+                reference( postCount );
+                creationDate();
+            }
+        } );
+        csvFiles.add( new CsvFile( "person_speaks_language.csv", "Person.id|language", personCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                pick( languages );
+            }
+        } );
+        csvFiles.add( new CsvFile( "person_studyAt_organisation.csv", "Person.id|Organisation.id|classYear",
+                personCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                reference( ORGANISATION_COUNT );
+                number( 2000 + random.nextInt( 13 ) );
+            }
+        } );
+        csvFiles.add( new CsvFile( "person_workAt_organisation.csv", "Person.id|Organisation.id|workFrom", personCount )
+        {
+            @Override
+            void writeLine( long i )
+            {
+                id( i );
+                reference( ORGANISATION_COUNT );
+                number( 2000 + random.nextInt( 13 ) );
+            }
+        } );
+        csvFiles.add( new NodeToNode( "place_isPartOf_place.csv", "Place.id|Place.id", PLACE_COUNT, PLACE_COUNT ) );
+        csvFiles.add( new NodeToNode( "post_hasCreator_person.csv", "Post.id|Person.id", postCount, personCount ) );
+        csvFiles.add( new NodeToNode( "post_hasTag_tag.csv", "Post.id|Tag.id", postCount, TAG_COUNT ) );
+        csvFiles.add( new NodeToNode( "post_isLocatedIn_place.csv", "Post.id|Place.id", postCount, PLACE_COUNT ) );
+        csvFiles.add( new NodeToNode( "tagclass_isSubclassOf_tagclass.csv", "TagClass.id|TagClass.id",
+                TAG_CLASS_COUNT, TAG_CLASS_COUNT ) );
+        csvFiles.add( new NodeToNode( "tag_hasType_tagclass.csv", "Tag.id|TagClass.id", TAG_COUNT, TAG_CLASS_COUNT ) );
+        csvFiles.add( new NodeToNode( "organisation_isLocatedIn_place.csv", "Organisation.id|Place.id",
+                ORGANISATION_COUNT, PLACE_COUNT ) );
+
+        return csvFiles;
+    }
+
+    /*
+     * Writes one file, values are appended to the current line in column order
+     */
+    private abstract class CsvFile implements Callable<long[]>
+    {
+        private final String filename;
+        private final String header;
+        private final long lineCount;
+        private final long[] injectedCounts = new long[Violation.values().length];
+        protected Random random;
+        private LineWriter line;
+
+        CsvFile( String filename, String header, long lineCount )
+        {
+            this.filename = filename;
+            this.header = header;
+            this.lineCount = lineCount;
+        }
+
+        @Override
+        public long[] call() throws IOException
+        {
+            random = new Random( seed * 31 + filename.hashCode() );
+            OutputStream out = new FileOutputStream( new File( outputDirectory, filename ) );
+            try
+            {
+                line = new LineWriter( out );
+                line.value( encode( header ) ).endLine();
+                for ( long i = 0; i < lineCount; i++ )
+                {
+                    writeLine( i );
+                    if ( inject( Violation.EXTRA_COLUMN ) ) text( "extra" );
+                    line.endLine();
+                }
+                line.flush();
+            }
+            finally
+            {
+                out.close();
+            }
+            return injectedCounts;
+        }
+
+        /**
+         * @param i index of the line, excluding the header
+         */
+        abstract void writeLine( long i );
+
+        final boolean inject( Violation violation )
+        {
+            if ( false == violations.contains( violation ) || random.nextDouble() >= violationRate ) return false;
+            injectedCounts[violation.ordinal()]++;
+            return true;
+        }
+
+        final void id( long index )
+        {
+            line.value( index * ID_STRIDE );
+        }
+
+        final void missingId( long index )
+        {
+            line.value( index * ID_STRIDE + ID_STRIDE / 2 );
+        }
+
+        /**
+         * Id of a random one of count nodes
+         */
+        final void reference( long count )
+        {
+            long index = ( count <= Integer.MAX_VALUE ) ? random.nextInt( (int) count )
+                    : (long) ( random.nextDouble() * count );
+            if ( inject( Violation.MISSING_REFERENCE ) ) missingId( index );
+            else id( index );
+        }
+
+        final void number( long value )
+        {
+            line.value( value );
+        }
+
+        final void text( String value )
+        {
+            line.value( encode( value ) );
+        }
+
+        final void pick( byte[][] pool )
+        {
+            line.value( pool[random.nextInt( pool.length )] );
+        }
+
+        final void creationDate()
+        {
+            if ( inject( Violation.INVALID_DATE ) ) text( "2010-03-11 11:36:58" );
+            else pick( creationDates );
+        }
+
+        final void birthday()
+        {
+            if ( inject( Violation.INVALID_DATE ) ) text( "11.03.1990" );
+            else pick( birthdays );
+        }
+
+        final void ipAddress()
+        {
+            if ( inject( Violation.INVALID_IP_ADDRESS ) ) text( "10.0.1" );
+            else pick( ipAddresses );
+        }
+
+        final void browser()
+        {
+            if ( inject( Violation.INVALID_BROWSER ) ) text( "Netscape" );
+            else pick( browsers );
+        }
+
+        final void url()
+        {
+            if ( inject( Violation.INVALID_URL ) ) text( "http://dbpedia.org/resource/Not a URL" );
+            else pick( urls );
+        }
+
+        final void emailAddress( long personIndex )
+        {
+            String domain = DOMAINS[random.nextInt( DOMAINS.length )];
+            String separator = inject( Violation.INVALID_EMAIL_ADDRESS ) ? "." : "@";
+            text( "Person" + personIndex * ID_STRIDE + separator + domain );
+        }
+    }
+
+    /*
+     * One line per node of a file, referencing a random node of another
+     */
+    private class NodeToNode extends CsvFile
+    {
+        private final long toCount;
+
+        NodeToNode( String filename, String header, long fromCount, long toCount )
+        {
+            super( filename, header, fromCount );
+            this.toCount = toCount;
+        }
+
+        @Override
+        void writeLine( long i )
+        {
+            id( i );
+            reference( toCount );
+        }
+    }
+
+    /*
+     * Buffers encoded lines, numbers are formatted without creating objects
+     */
+    static final class LineWriter
+    {
+        private static final int BUFFER_SIZE = 256 * 1024;
+        private static final byte SEPARATOR = '|';
+        private static final byte NEW_LINE = '\n';
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] digits = new byte[20];
+        private int position = 0;
+        private boolean firstValue = true;
+
+        LineWriter( OutputStream out )
+        {
+            this.out = out;
+        }
+
+        LineWriter value( byte[] value )
+        {
+            separate( value.length );
+            if ( value.length > buffer.length )
+            {
+                flush();
+                write( value, value.length );
+                return this;
+            }
+            System.arraycopy( value, 0, buffer, position, value.length );
+            position += value.length;
+            return this;
+        }
+
+        LineWriter value( long value )
+        {
+            int digitCount = 0;
+            long remaining = Math.abs( value );
+            do
+            {
+                digits[digits.length - 1 - digitCount++] = (byte) ( '0' + remaining % 10 );
+                remaining /= 10;
+            }
+            while ( remaining > 0 );
+            if ( value < 0 ) digits[digits.length - 1 - digitCount++] = '-';
+            separate( digitCount );
+            System.arraycopy( digits, digits.length - digitCount, buffer, position, digitCount );
+            position += digitCount;
+            return this;
+        }
+
+        void endLine()
+        {
+            ensureCapacity( 1 );
+            buffer[position++] = NEW_LINE;
+            firstValue = true;
+        }
+
+        void flush()
+        {
+            write( buffer, position );
+            position = 0;
+        }
+
+        private void separate( int valueLength )
+        {
+            ensureCapacity( 1 + Math.min( valueLength, buffer.length - 1 ) );
+            if ( false == firstValue ) buffer[position++] = SEPARATOR;
+            firstValue = false;
+        }
+
+        private void ensureCapacity( int length )
+        {
+            if ( position + length > buffer.length ) flush();
+        }
+
+        private void write( byte[] bytes, int length )
+        {
+            try
+            {
+                out.write( bytes, 0, length );
+            }
+            catch ( IOException e )
+            {
+                String errMsg = "Error writing generated file";
+                logger.error( errMsg, e );
+                throw new RuntimeException( errMsg, e );
+            }
+        }
+    }
+}
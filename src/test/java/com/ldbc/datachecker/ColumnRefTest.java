@@ -0,0 +1,539 @@
+package com.ldbc.datachecker;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ldbc.datachecker.ColumnRef.AbstractLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.EytzingerLongSet;
+import com.ldbc.datachecker.ColumnRef.LongColumnRef;
+import com.ldbc.datachecker.ColumnRef.LongPairColumnRef;
+import com.ldbc.datachecker.ColumnRef.OffHeapLongColumnRef;
+import com.ldbc.datachecker.ColumnRef.StridedBitmapColumnRef;
+import com.ldbc.datachecker.ExternalLongColumnRef.MissingValueHandler;
+import com.ldbc.datachecker.ExternalLongColumnRef.Probes;
+
+public class ColumnRefTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void stridedBitmapShouldContainStridedValues()
+    {
+        // Given
+        AbstractLongColumnRef columnRef = new StridedBitmapColumnRef( "ids", 16 );
+
+        // When
+        for ( long id = 0; id < 200000; id += 10 )
+        {
+            assertThat( columnRef.add( id ), is( true ) );
+        }
+
+        // Then
+        assertThat( columnRef.add( 0l ), is( false ) );
+        assertThat( columnRef.add( 199990l ), is( false ) );
+        assertThat( columnRef.contains( 0l ), is( true ) );
+        assertThat( columnRef.contains( 100000l ), is( true ) );
+        assertThat( columnRef.contains( 199990l ), is( true ) );
+        assertThat( columnRef.contains( 5l ), is( false ) );
+        assertThat( columnRef.contains( -10l ), is( false ) );
+        assertThat( columnRef.contains( 200000l ), is( false ) );
+        assertThat( columnRef.contains( Long.MAX_VALUE ), is( false ) );
+    }
+
+    @Test
+    public void stridedBitmapShouldContainValuesThatDoNotFitStride()
+    {
+        // Given
+        AbstractLongColumnRef columnRef = new StridedBitmapColumnRef( "ids", 100, 10 );
+
+        // When
+        columnRef.add( 100l );
+        columnRef.add( 110l );
+        columnRef.add( 7l );
+        columnRef.add( 115l );
+        columnRef.add( Long.MIN_VALUE );
+        columnRef.add( Long.MAX_VALUE );
+
+        // Then
+        assertThat( columnRef.add( 115l ), is( false ) );
+        assertThat( columnRef.contains( 100l ), is( true ) );
+        assertThat( columnRef.contains( 110l ), is( true ) );
+        assertThat( columnRef.contains( 7l ), is( true ) );
+        assertThat( columnRef.contains( 115l ), is( true ) );
+        assertThat( columnRef.contains( Long.MIN_VALUE ), is( true ) );
+        assertThat( columnRef.contains( Long.MAX_VALUE ), is( true ) );
+        assertThat( columnRef.contains( 120l ), is( false ) );
+        assertThat( columnRef.contains( 8l ), is( false ) );
+    }
+
+    @Test
+    public void stridedBitmapShouldBehaveLikeHashSet()
+    {
+        // Given
+        Random random = new Random( 42 );
+        TLongSet expected = new TLongHashSet();
+        AbstractLongColumnRef columnRef = new StridedBitmapColumnRef( "ids" );
+
+        // When
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = ( 0 == i % 100 ) ? random.nextLong() : random.nextInt( 500000 ) * 3l + 17;
+            assertThat( columnRef.add( value ), is( expected.add( value ) ) );
+        }
+
+        // Then
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = random.nextInt( 1600000 );
+            assertThat( columnRef.contains( value ), is( expected.contains( value ) ) );
+        }
+        for ( long value : expected.toArray() )
+        {
+            assertThat( columnRef.contains( value ), is( true ) );
+        }
+    }
+
+    @Test
+    public void offHeapShouldBehaveLikeHashSet()
+    {
+        // Given
+        Random random = new Random( 42 );
+        TLongSet expected = new TLongHashSet();
+        // too small, must resize
+        OffHeapLongColumnRef columnRef = new OffHeapLongColumnRef( "ids", 10 );
+
+        // When
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = ( 0 == i % 100 ) ? random.nextLong() : random.nextInt( 150000 );
+            assertThat( columnRef.add( value ), is( expected.add( value ) ) );
+        }
+
+        // Then
+        assertThat( columnRef.size(), is( (long) expected.size() ) );
+        assertThat( columnRef.contains( 0l ), is( expected.contains( 0l ) ) );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = random.nextInt( 300000 );
+            assertThat( columnRef.contains( value ), is( expected.contains( value ) ) );
+        }
+        for ( long value : expected.toArray() )
+        {
+            assertThat( columnRef.contains( value ), is( true ) );
+        }
+    }
+
+    @Test
+    public void offHeapShouldStoreZero()
+    {
+        // Given
+        OffHeapLongColumnRef columnRef = new OffHeapLongColumnRef( "ids" );
+
+        // When
+        boolean firstAdd = columnRef.add( 0l );
+        boolean secondAdd = columnRef.add( 0l );
+
+        // Then
+        assertThat( firstAdd, is( true ) );
+        assertThat( secondAdd, is( false ) );
+        assertThat( columnRef.contains( 0l ), is( true ) );
+        assertThat( columnRef.contains( 1l ), is( false ) );
+        assertThat( columnRef.size(), is( 1l ) );
+    }
+
+    @Test
+    public void externalShouldReportMissingValuesWithLineNumbers() throws FileCheckException
+    {
+        // Given
+        File spillDirectory = new File( System.getProperty( "java.io.tmpdir" ) );
+        // small runs, so values are spilled and merged
+        ExternalLongColumnRef columnRef = new ExternalLongColumnRef( "ids", spillDirectory, 7 );
+        for ( long id = 100; id >= 0; id -= 2 )
+        {
+            columnRef.add( id );
+            columnRef.add( id );
+        }
+        Probes probes = columnRef.newProbes();
+        Probes chunkProbes = columnRef.newProbes();
+
+        // When
+        probes.add( 50l, 1l );
+        probes.add( 51l, 2l );
+        probes.add( -1l, 3l );
+        for ( long lineNumber = 4; lineNumber < 40; lineNumber++ )
+        {
+            probes.add( lineNumber * 2, lineNumber );
+        }
+        chunkProbes.add( 101l, 41l );
+        chunkProbes.add( 100l, 42l );
+        chunkProbes.add( 51l, 43l );
+        probes.addAll( chunkProbes );
+        final List<String> missing = new ArrayList<String>();
+        probes.verify( new MissingValueHandler()
+        {
+            @Override
+            public void handleMissingValue( long value, long lineNumber )
+            {
+                missing.add( value + "@" + lineNumber );
+            }
+        } );
+
+        // Then
+        List<String> expected = new ArrayList<String>();
+        expected.add( "-1@3" );
+        expected.add( "51@2" );
+        expected.add( "51@43" );
+        expected.add( "101@41" );
+        assertThat( missing, is( expected ) );
+    }
+
+    @Test
+    public void externalShouldMergeMoreRunsThanMaxFanIn() throws Exception
+    {
+        // Given
+        File spillDirectory = File.createTempFile( "datachecker", "" );
+        spillDirectory.delete();
+        spillDirectory.mkdirs();
+        // runs of 4 values, so values and probes are merged in intermediate passes
+        ExternalLongColumnRef columnRef = new ExternalLongColumnRef( "ids", spillDirectory, 4 );
+        int count = 4 * ExternalLongColumnRef.MAX_FAN_IN * 3;
+        Random random = new Random( 42 );
+        TLongSet values = new TLongHashSet();
+        for ( int i = 0; i < count; i++ )
+        {
+            long value = random.nextInt( 2 * count );
+            columnRef.add( value );
+            values.add( value );
+        }
+        Probes probes = columnRef.newProbes();
+        TLongSet expected = new TLongHashSet();
+        for ( int i = 0; i < count; i++ )
+        {
+            long value = random.nextInt( 2 * count );
+            probes.add( value, i );
+            if ( false == values.contains( value ) ) expected.add( value );
+        }
+
+        // When
+        final TLongSet missing = new TLongHashSet();
+        probes.verify( new MissingValueHandler()
+        {
+            @Override
+            public void handleMissingValue( long value, long lineNumber )
+            {
+                missing.add( value );
+            }
+        } );
+
+        // Then
+        assertThat( missing, is( expected ) );
+        // only the merged values are kept, for other probes
+        assertThat( spillDirectory.list().length, is( 1 ) );
+        for ( File file : spillDirectory.listFiles() )
+        {
+            file.delete();
+        }
+        spillDirectory.delete();
+    }
+
+    @Test
+    public void eytzingerSetShouldContainSameValuesAsHashSet()
+    {
+        Random random = new Random( 42 );
+        for ( int size : new int[] { 0, 1, 2, 3, 7, 8, 9, 100, 1000 } )
+        {
+            // Given
+            TLongSet expected = new TLongHashSet();
+            long[] values = new long[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                values[i] = random.nextInt( 3 * size + 1 ) - size;
+                expected.add( values[i] );
+            }
+
+            // When
+            EytzingerLongSet set = new EytzingerLongSet( values );
+
+            // Then
+            assertThat( set.size(), is( expected.size() ) );
+            for ( long value = -size - 2; value <= 2 * size + 2; value++ )
+            {
+                assertThat( set.contains( value ), is( expected.contains( value ) ) );
+            }
+            assertThat( set.contains( Long.MIN_VALUE ), is( false ) );
+            assertThat( set.contains( Long.MAX_VALUE ), is( false ) );
+        }
+    }
+
+    @Test
+    public void frozenColumnRefsShouldContainSameValues()
+    {
+        // Given
+        LongColumnRef hashColumnRef = new LongColumnRef( "hash" );
+        StridedBitmapColumnRef bitmapColumnRef = new StridedBitmapColumnRef( "bitmap", 100 );
+        // still detecting stride when frozen
+        StridedBitmapColumnRef sampleColumnRef = new StridedBitmapColumnRef( "sample" );
+        for ( long id = 0; id < 5000; id += 10 )
+        {
+            hashColumnRef.add( id );
+            bitmapColumnRef.add( id );
+            sampleColumnRef.add( id );
+        }
+        hashColumnRef.add( 3l );
+        bitmapColumnRef.add( 3l );
+        sampleColumnRef.add( 3l );
+
+        // When
+        hashColumnRef.freeze();
+        bitmapColumnRef.freeze();
+        sampleColumnRef.freeze();
+
+        // Then
+        for ( long value = -10; value < 5010; value++ )
+        {
+            boolean expected = ( 3 == value ) || ( value >= 0 && value < 5000 && 0 == value % 10 );
+            assertThat( hashColumnRef.contains( value ), is( expected ) );
+            assertThat( bitmapColumnRef.contains( value ), is( expected ) );
+            assertThat( sampleColumnRef.contains( value ), is( expected ) );
+        }
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void frozenColumnRefShouldNotBeAddedTo()
+    {
+        // Given
+        LongColumnRef columnRef = new LongColumnRef( "ids" );
+        columnRef.add( 1l );
+
+        // When
+        columnRef.freeze();
+
+        // Then
+        columnRef.add( 2l );
+    }
+
+    @Test
+    public void longPairShouldDetectDuplicatePairs()
+    {
+        // Given
+        LongPairColumnRef orderedRef = new LongPairColumnRef( "ordered", false );
+        LongPairColumnRef unorderedRef = new LongPairColumnRef( "unordered", true );
+
+        // When
+        boolean orderedFirst = orderedRef.add( 1l ) & orderedRef.add( 2l );
+        boolean orderedReversed = orderedRef.add( 2l ) & orderedRef.add( 1l );
+        boolean orderedDuplicate = orderedRef.add( 1l ) & orderedRef.add( 2l );
+        boolean unorderedFirst = unorderedRef.add( 1l ) & unorderedRef.add( 2l );
+        boolean unorderedReversed = unorderedRef.add( 2l ) & unorderedRef.add( 1l );
+
+        // Then
+        assertThat( orderedFirst, is( true ) );
+        assertThat( orderedReversed, is( true ) );
+        assertThat( orderedDuplicate, is( false ) );
+        assertThat( unorderedFirst, is( true ) );
+        assertThat( unorderedReversed, is( false ) );
+        assertThat( orderedRef.size(), is( 2l ) );
+        assertThat( unorderedRef.size(), is( 1l ) );
+        assertThat( unorderedRef.containsPair( 2l, 1l ), is( true ) );
+        assertThat( unorderedRef.containsPair( 2l, 2l ), is( false ) );
+    }
+
+    @Test
+    public void longPairShouldBehaveLikeHashSetOfPairs()
+    {
+        // Given
+        Random random = new Random( 42 );
+        Set<String> expected = new HashSet<String>();
+        // too small, must resize
+        LongPairColumnRef columnRef = new LongPairColumnRef( "pairs", false, 10 );
+
+        // When
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long first = ( 0 == i % 100 ) ? random.nextLong() : random.nextInt( 300 );
+            long second = random.nextInt( 300 );
+            assertThat( columnRef.addPair( first, second ), is( expected.add( first + "|" + second ) ) );
+        }
+
+        // Then
+        assertThat( columnRef.size(), is( (long) expected.size() ) );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long first = random.nextInt( 600 );
+            long second = random.nextInt( 600 );
+            assertThat( columnRef.containsPair( first, second ), is( expected.contains( first + "|" + second ) ) );
+        }
+    }
+
+    @Test
+    public void snapshotShouldRestoreSameValues() throws Exception
+    {
+        // Given
+        List<AbstractLongColumnRef> columnRefs = new ArrayList<AbstractLongColumnRef>();
+        List<AbstractLongColumnRef> restoredColumnRefs = new ArrayList<AbstractLongColumnRef>();
+        columnRefs.add( new LongColumnRef( "hash" ) );
+        restoredColumnRefs.add( new LongColumnRef( "hash" ) );
+        columnRefs.add( new LongColumnRef( "frozen" ) );
+        restoredColumnRefs.add( new LongColumnRef( "frozen" ) );
+        columnRefs.add( new StridedBitmapColumnRef( "bitmap", 100 ) );
+        restoredColumnRefs.add( new StridedBitmapColumnRef( "bitmap", 100 ) );
+        // still detecting stride
+        columnRefs.add( new StridedBitmapColumnRef( "sample" ) );
+        restoredColumnRefs.add( new StridedBitmapColumnRef( "sample" ) );
+        columnRefs.add( new OffHeapLongColumnRef( "off_heap" ) );
+        restoredColumnRefs.add( new OffHeapLongColumnRef( "off_heap" ) );
+        for ( AbstractLongColumnRef columnRef : columnRefs )
+        {
+            for ( long id = 0; id < 200000; id += 10 )
+            {
+                if ( "sample".equals( columnRef.getName() ) && id >= 5000 ) break;
+                columnRef.add( id );
+            }
+            columnRef.add( 3l );
+        }
+        columnRefs.get( 1 ).freeze();
+        LongPairColumnRef pairColumnRef = new LongPairColumnRef( "pairs", true );
+        pairColumnRef.addPair( 20, 10 );
+        pairColumnRef.addPair( 30, 40 );
+        columnRefs.add( pairColumnRef );
+        LongPairColumnRef restoredPairColumnRef = new LongPairColumnRef( "pairs", true );
+        restoredColumnRefs.add( restoredPairColumnRef );
+        File snapshotFile = File.createTempFile( "datachecker", ".snapshot" );
+        snapshotFile.deleteOnExit();
+
+        for ( int i = 0; i < columnRefs.size(); i++ )
+        {
+            // When
+            assertThat( ColumnRefSnapshot.canSnapshot( columnRefs.get( i ) ), is( true ) );
+            ColumnRefSnapshot.write( columnRefs.get( i ), snapshotFile );
+            ColumnRefSnapshot.restore( snapshotFile, restoredColumnRefs.get( i ) );
+
+            // Then
+            if ( restoredColumnRefs.get( i ) == restoredPairColumnRef ) continue;
+            for ( long value = -10; value < 200010; value++ )
+            {
+                boolean expected = columnRefs.get( i ).contains( value );
+                assertThat( restoredColumnRefs.get( i ).contains( value ), is( expected ) );
+            }
+        }
+        assertThat( restoredPairColumnRef.size(), is( 2l ) );
+        assertThat( restoredPairColumnRef.containsPair( 10, 20 ), is( true ) );
+        assertThat( restoredPairColumnRef.containsPair( 40, 30 ), is( true ) );
+        assertThat( ColumnRefSnapshot.canSnapshot( new ExternalLongColumnRef( "external" ) ), is( false ) );
+    }
+
+    @Test
+    public void mappedSnapshotShouldContainSameValues() throws Exception
+    {
+        // Given
+        List<AbstractLongColumnRef> columnRefs = new ArrayList<AbstractLongColumnRef>();
+        List<AbstractLongColumnRef> mappedColumnRefs = new ArrayList<AbstractLongColumnRef>();
+        columnRefs.add( new LongColumnRef( "hash" ) );
+        mappedColumnRefs.add( new LongColumnRef( "hash" ) );
+        columnRefs.add( new OffHeapLongColumnRef( "off_heap" ) );
+        mappedColumnRefs.add( new OffHeapLongColumnRef( "off_heap" ) );
+        // not mapped, values are added
+        columnRefs.add( new StridedBitmapColumnRef( "bitmap", 100 ) );
+        mappedColumnRefs.add( new StridedBitmapColumnRef( "bitmap", 100 ) );
+        Random random = new Random( 42 );
+        for ( AbstractLongColumnRef columnRef : columnRefs )
+        {
+            for ( int i = 0; i < 10000; i++ )
+            {
+                columnRef.add( random.nextInt( 30000 ) - 10000 );
+            }
+            columnRef.add( 0 );
+        }
+        File snapshotFile = File.createTempFile( "datachecker", ".snapshot" );
+        snapshotFile.deleteOnExit();
+
+        for ( int i = 0; i < columnRefs.size(); i++ )
+        {
+            // When
+            ColumnRefSnapshot.write( columnRefs.get( i ), snapshotFile );
+            assertThat( ColumnRefSnapshot.isValid( snapshotFile ), is( true ) );
+            if ( false == ColumnRefSnapshot.map( snapshotFile, mappedColumnRefs.get( i ) ) )
+            {
+                ColumnRefSnapshot.restore( snapshotFile, mappedColumnRefs.get( i ) );
+            }
+
+            // Then
+            for ( long value = -10010; value < 20010; value++ )
+            {
+                boolean expected = columnRefs.get( i ).contains( value );
+                assertThat( mappedColumnRefs.get( i ).contains( value ), is( expected ) );
+            }
+            assertThat( mappedColumnRefs.get( i ).contains( Long.MIN_VALUE ), is( false ) );
+            assertThat( mappedColumnRefs.get( i ).contains( Long.MAX_VALUE ), is( false ) );
+        }
+        assertThat( ( (OffHeapLongColumnRef) mappedColumnRefs.get( 1 ) ).size(),
+                is( ( (OffHeapLongColumnRef) columnRefs.get( 1 ) ).size() ) );
+        // only mapped ColumnRefs are frozen
+        assertThat( ColumnRefSnapshot.map( snapshotFile, new StridedBitmapColumnRef( "bitmap" ) ), is( false ) );
+        assertThat( mappedColumnRefs.get( 2 ).add( 1000000 ), is( true ) );
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                mappedColumnRefs.get( i ).add( 1000000 );
+                fail( "Values should not be added to a mapped ColumnRef" );
+            }
+            catch ( IllegalStateException e )
+            {
+                // expected
+            }
+        }
+
+        // truncated snapshots are not used
+        RandomAccessFile file = new RandomAccessFile( snapshotFile, "rw" );
+        file.setLength( file.length() - 8 );
+        file.close();
+        assertThat( ColumnRefSnapshot.isValid( snapshotFile ), is( false ) );
+        assertThat( ColumnRefSnapshot.isValid( new File( snapshotFile.getPath() + ".missing" ) ), is( false ) );
+    }
+
+    @Test
+    public void snapshotOfSetShouldBeSortedInRunsOnDisk() throws Exception
+    {
+        // Given
+        LongColumnRef columnRef = new LongColumnRef( "hash" );
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            columnRef.add( random.nextInt( 300000 ) - 100000 );
+        }
+        File directory = temporaryFolder.newFolder();
+        File snapshotFile = new File( directory, "hash.snapshot" );
+
+        // When
+        // more runs than ExternalLongColumnRef.MAX_FAN_IN
+        ColumnRefSnapshot.write( columnRef, snapshotFile, 1000 );
+        LongColumnRef mappedColumnRef = new LongColumnRef( "hash" );
+
+        // Then
+        assertThat( ColumnRefSnapshot.map( snapshotFile, mappedColumnRef ), is( true ) );
+        for ( long value = -100010; value < 200010; value++ )
+        {
+            assertThat( mappedColumnRef.contains( value ), is( columnRef.contains( value ) ) );
+        }
+        // runs are deleted
+        assertThat( directory.list().length, is( 1 ) );
+    }
+}
@@ -0,0 +1,106 @@
+package com.ldbc.datachecker;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ldbc.datachecker.FileCheckGraph.Node;
+import com.ldbc.datachecker.socialnet.SocialNetCheck;
+
+public class FileCheckGraphTest
+{
+    @Test
+    public void relationshipFilesShouldDependOnTheNodeFilesTheyReference()
+    {
+        // Given
+        Check check = new SocialNetCheck( new File( "outputDir" ), 10, 100 );
+
+        // When
+        FileCheckGraph graph = new FileCheckGraph( check.getFileChecks() );
+
+        // Then
+        assertThat( dependencyFilenames( node( graph, "comment_hasCreator_person.csv" ) ), is( filenames(
+                "comment.csv", "person.csv" ) ) );
+        assertThat( dependencyFilenames( node( graph, "comment_replyOf_comment.csv" ) ), is( filenames( "comment.csv" ) ) );
+        assertThat( dependencyFilenames( node( graph, "person_knows_person.csv" ) ), is( filenames( "person.csv" ) ) );
+    }
+
+    @Test
+    public void fileChecksForTheSameFileShouldShareOneNode()
+    {
+        // Given
+        Check check = new SocialNetCheck( new File( "outputDir" ), 10, 100 );
+
+        // When
+        FileCheckGraph graph = new FileCheckGraph( check.getFileChecks() );
+
+        // Then
+        assertThat( graph.getNodes().size(), is( 31 ) );
+        assertThat( node( graph, "person.csv" ).getFileChecks().size(), is( 2 ) );
+        assertThat( node( graph, "comment.csv" ).getFileChecks().size(), is( 1 ) );
+    }
+
+    @Test
+    public void nodeFilesShouldNotDependOnAnything()
+    {
+        // Given
+        Check check = new SocialNetCheck( new File( "outputDir" ), 10, 100 );
+
+        // When
+        FileCheckGraph graph = new FileCheckGraph( check.getFileChecks() );
+
+        // Then
+        for ( String filename : new String[] { "comment.csv", "forum.csv", "organisation.csv", "person.csv",
+                "place.csv", "post.csv", "tagclass.csv", "tag.csv" } )
+        {
+            for ( Node node : nodes( graph, filename ) )
+            {
+                assertThat( node.getDependencies().isEmpty(), is( true ) );
+            }
+        }
+    }
+
+    private Node node( FileCheckGraph graph, String filename )
+    {
+        List<Node> nodes = nodes( graph, filename );
+        assertThat( nodes.size(), is( 1 ) );
+        return nodes.get( 0 );
+    }
+
+    private List<Node> nodes( FileCheckGraph graph, String filename )
+    {
+        List<Node> nodes = new ArrayList<Node>();
+        for ( Node node : graph.getNodes() )
+        {
+            if ( node.getFile().getName().equals( filename ) ) nodes.add( node );
+        }
+        return nodes;
+    }
+
+    private Set<String> dependencyFilenames( Node node )
+    {
+        Set<String> filenames = new HashSet<String>();
+        for ( Node dependency : node.getDependencies() )
+        {
+            filenames.add( dependency.getFile().getName() );
+        }
+        return filenames;
+    }
+
+    private Set<String> filenames( String... filenames )
+    {
+        Set<String> filenameSet = new HashSet<String>();
+        for ( String filename : filenames )
+        {
+            filenameSet.add( filename );
+        }
+        return filenameSet;
+    }
+}
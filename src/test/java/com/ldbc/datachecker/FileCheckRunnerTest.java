@@ -0,0 +1,249 @@
+package com.ldbc.datachecker;
+
+import static com.ldbc.datachecker.Column.isLong;
+import static com.ldbc.datachecker.Column.isString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import com.ldbc.datachecker.ColumnRef.LongColumnRef;
+import com.ldbc.datachecker.FileCheckRunner.ReaderType;
+import com.ldbc.datachecker.checks.file.ExpectedColumns;
+import com.ldbc.datachecker.checks.file.ExpectedLength;
+
+public class FileCheckRunnerTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSplitFileIntoLineAlignedChunks() throws IOException
+    {
+        // Given
+        File csvFile = writeTempFile( "id\n0\n10\r\n20\r30\n40" );
+
+        // When
+        long[] offsets = MappedCsvFileReader.lineAlignedOffsets( csvFile, 4 );
+
+        // Then
+        assertThat( offsets[0], is( 0l ) );
+        assertThat( offsets[offsets.length - 1], is( csvFile.length() ) );
+        long lineCount = 0;
+        for ( int i = 0; i < offsets.length - 1; i++ )
+        {
+            lineCount += MappedCsvFileReader.countLines( csvFile, offsets[i], offsets[i + 1] );
+        }
+        assertThat( offsets.length > 2, is( true ) );
+        assertThat( lineCount, is( 6l ) );
+    }
+
+    @Test
+    public void chunkedCheckShouldReportSameFailuresAsSingleCheck() throws Exception
+    {
+        // Given
+        StringBuilder content = new StringBuilder( "id|name\n" );
+        for ( int i = 0; i < 500; i++ )
+        {
+            // line 201 is not consecutive, line 350 is not a number, both also fail the line after them
+            long id = ( 200 == i ) ? 7 : i * 10;
+            content.append( ( 349 == i ) ? "x" : Long.toString( id ) ).append( "|name" ).append( i ).append( "\n" );
+        }
+        File csvFile = writeTempFile( content.toString() );
+
+        // When
+        List<String> singleFailures = check( csvFile, 0 );
+        List<String> chunkedFailures = check( csvFile, 64 );
+
+        // Then
+        assertThat( singleFailures.size(), is( 4 ) );
+        assertThat( chunkedFailures, is( singleFailures ) );
+    }
+
+    @Test
+    public void chunkedCheckShouldSaveAllValuesToColumnRef() throws Exception
+    {
+        // Given
+        StringBuilder content = new StringBuilder( "id\n" );
+        for ( int i = 0; i < 300; i++ )
+        {
+            content.append( i ).append( "\n" );
+        }
+        File csvFile = writeTempFile( content.toString() );
+        final LongColumnRef ids = new LongColumnRef( "ids" );
+        final FileCheck fileCheck = new ExpectedColumns( csvFile.getPath(), isLong().saveTo( ids ) );
+        final RecordingFailedCheckPolicy policy = new RecordingFailedCheckPolicy();
+
+        // When
+        run( new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                new FileCheckRunner( policy, ReaderType.MEMORY_MAPPED ).withChunkSize( 32 ).checkFile( fileCheck );
+                return null;
+            }
+        } );
+
+        // Then
+        assertThat( policy.getFailures().isEmpty(), is( true ) );
+        assertThat( ids.contains( 0l ), is( true ) );
+        assertThat( ids.contains( 299l ), is( true ) );
+        assertThat( ids.contains( 300l ), is( false ) );
+    }
+
+    @Test
+    public void shouldCreateOneColumnPolicyPerCheckRatherThanPerLine() throws Exception
+    {
+        // Given
+        File csvFile = writeTempFile( "id\n0\n10\nx\n30\n" );
+        FileCheck fileCheck = new ExpectedColumns( csvFile.getPath(), isLong().withConsecutive( 0l, 10l ) );
+        RecordingFailedCheckPolicy policy = new RecordingFailedCheckPolicy();
+
+        // When
+        new FileCheckRunner( policy, ReaderType.MEMORY_MAPPED ).checkFile( fileCheck );
+
+        // Then
+        assertThat( policy.getColumnPolicyCount(), is( 1 ) );
+        // x is not a number, so 30 is not the value after it either
+        assertThat( policy.getFailures().size(), is( 2 ) );
+        assertThat( policy.getFailures().get( 0 ).startsWith( "3 0 [x] x " ), is( true ) );
+        assertThat( policy.getFailures().get( 1 ).startsWith( "4 0 [30] 30 " ), is( true ) );
+    }
+
+    @Test
+    public void runReportShouldCountRowsAndFailuresPerColumnWithAndWithoutChunks() throws Exception
+    {
+        // Given
+        StringBuilder content = new StringBuilder( "id|name\n" );
+        for ( int i = 0; i < 500; i++ )
+        {
+            // line 201 is not consecutive, line 350 is not a number, both also fail the line after them
+            long id = ( 200 == i ) ? 7 : i * 10;
+            content.append( ( 349 == i ) ? "x" : Long.toString( id ) ).append( "|name" ).append( i ).append( "\n" );
+        }
+        final File csvFile = writeTempFile( content.toString() );
+
+        for ( final long chunkSize : new long[] { 0, 64 } )
+        {
+            final RunReport runReport = new RunReport();
+            final ExpectedColumns fileCheck = new ExpectedColumns( csvFile.getPath(), isLong().withConsecutive( 0l,
+                    10l ), isString() ).withTimings();
+
+            // When
+            run( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    FailedCheckPolicy policy = runReport.countFailures( new RecordingFailedCheckPolicy() );
+                    new FileCheckRunner( policy, ReaderType.MEMORY_MAPPED ).withChunkSize( chunkSize ).withRunReport(
+                            runReport ).checkFile( fileCheck );
+                    return null;
+                }
+            } );
+
+            // Then
+            RunReport.FileStats stats = runReport.getFileStats().get( 0 );
+            assertThat( stats.getRows(), is( 501l ) );
+            assertThat( stats.getBytes(), is( csvFile.length() ) );
+            assertThat( stats.getWallNanos() > 0, is( true ) );
+            assertThat( stats.getCheckNanos( 0 ) > 0, is( true ) );
+            assertThat( runReport.getFailureCount( fileCheck, 0 ), is( 4l ) );
+            assertThat( runReport.getFailureCount( fileCheck, 1 ), is( 0l ) );
+            assertThat( runReport.getFailureCount( fileCheck ), is( 4l ) );
+            Column.Timings timings = fileCheck.getColumn( 0 ).getTimings();
+            assertThat( timings.getParseNanos() > 0, is( true ) );
+            assertThat( timings.getCheckNanos() > 0, is( true ) );
+        }
+    }
+
+    @Test
+    public void progressShouldCountAllBytesOfCheckedFilesWithAndWithoutChunks() throws Exception
+    {
+        // Given
+        StringBuilder content = new StringBuilder( "id|name\n" );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            content.append( i * 10 ).append( "|name" ).append( i ).append( "\n" );
+        }
+        final File csvFile = writeTempFile( content.toString() );
+
+        for ( final long chunkSize : new long[] { 0, 4096 } )
+        {
+            final ProgressReporter progressReporter = new ProgressReporter( 2 * csvFile.length(), 60000 );
+            final FileCheck fileCheck = new ExpectedColumns( csvFile.getPath(), isLong().withConsecutive( 0l, 10l ),
+                    isString() );
+
+            // When
+            progressReporter.start();
+            run( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    new FileCheckRunner( new RecordingFailedCheckPolicy(), ReaderType.MEMORY_MAPPED ).withChunkSize(
+                            chunkSize ).withProgressReporter( progressReporter ).checkFile( fileCheck );
+                    return null;
+                }
+            } );
+            progressReporter.stop();
+
+            // Then
+            assertThat( progressReporter.checkedBytes(), is( csvFile.length() ) );
+            assertThat( progressReporter.progress().startsWith( "Progress 50.0% " ), is( true ) );
+        }
+    }
+
+    private List<String> check( File csvFile, final long chunkSize ) throws Exception
+    {
+        final RecordingFailedCheckPolicy policy = new RecordingFailedCheckPolicy();
+        final List<FileCheck> fileChecks = new ArrayList<FileCheck>();
+        fileChecks.add( new ExpectedColumns( csvFile.getPath(), isLong().withConsecutive( 0l, 10l ), isString() ) );
+        fileChecks.add( new ExpectedLength( csvFile.getPath(), 500 ) );
+        run( new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                new FileCheckRunner( policy, ReaderType.MEMORY_MAPPED ).withChunkSize( chunkSize ).checkFile(
+                        fileChecks );
+                return null;
+            }
+        } );
+        Collections.sort( policy.getFailures() );
+        return policy.getFailures();
+    }
+
+    private void run( Callable<Void> task ) throws Exception
+    {
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try
+        {
+            pool.submit( task ).get();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private File writeTempFile( String content ) throws IOException
+    {
+        File file = temporaryFolder.newFile();
+        Files.write( content, file, CsvLine.CHARSET );
+        return file;
+    }
+}
@@ -0,0 +1,199 @@
+package com.ldbc.datachecker;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+public class MappedCsvFileReaderTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadSameLinesAsCsvFileReader() throws IOException
+    {
+        // Given
+        String content = "id|name\n1|a\n||\n\n2|\r\n|b\r3|c|d\n4";
+        File csvFile = writeTempFile( content.getBytes( CsvLine.CHARSET ) );
+
+        // When
+        List<List<String>> expectedLines = new ArrayList<List<String>>();
+        CsvFileReader csvFileReader = new CsvFileReader( csvFile );
+        while ( csvFileReader.hasNext() )
+        {
+            expectedLines.add( asList( csvFileReader.next() ) );
+        }
+
+        // Then
+        for ( int windowSize : new int[] { 8, 9, 11, 16, MappedCsvFileReader.DEFAULT_WINDOW_SIZE } )
+        {
+            assertThat( readAll( new MappedCsvFileReader( csvFile, windowSize ) ), is( expectedLines ) );
+        }
+    }
+
+    @Test
+    public void shouldDecodeUtf8AndExposeByteSlices() throws IOException
+    {
+        // Given
+        File csvFile = writeTempFile( "10|São Paulo|x\n".getBytes( CsvLine.CHARSET ) );
+
+        // When
+        MappedCsvFileReader reader = new MappedCsvFileReader( csvFile );
+        CsvLine line = reader.next();
+
+        // Then
+        assertThat( line.columnCount(), is( 3 ) );
+        assertThat( line.getString( 1 ), is( "São Paulo" ) );
+        assertThat( line.length( 0 ), is( 2 ) );
+        assertThat( line.length( 1 ), is( 10 ) );
+        assertThat( (char) line.buffer().get( line.start( 2 ) ), is( 'x' ) );
+        assertThat( reader.hasNext(), is( false ) );
+    }
+
+    @Test
+    public void bytesReadShouldCountReturnedLinesAndTheirTerminators() throws IOException
+    {
+        // Given
+        String content = "id|name\n1|a\r\n2|b\r3";
+        File csvFile = writeTempFile( content.getBytes( CsvLine.CHARSET ) );
+
+        for ( int windowSize : new int[] { 8, 9, 11, MappedCsvFileReader.DEFAULT_WINDOW_SIZE } )
+        {
+            // When
+            MappedCsvFileReader reader = new MappedCsvFileReader( csvFile, windowSize );
+            List<Long> bytesRead = new ArrayList<Long>();
+            while ( reader.hasNext() )
+            {
+                reader.next();
+                bytesRead.add( reader.bytesRead() );
+            }
+
+            // Then
+            List<Long> expectedBytesRead = new ArrayList<Long>();
+            expectedBytesRead.add( 8l );
+            expectedBytesRead.add( 13l );
+            expectedBytesRead.add( 17l );
+            expectedBytesRead.add( 18l );
+            assertThat( bytesRead, is( expectedBytesRead ) );
+        }
+
+        // When
+        CsvFileReader csvFileReader = new CsvFileReader( csvFile );
+        while ( csvFileReader.hasNext() )
+        {
+            csvFileReader.next();
+        }
+
+        // Then
+        assertThat( csvFileReader.bytesRead(), is( csvFile.length() ) );
+    }
+
+    @Test
+    public void contentHashShouldBeHashOfWholeFile() throws IOException
+    {
+        // Given
+        String content = "id|name\n1|a\r\n2|b\r3|São\n";
+        File csvFile = writeTempFile( content.getBytes( CsvLine.CHARSET ) );
+        String expectedHash = Files.hash( csvFile, Hashing.murmur3_128() ).toString();
+
+        for ( int windowSize : new int[] { 8, 9, 11, MappedCsvFileReader.DEFAULT_WINDOW_SIZE } )
+        {
+            // When
+            MappedCsvFileReader reader = new MappedCsvFileReader( csvFile, windowSize ).withContentHash();
+            reader.next();
+
+            // Then
+            assertThat( reader.contentHash(), is( (String) null ) );
+            readAll( reader );
+            assertThat( reader.contentHash(), is( expectedHash ) );
+        }
+
+        // When
+        CsvFileReader csvFileReader = new CsvFileReader( csvFile ).withContentHash();
+        while ( csvFileReader.hasNext() )
+        {
+            csvFileReader.next();
+        }
+
+        // Then
+        assertThat( csvFileReader.contentHash(), is( expectedHash ) );
+    }
+
+    @Test
+    public void readersShouldBeClosedBeforeTheirEnd() throws IOException
+    {
+        // Given
+        File csvFile = writeTempFile( "id\n1\n2\n".getBytes( CsvLine.CHARSET ) );
+        MappedCsvFileReader reader = new MappedCsvFileReader( csvFile ).withContentHash();
+        CsvFileReader csvFileReader = new CsvFileReader( csvFile ).withContentHash();
+
+        // When
+        reader.next();
+        reader.close();
+        reader.close();
+        csvFileReader.next();
+        csvFileReader.close();
+        csvFileReader.close();
+
+        // Then
+        assertThat( reader.hasNext(), is( false ) );
+        assertThat( reader.contentHash(), is( (String) null ) );
+        assertThat( csvFileReader.hasNext(), is( false ) );
+        assertThat( csvFileReader.contentHash(), is( (String) null ) );
+    }
+
+    @Test
+    public void stringBackedLineShouldExposeEncodedByteSlices()
+    {
+        // Given
+        CsvLine line = CsvLine.fromColumns( "1", "", "São" );
+
+        // When
+        int start = line.start( 2 );
+
+        // Then
+        assertThat( line.length( 0 ), is( 1 ) );
+        assertThat( line.length( 1 ), is( 0 ) );
+        assertThat( line.length( 2 ), is( 4 ) );
+        assertThat( (char) line.buffer().get( start ), is( 'S' ) );
+        assertThat( line.getString( 2 ), is( "São" ) );
+    }
+
+    private List<List<String>> readAll( MappedCsvFileReader reader )
+    {
+        List<List<String>> lines = new ArrayList<List<String>>();
+        while ( reader.hasNext() )
+        {
+            lines.add( asList( reader.next().toStringArray() ) );
+        }
+        return lines;
+    }
+
+    private List<String> asList( String[] columns )
+    {
+        List<String> list = new ArrayList<String>();
+        for ( String column : columns )
+        {
+            list.add( column );
+        }
+        return list;
+    }
+
+    private File writeTempFile( byte[] content ) throws IOException
+    {
+        File file = temporaryFolder.newFile();
+        Files.write( content, file );
+        return file;
+    }
+}
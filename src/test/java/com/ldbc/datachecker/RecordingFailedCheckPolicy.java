@@ -0,0 +1,68 @@
+package com.ldbc.datachecker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the failures it is given, as "lineNumber column [row] columnString message" for columns, "lineNumber [row]
+ * message" for lines and the message for files, and counts the column policies created. Thread safe, so files can be
+ * checked in chunks.
+ */
+public class RecordingFailedCheckPolicy implements FailedCheckPolicy
+{
+    private final List<String> failures = Collections.synchronizedList( new ArrayList<String>() );
+    private int columnPolicyCount = 0;
+
+    public List<String> getFailures()
+    {
+        return failures;
+    }
+
+    public synchronized int getColumnPolicyCount()
+    {
+        return columnPolicyCount;
+    }
+
+    @Override
+    public synchronized FailedColumnCheckPolicy getFailedColumnCheckPolicy( FileCheck fileCheck, long lineNumber,
+            CsvLine line )
+    {
+        columnPolicyCount++;
+        return new FailedColumnCheckPolicy( fileCheck, lineNumber, line )
+        {
+            @Override
+            public void handleFailedColumnCheck( String columnString, String message )
+            {
+                failures.add( getLineNumber() + " " + getColumn() + " " + Arrays.toString( getRow() ) + " "
+                              + columnString + " " + message );
+            }
+        };
+    }
+
+    @Override
+    public FailedFileCheckPolicy getFailedFileCheckPolicy()
+    {
+        return new FailedFileCheckPolicy()
+        {
+            @Override
+            public void handleFailedLineCheck( FileCheck fileCheck, String message, long lineNumber, String[] row )
+            {
+                failures.add( lineNumber + " " + Arrays.toString( row ) + " " + message );
+            }
+
+            @Override
+            public void handleFailedFileCheck( FileCheck fileCheck, String message )
+            {
+                failures.add( message );
+            }
+        };
+    }
+
+    @Override
+    public FailedDirectoryCheckPolicy getFailedDirectoryCheckPolicy()
+    {
+        return null;
+    }
+}
@@ -4,11 +4,17 @@ import static com.ldbc.datachecker.Column.*;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import com.ldbc.datachecker.Column;
 import com.ldbc.datachecker.ColumnCheckException;
+import com.ldbc.datachecker.ColumnRef.LongColumnRef;
+import com.ldbc.datachecker.CsvLine;
 import com.ldbc.datachecker.FailedCheckPolicy;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
 import com.ldbc.datachecker.FileCheck;
 import com.ldbc.datachecker.FileCheckException;
 import com.ldbc.datachecker.checks.file.ExpectedColumns;
@@ -33,15 +39,61 @@ public class CheckExpectedColumnsTest
         assertThat( fileCheckPassed( expectedColumnsCheck, longRow ), is( false ) );
     }
 
+    @Test
+    public void shouldStopValidatingColumnAfterMaxFailuresButKeepSavingToColumnRefs() throws Exception
+    {
+        // Given
+        LongColumnRef ids = new LongColumnRef( "ids" );
+        ExpectedColumns expectedColumnsCheck = new ExpectedColumns( "file.csv", new Column[] {
+                isLong().withMin( 0l ).saveTo( ids ), isFiniteSet( "one", "two" ) } ).withMaxFailuresPerColumn( 2 );
+        final List<String> failures = new ArrayList<String>();
+        FailedColumnCheckPolicy columnPolicy = new FailedColumnCheckPolicy( expectedColumnsCheck, 0, null )
+        {
+            @Override
+            public void handleFailedColumnCheck( String columnString, String message )
+            {
+                failures.add( getLineNumber() + " " + getColumn() + " " + columnString );
+            }
+        };
+        FailedCheckPolicy policy = new TerminateFailedCheckPolicy();
+
+        // When
+        for ( int i = 1; i <= 5; i++ )
+        {
+            CsvLine line = CsvLine.fromColumns( Integer.toString( -i ), "one" );
+            expectedColumnsCheck.checkLine( policy.getFailedFileCheckPolicy(), columnPolicy.forLine( i, line ), i,
+                    line );
+        }
+        CsvLine line = CsvLine.fromColumns( "6", "three" );
+        expectedColumnsCheck.checkLine( policy.getFailedFileCheckPolicy(), columnPolicy.forLine( 6, line ), 6, line );
+
+        // Then
+        List<String> expectedFailures = new ArrayList<String>();
+        expectedFailures.add( "1 0 -1" );
+        expectedFailures.add( "2 0 -2" );
+        // threshold reached
+        expectedFailures.add( "2 0 -2" );
+        expectedFailures.add( "6 1 three" );
+        assertThat( failures, is( expectedFailures ) );
+        assertThat( expectedColumnsCheck.getFailureCount( 0 ), is( 2l ) );
+        assertThat( expectedColumnsCheck.getFailureCount( 1 ), is( 1l ) );
+        for ( long id = -5; id <= -1; id++ )
+        {
+            assertThat( ids.contains( id ), is( true ) );
+        }
+        assertThat( ids.contains( 6 ), is( true ) );
+    }
+
     private boolean fileCheckPassed( FileCheck fileCheck, String[] row )
     {
         FailedCheckPolicy policy = new TerminateFailedCheckPolicy();
         long lineNumber = 1;
+        CsvLine line = CsvLine.fromColumns( row );
         boolean checkPassed = true;
         try
         {
             fileCheck.checkLine( policy.getFailedFileCheckPolicy(),
-                    policy.getFailedColumnCheckPolicy( fileCheck, lineNumber, row ), lineNumber, row );
+                    policy.getFailedColumnCheckPolicy( fileCheck, lineNumber, line ), lineNumber, line );
         }
         catch ( FileCheckException e )
         {
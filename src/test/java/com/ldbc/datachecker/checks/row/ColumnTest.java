@@ -4,14 +4,22 @@ import static com.ldbc.datachecker.Column.*;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.text.Normalizer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 
 import com.ldbc.datachecker.Column;
 import com.ldbc.datachecker.ColumnCheckException;
 import com.ldbc.datachecker.ColumnRef;
+import com.ldbc.datachecker.CsvLine;
 import com.ldbc.datachecker.FailedCheckPolicy;
 import com.ldbc.datachecker.checks.file.ExpectedLength;
 import com.ldbc.datachecker.failure.TerminateFailedCheckPolicy;
@@ -34,6 +42,12 @@ public class ColumnTest
         assertThat( columnCheckPassed( longColumn, "3" ), is( false ) );
     }
 
+    @Test( expected = IllegalArgumentException.class )
+    public void checkInShouldRejectPairColumnRefs()
+    {
+        isLong().checkIn( new ColumnRef.LongPairColumnRef( "pairs", true ) );
+    }
+
     @Test
     public void columnShouldAddValuesToColumnCheck()
     {
@@ -184,6 +198,33 @@ public class ColumnTest
         assertThat( columnCheckPassed( columnWithMinMax, normalNegativeLong ), is( false ) );
     }
 
+    @Test
+    public void numberColumnsShouldCheckBytesLikeStrings()
+    {
+        // Given
+        ColumnRef<Long> columnRef = new ColumnRef.LongColumnRef( "ref" );
+        String[] values = new String[] { "0", "-0", "+7", "-", "+", "", "12a", " 1", "\u0663", "2147483647",
+                "2147483648", "-2147483648", "-2147483649", "9223372036854775807", "9223372036854775808",
+                "-9223372036854775808", "-9223372036854775809", "99999999999999999999" };
+
+        // When
+        LongColumn longColumn = isLong().withMin( -5l ).withMax( 2147483648l ).saveTo( columnRef );
+        IntegerColumn integerColumn = isInteger().withMin( -5 );
+
+        // Then
+        for ( String value : values )
+        {
+            assertThat( value, columnCheckPassedOnBytes( longColumn, value ), is( columnCheckPassed( longColumn,
+                    value ) ) );
+            assertThat( value, columnCheckPassedOnBytes( integerColumn, value ), is( columnCheckPassed(
+                    integerColumn, value ) ) );
+        }
+        assertThat( columnRef.contains( 7l ), is( true ) );
+        assertThat( columnRef.contains( 3l ), is( true ) );
+        assertThat( columnRef.contains( 2147483648l ), is( true ) );
+        assertThat( columnRef.contains( 12l ), is( false ) );
+    }
+
     @Test
     public void stringColumnShouldOnlyPassWithString()
     {
@@ -227,6 +268,27 @@ public class ColumnTest
         assertThat( columnCheckPassed( column, invalid3 ), is( false ) );
     }
 
+    @Test
+    public void finiteSetColumnShouldMatchValuesLiterally()
+    {
+        // Given
+        FiniteSetColumn column = isFiniteSet( "", "en", "a.b", "c++", "Internet Explorer", "\u00e9t\u00e9" );
+        String[] valid = new String[] { "", "en", "a.b", "c++", "Internet Explorer", "\u00e9t\u00e9" };
+        String[] invalid = new String[] { "axb", "c", "cc", "en|a.b", "e", "enx", " en", "Internet", "ete" };
+
+        // Then
+        for ( String value : valid )
+        {
+            assertThat( value, columnCheckPassed( column, value ), is( true ) );
+            assertThat( value, columnCheckPassedOnBytes( column, value ), is( true ) );
+        }
+        for ( String value : invalid )
+        {
+            assertThat( value, columnCheckPassed( column, value ), is( false ) );
+            assertThat( value, columnCheckPassedOnBytes( column, value ), is( false ) );
+        }
+    }
+
     // 2010-03-11T11:36:58Z
     @Test
     public void urlColumnShouldOnlyPassWithUrl()
@@ -264,6 +326,66 @@ public class ColumnTest
         // ), is( true ) );
     }
 
+    @Test
+    public void stringColumnShouldRemoveAccentsLikeNormalizerAndRegex()
+    {
+        // Given
+        String alphabet = "aZ1_-\u00e9\u00fc\u00f1\u0142\u0301\u2013\u4e2d";
+        Random random = new Random( 42 );
+        StringColumn column = isString().withAccents( false );
+
+        for ( int i = 0; i < 2000; i++ )
+        {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt( 12 );
+            for ( int j = 0; j < length; j++ )
+            {
+                value.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+            }
+            String expected = Normalizer.normalize( value, Normalizer.Form.NFD ).replaceAll(
+                    "\\p{InCombiningDiacriticalMarks}+", "" );
+
+            // Then, twice, the second time from the cache
+            column.withRegex( Pattern.quote( expected ) );
+            assertThat( value.toString(), columnCheckPassed( column, value.toString() ), is( true ) );
+            assertThat( value.toString(), columnCheckPassed( column, value.toString() ), is( true ) );
+        }
+    }
+
+    @Test
+    public void cachedColumnShouldReportSameFailuresAsUncachedColumn()
+    {
+        // Given
+        UrlColumn column = isUrl().withCache( 2 );
+        String validUrl = "http://dbpedia.org/resource/Sao_Paulo";
+        String invalidUrl = "not a URL";
+        String otherUrl = "http://dbpedia.org/resource/Berlin";
+
+        // When
+        boolean[] passed = new boolean[] { columnCheckPassed( column, validUrl ),
+                columnCheckPassed( column, invalidUrl ), columnCheckPassed( column, validUrl ),
+                columnCheckPassed( column, invalidUrl ), columnCheckPassed( column, otherUrl ),
+                columnCheckPassed( column, validUrl ) };
+
+        // Then
+        assertThat( passed, is( new boolean[] { true, false, true, false, true, true } ) );
+        assertThat( column.getCacheHits(), is( 2l ) );
+        // validUrl was evicted by otherUrl
+        assertThat( column.getCacheMisses(), is( 4l ) );
+    }
+
+    @Test
+    public void consecutiveColumnShouldNotBeCached()
+    {
+        // Given
+        LongColumn column = isLong().withConsecutive( 1l, 1l ).withCache( 10 );
+
+        // Then
+        assertThat( columnCheckPassed( column, "1" ), is( true ) );
+        assertThat( columnCheckPassed( column, "1" ), is( false ) );
+        assertThat( column.getCacheHits(), is( 0l ) );
+    }
+
     @Test
     public void dateColumnShouldOnlyPassWithDate()
     {
@@ -291,6 +413,60 @@ public class ColumnTest
         assertThat( columnCheckPassed( dateColumn, invalidDateWrongFormat ), is( false ) );
     }
 
+    @Test
+    public void dateColumnShouldParseFixedFormatsLikeSimpleDateFormat() throws Exception
+    {
+        // Given
+        String dateTimeFormatString = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+        SimpleDateFormat dateTimeFormat = new SimpleDateFormat( dateTimeFormatString );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd" );
+        DateColumn dateTimeColumn = isDate( dateTimeFormatString );
+        DateColumn dateColumn = isDate( "yyyy-MM-dd" );
+        Random random = new Random( 42 );
+
+        // When
+        for ( int i = 0; i < 10000; i++ )
+        {
+            Date date = new Date( ( random.nextLong() >>> 20 ) % 4000000000000l );
+            String dateTime = dateTimeFormat.format( date );
+            String day = dateFormat.format( date );
+
+            // Then
+            assertThat( dateTime, dateTimeColumn.parse( dateTime ), is( dateTimeFormat.parse( dateTime ) ) );
+            assertThat( day, dateColumn.parse( day ), is( dateFormat.parse( day ) ) );
+        }
+        // SimpleDateFormat is lenient, malformed dates must still be accepted or rejected the same way
+        String[] values = new String[] { "2012-02-29", "2013-02-29", "2010-13-01", "2010-3-10", "1500-01-01",
+                "2010-03-10x", "2010-03-10T25:00:00Z", "2010-03-10T10:61:00Z", "2010-03-10T11:36:58+0200",
+                "2010-03-10 11:36:58Z", "2010-03-10T11:36:58Z", "", "x" };
+        for ( String value : values )
+        {
+            assertThat( value, columnCheckPassedOnBytes( dateColumn, value ), is( columnCheckPassed(
+                    isDate( "yyyy-MM-dd" ), value ) ) );
+            assertThat( value, columnCheckPassedOnBytes( dateTimeColumn, value ), is( columnCheckPassed(
+                    isDate( dateTimeFormatString ), value ) ) );
+        }
+    }
+
+    @Test
+    public void dateColumnShouldCheckRangeOnBytes()
+    {
+        // Given
+        Calendar c = Calendar.getInstance();
+        c.set( 2010, Calendar.MARCH, 10 );
+        Date min = c.getTime();
+        c.set( 2010, Calendar.MARCH, 12 );
+        Date max = c.getTime();
+
+        DateColumn dateColumn = isDate( "yyyy-MM-dd'T'HH:mm:ss'Z'" ).withRange( min, max );
+
+        // Then
+        assertThat( columnCheckPassedOnBytes( dateColumn, "2010-03-11T11:36:58Z" ), is( true ) );
+        assertThat( columnCheckPassedOnBytes( dateColumn, "2010-03-10T00:00:00Z" ), is( false ) );
+        assertThat( columnCheckPassedOnBytes( dateColumn, "2010-03-13T11:36:58Z" ), is( false ) );
+        assertThat( columnCheckPassedOnBytes( dateColumn, "2010-03-11T11:36:58+0200" ), is( false ) );
+    }
+
     @Test
     public void emailColumnShouldOnlyPassWithEmail()
     {
@@ -336,6 +512,71 @@ public class ColumnTest
         assertThat( columnCheckPassed( emailColumn, invalid10 ), is( false ) );
     }
 
+    @Test
+    public void handWrittenValidatorsShouldAcceptSameValuesAsRegexes()
+    {
+        // Given
+        Column ipColumn = isIpAddress();
+        Column imageColumn = isImageFile( ".jpg", true );
+        Column emailColumn = isEmailAddress();
+        StringColumn ipRegexColumn = isString().withRegex( "^\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}+\\.\\d{1,3}$" );
+        StringColumn imageRegexColumn = isString().withRegex( "|.*\\.jpg$" );
+        StringColumn emailRegexColumn = isString().withRegex(
+                "^\\w+([\\.\\-]\\w+)*@\\w+([\\.\\-]\\w+)*\\.\\w{2,4}$" );
+        String alphabet = "0129.-_@aZjpg \u00e9\u0085\u2028";
+        List<String> values = new ArrayList<String>( Arrays.asList( "", "1.2.3.4", "255.255.255.255",
+                "999.0.0.1", "1.2.3", "1.2.3.4.", ".1.2.3", "1..2.3", "1234.1.1.1", "\u0661.2.3.4", "a.jpg", ".jpg",
+                "jpg", "a.JPG", "a\u2028b.jpg", "\u00e9.jpg", "a@b.cd", "a@b.c", "a.b-c@d_e.fghi", "a@b.cdefg", "a@bc",
+                "a@b-cd", "a@@b.cd", "a-@b.cd" ) );
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 20000; i++ )
+        {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt( 16 );
+            for ( int j = 0; j < length; j++ )
+            {
+                value.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+            }
+            values.add( value.toString() );
+            values.add( random.nextInt( 1000 ) + "." + random.nextInt( 1000 ) + "." + random.nextInt( 10000 ) + "."
+                        + random.nextInt( 1000 ) );
+        }
+
+        // Then
+        for ( String value : values )
+        {
+            boolean ipExpected = columnCheckPassed( ipRegexColumn, value );
+            boolean imageExpected = columnCheckPassed( imageRegexColumn, value );
+            boolean emailExpected = columnCheckPassed( emailRegexColumn, value );
+            assertThat( value, columnCheckPassed( ipColumn, value ), is( ipExpected ) );
+            assertThat( value, columnCheckPassedOnBytes( ipColumn, value ), is( ipExpected ) );
+            assertThat( value, columnCheckPassed( imageColumn, value ), is( imageExpected ) );
+            assertThat( value, columnCheckPassedOnBytes( imageColumn, value ), is( imageExpected ) );
+            assertThat( value, columnCheckPassed( emailColumn, value ), is( emailExpected ) );
+            assertThat( value, columnCheckPassedOnBytes( emailColumn, value ), is( emailExpected ) );
+        }
+    }
+
+    @Test
+    public void linesCreatedFromStringsShouldNotBeEncoded()
+    {
+        // Given
+        Calendar c = Calendar.getInstance();
+        c.set( 2010, Calendar.MARCH, 10 );
+        Date min = c.getTime();
+        c.set( 2010, Calendar.MARCH, 12 );
+        Date max = c.getTime();
+        Column ipColumn = isIpAddress();
+        Column dateColumn = isDate( "yyyy-MM-dd'T'HH:mm:ss'Z'" ).withRange( min, max );
+
+        // Then
+        assertThat( columnCheckPassedOnStrings( ipColumn, "1.2.3.4" ), is( true ) );
+        assertThat( columnCheckPassedOnStrings( ipColumn, "1.2.3" ), is( false ) );
+        assertThat( columnCheckPassedOnStrings( dateColumn, "2010-03-11T11:36:58Z" ), is( true ) );
+        assertThat( columnCheckPassedOnStrings( dateColumn, "2010-03-13T11:36:58Z" ), is( false ) );
+        assertThat( columnCheckPassedOnStrings( dateColumn, "2010-03-11T11:36:58+0200" ), is( false ) );
+    }
+
     private boolean columnCheckPassed( Column columnCheck, String columnString )
     {
         FailedCheckPolicy policy = new TerminateFailedCheckPolicy();
@@ -343,13 +584,53 @@ public class ColumnTest
         boolean checkPassed = true;
         try
         {
-            columnCheck.check( policy.getFailedColumnCheckPolicy( new ExpectedLength( "", 1 ), 1, new String[] {} ),
-                    columnString );
+            CsvLine line = CsvLine.fromColumns();
+            columnCheck.check( policy.getFailedColumnCheckPolicy( new ExpectedLength( "", 1 ), 1, line ), columnString );
+        }
+        catch ( ColumnCheckException e )
+        {
+            checkPassed = false;
+        }
+        return checkPassed;
+    }
+
+    private boolean columnCheckPassedOnBytes( Column columnCheck, String columnString )
+    {
+        FailedCheckPolicy policy = new TerminateFailedCheckPolicy();
+
+        boolean checkPassed = true;
+        try
+        {
+            CsvLine line = CsvLine.fromColumns( columnString );
+            // encode, so the column is checked from bytes
+            line.buffer();
+            columnCheck.check( policy.getFailedColumnCheckPolicy( new ExpectedLength( "", 1 ), 1, line ), line, 0 );
+        }
+        catch ( ColumnCheckException e )
+        {
+            checkPassed = false;
+        }
+        return checkPassed;
+    }
+
+    /*
+     * Checks the second column of a line created from Strings, which must not be encoded by the check
+     */
+    private boolean columnCheckPassedOnStrings( Column columnCheck, String columnString )
+    {
+        FailedCheckPolicy policy = new TerminateFailedCheckPolicy();
+
+        boolean checkPassed = true;
+        CsvLine line = CsvLine.fromColumns( "content that is not encoded", columnString );
+        try
+        {
+            columnCheck.check( policy.getFailedColumnCheckPolicy( new ExpectedLength( "", 1 ), 1, line ), line, 1 );
         }
         catch ( ColumnCheckException e )
         {
             checkPassed = false;
         }
+        assertThat( columnString, line.hasBytes(), is( false ) );
         return checkPassed;
     }
 }
@@ -0,0 +1,74 @@
+package com.ldbc.datachecker.failure;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.FailedCheckPolicy.FailedColumnCheckPolicy;
+import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.RecordingFailedCheckPolicy;
+import com.ldbc.datachecker.checks.file.ExpectedLength;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy.Category;
+
+public class AggregatingFailedCheckPolicyTest
+{
+    @Test
+    public void shouldCountAllFailuresButOnlyReportSamples() throws Exception
+    {
+        // Given
+        RecordingFailedCheckPolicy recordingPolicy = new RecordingFailedCheckPolicy();
+        AggregatingFailedCheckPolicy policy = new AggregatingFailedCheckPolicy( recordingPolicy, 2 );
+        FileCheck fileCheck = new ExpectedLength( "comment.csv", 1 );
+        FailedColumnCheckPolicy columnPolicy = policy.getFailedColumnCheckPolicy( fileCheck, 0, null );
+
+        // When
+        for ( int i = 0; i < 1000; i++ )
+        {
+            String value = Integer.toString( i * 10 );
+            CsvLine line = CsvLine.fromColumns( value, "x" );
+            columnPolicy.forLine( i, line ).forColumn( 0 ).handleFailedColumnCheck( value,
+                    String.format( "Value %s not found in ColumnRef[persons]", value ) );
+            if ( 0 == i % 10 )
+            {
+                columnPolicy.forLine( i, line ).forColumn( 1 ).handleFailedColumnCheck( "x",
+                        "Failed to parse [x] - For input string: \"x\"" );
+            }
+        }
+        policy.getFailedFileCheckPolicy().handleFailedFileCheck( fileCheck, "Expected 1 lines but found 1000" );
+
+        // Then
+        List<String> expectedSamples = new ArrayList<String>();
+        expectedSamples.add( "0 0 [0, x] 0 Value 0 not found in ColumnRef[persons]" );
+        expectedSamples.add( "0 1 [0, x] x Failed to parse [x] - For input string: \"x\"" );
+        expectedSamples.add( "1 0 [10, x] 10 Value 10 not found in ColumnRef[persons]" );
+        expectedSamples.add( "10 1 [100, x] x Failed to parse [x] - For input string: \"x\"" );
+        expectedSamples.add( "Expected 1 lines but found 1000" );
+        assertThat( recordingPolicy.getFailures(), is( expectedSamples ) );
+
+        List<Category> categories = policy.getCategories();
+        assertThat( categories.size(), is( 3 ) );
+        assertThat( categories.get( 0 ).getCount(), is( 1000l ) );
+        assertThat( categories.get( 0 ).getColumn(), is( 0 ) );
+        assertThat( categories.get( 0 ).getTemplate(), is( "Value <value> not found in ColumnRef[persons]" ) );
+        assertThat( categories.get( 1 ).getCount(), is( 100l ) );
+        assertThat( categories.get( 1 ).getTemplate(),
+                is( "Failed to parse [<value>] - For input string: \"<value>\"" ) );
+        assertThat( categories.get( 2 ).getCount(), is( 1l ) );
+        assertThat( categories.get( 2 ).getTemplate(), is( "Expected # lines but found #" ) );
+    }
+
+    @Test
+    public void templateShouldReplaceWholeValuesAndNumbers()
+    {
+        assertThat( AggregatingFailedCheckPolicy.template( "Value 12 not found, 123 and a12 are not 12", "12" ),
+                is( "Value <value> not found, # and a# are not <value>" ) );
+        assertThat( AggregatingFailedCheckPolicy.template( "[x_y] x_yz x_y", "x_y" ), is( "[<value>] x_yz <value>" ) );
+        assertThat( AggregatingFailedCheckPolicy.template( "Line 7 failed", null ), is( "Line # failed" ) );
+        assertThat( AggregatingFailedCheckPolicy.template( "Empty value", "" ), is( "Empty value" ) );
+    }
+}
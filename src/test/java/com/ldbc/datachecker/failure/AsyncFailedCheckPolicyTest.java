@@ -0,0 +1,93 @@
+package com.ldbc.datachecker.failure;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ldbc.datachecker.CsvLine;
+import com.ldbc.datachecker.FailedCheckPolicy;
+import com.ldbc.datachecker.FileCheck;
+import com.ldbc.datachecker.RecordingFailedCheckPolicy;
+import com.ldbc.datachecker.checks.file.ExpectedLength;
+
+public class AsyncFailedCheckPolicyTest
+{
+    @Test
+    public void shouldReportAllFailuresInOrderWhenQueueIsFull() throws Exception
+    {
+        // Given
+        RecordingFailedCheckPolicy recordingPolicy = new RecordingFailedCheckPolicy();
+        // tiny queue, so checking blocks on the writer
+        AsyncFailedCheckPolicy policy = new AsyncFailedCheckPolicy( recordingPolicy, 1 );
+        FileCheck fileCheck = new ExpectedLength( "file.csv", 1 );
+        CsvLine line = CsvLine.fromColumns( "a", "b" );
+
+        // When
+        for ( int i = 0; i < 1000; i++ )
+        {
+            policy.getFailedColumnCheckPolicy( fileCheck, i, line ).handleFailedColumnCheck( "a", "column" );
+            policy.getFailedFileCheckPolicy().handleFailedLineCheck( fileCheck, "line", i, new String[] { "x" } );
+        }
+        policy.getFailedFileCheckPolicy().handleFailedFileCheck( fileCheck, "file" );
+        policy.close();
+
+        // Then
+        List<String> expected = new ArrayList<String>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            expected.add( i + " -1 [a, b] a column" );
+            expected.add( i + " [x] line" );
+        }
+        expected.add( "file" );
+        assertThat( recordingPolicy.getFailures(), is( expected ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void shouldFailInsteadOfBlockingOnceWriterStopped() throws Exception
+    {
+        // Given
+        final Error error = new Error( "Error reporting failure" );
+        FailedCheckPolicy failingPolicy = new TerminateFailedCheckPolicy()
+        {
+            @Override
+            public FailedFileCheckPolicy getFailedFileCheckPolicy()
+            {
+                throw error;
+            }
+        };
+        AsyncFailedCheckPolicy policy = new AsyncFailedCheckPolicy( failingPolicy, 1 );
+        FileCheck fileCheck = new ExpectedLength( "file.csv", 1 );
+
+        // When
+        RuntimeException enqueueException = null;
+        try
+        {
+            // more than the queue holds, so checking would block on a stopped writer
+            for ( int i = 0; i < 1000; i++ )
+            {
+                policy.getFailedFileCheckPolicy().handleFailedFileCheck( fileCheck, "file" );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            enqueueException = e;
+        }
+        RuntimeException closeException = null;
+        try
+        {
+            policy.close();
+        }
+        catch ( RuntimeException e )
+        {
+            closeException = e;
+        }
+
+        // Then
+        assertThat( enqueueException.getCause(), is( (Throwable) error ) );
+        assertThat( closeException.getCause(), is( (Throwable) error ) );
+    }
+}
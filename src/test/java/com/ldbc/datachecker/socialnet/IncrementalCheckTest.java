@@ -0,0 +1,122 @@
+package com.ldbc.datachecker.socialnet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+import com.ldbc.datachecker.CheckRunner;
+import com.ldbc.datachecker.FileCheckRunner.ReaderType;
+import com.ldbc.datachecker.RunReport;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy.Category;
+import com.ldbc.datachecker.failure.TerminateFailedCheckPolicy;
+
+public class IncrementalCheckTest
+{
+    private static final long PERSON_COUNT = 200;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // files in the run report of the last check
+    private final Set<String> checkedFiles = new TreeSet<String>();
+
+    @Test
+    public void shouldOnlyCheckChangedAndFailedFiles() throws Exception
+    {
+        // Given
+        File dataGenDirectory = temporaryFolder.newFolder();
+        File dataDirectory = new File( dataGenDirectory, "outputDir" );
+        File stateDirectory = new File( dataGenDirectory, "state" );
+        new SocialNetGenerator( dataGenDirectory, PERSON_COUNT ).generate();
+        int fileCount = dataDirectory.list().length;
+
+        // When, Then
+        assertThat( check( dataDirectory, stateDirectory ), is( 0l ) );
+        assertThat( checkedFiles.size(), is( fileCount ) );
+
+        assertThat( check( dataDirectory, stateDirectory ), is( 0l ) );
+        assertThat( checkedFiles.size(), is( 0 ) );
+
+        // same content, compared by hash
+        File personFile = new File( dataDirectory, "person.csv" );
+        personFile.setLastModified( personFile.lastModified() + 10000 );
+        assertThat( check( dataDirectory, stateDirectory ), is( 0l ) );
+        assertThat( checkedFiles.size(), is( 0 ) );
+
+        // references persons, which are restored from a snapshot
+        File relationshipFile = new File( dataDirectory, "comment_hasCreator_person.csv" );
+        append( relationshipFile, "0|99999999\n" );
+        assertThat( check( dataDirectory, stateDirectory ), is( 1l ) );
+        assertThat( checkedFiles.toString(), is( "[comment_hasCreator_person.csv]" ) );
+
+        // failed files are checked again
+        assertThat( check( dataDirectory, stateDirectory ), is( 1l ) );
+        assertThat( checkedFiles.toString(), is( "[comment_hasCreator_person.csv]" ) );
+
+        // as are the files that reference a changed node file
+        append( new File( dataDirectory, "tagclass.csv" ), "99990|n|http://dbpedia.org/resource/X\n" );
+        assertThat( check( dataDirectory, stateDirectory ), is( 1l ) );
+        assertThat( checkedFiles.contains( "tagclass.csv" ), is( true ) );
+        assertThat( checkedFiles.contains( "tagclass_isSubclassOf_tagclass.csv" ), is( true ) );
+        assertThat( checkedFiles.contains( "tag_hasType_tagclass.csv" ), is( true ) );
+        assertThat( checkedFiles.contains( "person.csv" ), is( false ) );
+
+        // all files are checked again once the configuration changed
+        assertThat( check( dataDirectory, stateDirectory, 5 ), is( 1l ) );
+        assertThat( checkedFiles.size(), is( fileCount ) );
+        assertThat( check( dataDirectory, stateDirectory, 5 ), is( 1l ) );
+        assertThat( checkedFiles.toString(), is( "[comment_hasCreator_person.csv]" ) );
+    }
+
+    private long check( File dataDirectory, File stateDirectory ) throws Exception
+    {
+        return check( dataDirectory, stateDirectory, 0 );
+    }
+
+    private long check( File dataDirectory, File stateDirectory, long maxFailuresPerColumn ) throws Exception
+    {
+        AggregatingFailedCheckPolicy policy = new AggregatingFailedCheckPolicy( new TerminateFailedCheckPolicy(), 0 );
+        SocialNetCheck socialNetCheck = new SocialNetCheck( dataDirectory, 10, PERSON_COUNT );
+        socialNetCheck.withMaxFailuresPerColumn( maxFailuresPerColumn );
+        File reportFile = new File( stateDirectory.getParentFile(), "report.csv" );
+        CheckRunner checkRunner = new CheckRunner( dataDirectory, socialNetCheck, policy, 4 );
+        checkRunner.withReaderType( ReaderType.MEMORY_MAPPED ).withRunReport( reportFile ).withIncremental(
+                stateDirectory, socialNetCheck.getConfiguration() ).check();
+        long failureCount = 0;
+        for ( Category category : policy.getCategories() )
+        {
+            failureCount += category.getCount();
+        }
+        checkedFiles.clear();
+        CSVReader csvReader = new CSVReader( new FileReader( reportFile ), RunReport.CSV_SEPARATOR );
+        // header
+        csvReader.readNext();
+        String[] row;
+        while ( null != ( row = csvReader.readNext() ) )
+        {
+            checkedFiles.add( row[0] );
+        }
+        csvReader.close();
+        return failureCount;
+    }
+
+    private static void append( File file, String content ) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream( file, true );
+        out.write( content.getBytes( "UTF-8" ) );
+        out.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ldbc.datachecker.socialnet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ldbc.datachecker.CheckRunner;
+import com.ldbc.datachecker.FileCheckRunner.ReaderType;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy;
+import com.ldbc.datachecker.failure.AggregatingFailedCheckPolicy.Category;
+import com.ldbc.datachecker.failure.TerminateFailedCheckPolicy;
+import com.ldbc.datachecker.socialnet.SocialNetGenerator.Violation;
+
+public class SocialNetGeneratorTest
+{
+    private static final long PERSON_COUNT = 200;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generatedDatasetShouldPassAllChecks() throws Exception
+    {
+        // Given
+        File dataGenDirectory = temporaryFolder.newFolder();
+        new SocialNetGenerator( dataGenDirectory, PERSON_COUNT ).withWorkers( 4 ).generate();
+
+        // When
+        long failureCount = check( dataGenDirectory );
+
+        // Then
+        assertThat( failureCount, is( 0l ) );
+        assertThat( new File( dataGenDirectory, "outputDir" ).list().length, is( SocialNetConstants.allCsvFilenames(
+                dataGenDirectory ).length ) );
+    }
+
+    @Test
+    public void everyInjectedViolationShouldFailOneCheck() throws Exception
+    {
+        for ( Violation violation : Violation.values() )
+        {
+            // Given
+            File dataGenDirectory = temporaryFolder.newFolder();
+            SocialNetGenerator generator = new SocialNetGenerator( dataGenDirectory, PERSON_COUNT ).withSeed( 7 );
+            Map<Violation, Long> injectedCounts = generator.withViolations( 0.01, EnumSet.of( violation ) ).generate();
+
+            // When
+            long failureCount = check( dataGenDirectory );
+
+            // Then
+            assertThat( violation.name(), injectedCounts.get( violation ) > 0, is( true ) );
+            assertThat( violation.name(), failureCount, is( injectedCounts.get( violation ) ) );
+        }
+    }
+
+    @Test
+    public void sameSeedShouldGenerateSameFilesWithAnyNumberOfWorkers() throws Exception
+    {
+        // Given
+        File directory1 = temporaryFolder.newFolder();
+        File directory2 = temporaryFolder.newFolder();
+
+        // When
+        Map<Violation, Long> injectedCounts1 = new SocialNetGenerator( directory1, PERSON_COUNT ).withViolations( 0.01,
+                EnumSet.allOf( Violation.class ) ).withWorkers( 1 ).generate();
+        Map<Violation, Long> injectedCounts2 = new SocialNetGenerator( directory2, PERSON_COUNT ).withViolations( 0.01,
+                EnumSet.allOf( Violation.class ) ).withWorkers( 4 ).generate();
+
+        // Then
+        assertThat( injectedCounts1, is( injectedCounts2 ) );
+        for ( String filename : new File( directory1, "outputDir" ).list() )
+        {
+            File file1 = new File( new File( directory1, "outputDir" ), filename );
+            File file2 = new File( new File( directory2, "outputDir" ), filename );
+            assertThat( filename, file1.length(), is( file2.length() ) );
+        }
+    }
+
+    private long check( File dataGenDirectory ) throws Exception
+    {
+        File dataDirectory = new File( dataGenDirectory, "outputDir" );
+        AggregatingFailedCheckPolicy policy = new AggregatingFailedCheckPolicy( new TerminateFailedCheckPolicy(), 0 );
+        SocialNetCheck socialNetCheck = new SocialNetCheck( dataDirectory, 10, PERSON_COUNT );
+        // generated files are UTF-8, the buffered reader decodes with the platform charset
+        new CheckRunner( dataDirectory, socialNetCheck, policy, 4 ).withReaderType( ReaderType.MEMORY_MAPPED ).check();
+        long failureCount = 0;
+        for ( Category category : policy.getCategories() )
+        {
+            failureCount += category.getCount();
+        }
+        return failureCount;
+    }
+}